@@ -0,0 +1,139 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BaseAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in tracks and players for the benchmarks, so they run offline without loading or decoding anything.
+ */
+final class BenchmarkFixtures {
+    private BenchmarkFixtures() {}
+
+    /**
+     * @param title Title of the track.
+     * @param length Length of the track in milliseconds.
+     * @return A track that is never played.
+     */
+    static AudioTrack track(String title, long length) {
+        return new StandInTrack(new AudioTrackInfo(title, "Artist", length, "stand-in:" + title, false));
+    }
+
+    /**
+     * @param count Amount of tracks.
+     * @return Tracks of three to five minutes with titles of varying length.
+     */
+    static List<AudioTrack> tracks(int count) {
+        List<AudioTrack> tracks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            tracks.add(track("Track " + i + (i % 3 == 0 ? " (Official Music Video) [Remastered]" : ""),
+                    180000 + (i * 7919L) % 120000));
+        return tracks;
+    }
+
+    /**
+     * Creates a player that starts tracks without playing them. Frames are handed out from a fixed set, so providing
+     * one allocates nothing.
+     * @param frames Frames handed out in a loop by provide(), or an empty array for none.
+     * @return The player.
+     */
+    static AudioPlayer player(AudioFrame[] frames) {
+        AudioTrack[] playing = new AudioTrack[1];
+        boolean[] paused = new boolean[1];
+        int[] next = new int[1];
+        return (AudioPlayer) Proxy.newProxyInstance(AudioPlayer.class.getClassLoader(),
+                new Class<?>[] {AudioPlayer.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "startTrack":
+                            if ((Boolean) args[1] && playing[0] != null)
+                                return false;
+                            playing[0] = (AudioTrack) args[0];
+                            return true;
+                        case "playTrack":
+                            playing[0] = (AudioTrack) args[0];
+                            return null;
+                        case "stopTrack":
+                            playing[0] = null;
+                            return null;
+                        case "getPlayingTrack":
+                            return playing[0];
+                        case "isPaused":
+                            return paused[0];
+                        case "setPaused":
+                            paused[0] = (Boolean) args[0];
+                            return null;
+                        case "getVolume":
+                            return 100;
+                        case "provide":
+                            if (frames.length == 0)
+                                return null;
+                            AudioFrame frame = frames[next[0]];
+                            next[0] = (next[0] + 1) % frames.length;
+                            return frame;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return method.getReturnType() == boolean.class ? (Object) false : null;
+                    }
+                });
+    }
+
+    /**
+     * @param count Amount of frames.
+     * @return Opus sized frames with consecutive timecodes.
+     */
+    static AudioFrame[] frames(int count) {
+        AudioFrame[] frames = new AudioFrame[count];
+        for (int i = 0; i < count; i++)
+            frames[i] = new AudioFrame(i * 20L, new byte[160], 100, null);
+        return frames;
+    }
+
+    /**
+     * @param name Name of a resource next to this class.
+     * @return The resource's content.
+     */
+    static String resource(String name) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) > 0; )
+                out.write(buffer, 0, read);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + name, e);
+        }
+    }
+
+    /**
+     * A track that only carries its info.
+     */
+    private static class StandInTrack extends BaseAudioTrack {
+        private StandInTrack(AudioTrackInfo trackInfo) {
+            super(trackInfo);
+        }
+
+        @Override
+        public void process(LocalAudioTrackExecutor executor) {
+            throw new UnsupportedOperationException("Stand-in tracks are never played.");
+        }
+
+        @Override
+        public AudioTrack makeClone() {
+            return new StandInTrack(trackInfo);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package net.grasinga.discord.bots.eMusic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing of guild messages by {@link CommandRouter}: most messages are chat and are rejected by their first
+ * character; commands are looked up and their arguments parsed. The routed commands are never run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandRouterBenchmark {
+    private CommandRouter router;
+
+    @Setup
+    public void setUp() {
+        router = new CommandRouter(new MessageOutbox());
+        router.register(CommandRouter.NO_ARGUMENTS, (event, arguments) -> {}, "-join [VoiceChannel]", "-join");
+        router.register(CommandRouter.TEXT, (event, arguments) -> {}, "-play [Audio Source]", "-play");
+        router.register(CommandRouter.NO_ARGUMENTS, (event, arguments) -> {}, "-skip", "-skip");
+        router.register(CommandRouter.OPTIONAL_NUMBER, (event, arguments) -> {}, "-queue [Page]", "-queue", "-list");
+        router.register(CommandRouter.TWO_NUMBERS, (event, arguments) -> {}, "-move [From Position] [To Position]", "-move");
+        router.register(CommandRouter.REQUIRED_TEXT, (event, arguments) -> {}, "-radio [Station URL | Search Term]", "-radio");
+        router.register(CommandRouter.NO_ARGUMENTS, (event, arguments) -> {}, "?eMusic", "?eMusic");
+    }
+
+    @Benchmark
+    public Runnable chatMessage() {
+        return router.route("anyone up for some music tonight?", null);
+    }
+
+    @Benchmark
+    public Runnable unknownCommand() {
+        return router.route("-volume 50", null);
+    }
+
+    @Benchmark
+    public Runnable playCommand() {
+        return router.route("-play never gonna give you up", null);
+    }
+
+    @Benchmark
+    public Runnable moveCommand() {
+        return router.route("-move 12 3", null);
+    }
+}
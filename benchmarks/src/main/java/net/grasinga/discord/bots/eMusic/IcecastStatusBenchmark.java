@@ -0,0 +1,78 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing an Icecast status-json.xsl document with the streaming {@link InternetRadioParser#parseStatus(JsonReader)}
+ * against the tree and substring matching it replaced. The captured document is repeated with renamed mounts to get
+ * the size of a large server, and the last mount is looked up, which is the worst case of the old approach.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IcecastStatusBenchmark {
+    @Param({"3", "100", "500"})
+    private int mounts;
+
+    private String document;
+    private String lastUrl;
+
+    @Setup
+    public void setUp() {
+        JsonObject captured = new JsonParser().parse(BenchmarkFixtures.resource("icecast-status.json"))
+                .getAsJsonObject();
+        JsonArray sources = captured.getAsJsonObject("icestats").getAsJsonArray("source");
+
+        JsonArray repeated = new JsonArray();
+        for (int i = 0; i < mounts; i++) {
+            JsonObject source = new JsonParser().parse(sources.get(i % sources.size()).toString()).getAsJsonObject();
+            lastUrl = "http://radio.example.com:8000/mount" + i;
+            source.addProperty("listenurl", lastUrl);
+            repeated.add(source);
+        }
+        captured.getAsJsonObject("icestats").add("source", repeated);
+        document = captured.toString();
+    }
+
+    @Benchmark
+    public StationInfo streaming() throws IOException {
+        return InternetRadioParser.parseStatus(new JsonReader(new StringReader(document)))
+                .get(InternetRadioParser.getMountPath(lastUrl));
+    }
+
+    /**
+     * The approach before the streaming parser: a full tree, and every source serialized to find the mount.
+     */
+    @Benchmark
+    public String treeAndSubstring() {
+        String mountPoint = InternetRadioParser.getMountPoint(lastUrl);
+        JsonElement root = new JsonParser().parse(document);
+        JsonArray sources = root.getAsJsonObject().getAsJsonObject("icestats").getAsJsonArray("source");
+        for (JsonElement source : sources)
+            if (source.toString().contains(mountPoint))
+                return source.getAsJsonObject().get("title").getAsString();
+        return null;
+    }
+}
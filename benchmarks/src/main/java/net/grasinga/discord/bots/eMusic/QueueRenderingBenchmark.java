@@ -0,0 +1,76 @@
+package net.grasinga.discord.bots.eMusic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The -queue listing: rendering a page of {@link QueueView}, splitting long replies in {@link MessageOutbox} and
+ * formatting durations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueRenderingBenchmark {
+    @Param({"10", "1000", "10000"})
+    private int size;
+
+    private TrackQueue queue;
+    private QueueView view;
+    private int lastPage;
+    private String longReply;
+
+    @Setup
+    public void setUp() {
+        queue = new TrackQueue();
+        queue.addAllLast(BenchmarkFixtures.tracks(size));
+        view = new QueueView(queue);
+        lastPage = view.pageCount();
+
+        StringBuilder reply = new StringBuilder();
+        for (int i = 0; i < size && reply.length() < 20 * MessageOutbox.MAX_LENGTH; i++)
+            reply.append(i + 1).append(". ").append(queue.get(i).getInfo().title).append(" [03:25]\n");
+        longReply = reply.toString();
+    }
+
+    /**
+     * A page of a queue that changed since it was last rendered.
+     */
+    @Benchmark
+    public String renderLastPageAfterEdit() {
+        queue.move(0, 0);
+        return view.render(lastPage);
+    }
+
+    /**
+     * The same page again while the queue is unchanged.
+     */
+    @Benchmark
+    public String renderLastPageCached() {
+        return view.render(lastPage);
+    }
+
+    @Benchmark
+    public List<String> splitReply() {
+        return MessageOutbox.split(longReply);
+    }
+
+    @Benchmark
+    public String formatDuration() {
+        return QueueView.formatDuration(queue.totalDuration());
+    }
+}
@@ -0,0 +1,45 @@
+package net.grasinga.discord.bots.eMusic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frame throughput of the {@link AudioPlayerSendHandler} ring: one operation is a canProvide() and
+ * provide20MsAudio() pair, which JDA makes every 20ms per guild. The player hands out frames it already has, so only
+ * the handler is measured. Run with -prof gc to see the allocation per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendHandlerBenchmark {
+    @Param({"1", "3", "10"})
+    private int bufferedFrames;
+
+    private AudioPlayerSendHandler handler;
+
+    @Setup
+    public void setUp() {
+        handler = new AudioPlayerSendHandler(BenchmarkFixtures.player(BenchmarkFixtures.frames(50)), bufferedFrames,
+                null, "benchmark", null);
+    }
+
+    @Benchmark
+    public byte[] provideFrame() {
+        handler.canProvide();
+        return handler.provide20MsAudio();
+    }
+}
@@ -0,0 +1,74 @@
+package net.grasinga.discord.bots.eMusic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radio station lookups in the n-gram {@link StationIndex}: exact names for -play, and ranked searches for -radio.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StationIndexBenchmark {
+    private static final String[] GENRES = {"Rock", "Jazz", "Classical", "Hip Hop", "Electronic", "Country",
+            "Ambient", "Metal", "Reggae", "Blues", "Lounge", "Chillout", "Drum and Bass", "Trance", "Folk"};
+
+    @Param({"100", "5000"})
+    private int stations;
+
+    private StationIndex index;
+    private String lastName;
+
+    @Setup
+    public void setUp() {
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (int i = 0; i < stations; i++) {
+            String name = GENRES[i % GENRES.length] + " Radio " + i;
+            urls.put(name, "http://radio" + i + ".example.com:8000/stream");
+            lastName = name;
+        }
+        index = new StationIndex(urls);
+    }
+
+    @Benchmark
+    public String getByName() {
+        return index.getByName(lastName.toUpperCase());
+    }
+
+    @Benchmark
+    public String getByNameMissing() {
+        return index.getByName("never gonna give you up");
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, String>> searchCommonTerm() {
+        return index.search("rock", 6);
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, String>> searchRareTerm() {
+        return index.search("drum and bass radio 1", 6);
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, String>> searchNoMatch() {
+        return index.search("polka", 6);
+    }
+}
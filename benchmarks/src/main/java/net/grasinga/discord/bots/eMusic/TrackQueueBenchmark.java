@@ -0,0 +1,88 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Edits of the {@link TrackQueue} treap at different queue sizes. Every edit is undone by the one after it, so the
+ * queue keeps its size across invocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackQueueBenchmark {
+    @Param({"10", "1000", "10000"})
+    private int size;
+
+    private TrackQueue queue;
+    private AudioTrack extra;
+
+    @Setup
+    public void setUp() {
+        List<AudioTrack> tracks = BenchmarkFixtures.tracks(size);
+        queue = new TrackQueue();
+        queue.addAllLast(tracks);
+        extra = BenchmarkFixtures.track("Extra", 200000);
+    }
+
+    /**
+     * Skip: takes the first track and queues another at the end.
+     */
+    @Benchmark
+    public AudioTrack pollFirstAddLast() {
+        AudioTrack track = queue.pollFirst();
+        queue.addLast(track);
+        return track;
+    }
+
+    /**
+     * -previous: puts a track back at the front, then plays it.
+     */
+    @Benchmark
+    public AudioTrack addFirstPollFirst() {
+        queue.addFirst(extra);
+        return queue.pollFirst();
+    }
+
+    @Benchmark
+    public AudioTrack getMiddle() {
+        return queue.get(size / 2);
+    }
+
+    @Benchmark
+    public AudioTrack removeInsertMiddle() {
+        AudioTrack track = queue.remove(size / 2);
+        queue.insert(size / 2, track);
+        return track;
+    }
+
+    /**
+     * -move from the end of the queue to the front and back.
+     */
+    @Benchmark
+    public void moveLastToFirst() {
+        queue.move(size - 1, 0);
+        queue.move(0, size - 1);
+    }
+
+    @Benchmark
+    public long durationBeforeMiddle() {
+        return queue.durationBefore(size / 2);
+    }
+}
@@ -0,0 +1,84 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queueing and skipping through a {@link TrackScheduler} with stand-in players, at different queue sizes, and
+ * enqueueing whole playlists one track at a time against {@link TrackScheduler#queueAll(List)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackSchedulerBenchmark {
+    @Param({"10", "1000", "10000"})
+    private int size;
+
+    private TrackScheduler scheduler;
+    private List<AudioTrack> playlist;
+    private AudioTrack extra;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        scheduler = newScheduler();
+        playlist = BenchmarkFixtures.tracks(size);
+        scheduler.queueAll(playlist);
+        extra = BenchmarkFixtures.track("Extra", 200000);
+    }
+
+    /**
+     * -play while something is playing, then -skip; the queue keeps its size.
+     */
+    @Benchmark
+    public int queueAndSkip() {
+        scheduler.queue(extra);
+        scheduler.nextTrack();
+        return scheduler.getQueueSize();
+    }
+
+    /**
+     * A playlist of the benchmark's size queued one track at a time, as playlists were before bulk enqueueing.
+     */
+    @Benchmark
+    public int enqueuePlaylistPerTrack() {
+        TrackScheduler fresh = newScheduler();
+        for (AudioTrack track : playlist)
+            fresh.queue(track);
+        return fresh.getQueueSize();
+    }
+
+    /**
+     * The same playlist queued in one operation.
+     */
+    @Benchmark
+    public int enqueuePlaylistBulk() {
+        TrackScheduler fresh = newScheduler();
+        fresh.queueAll(playlist);
+        return fresh.getQueueSize();
+    }
+
+    private static TrackScheduler newScheduler() {
+        AudioPlayer player = BenchmarkFixtures.player(new AudioFrame[0]);
+        AudioPlayer standby = BenchmarkFixtures.player(new AudioFrame[0]);
+        return new TrackScheduler(player, standby, new GuildPlaybackState(), new AudioPlayerSendHandler(player));
+    }
+}
@@ -0,0 +1,65 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The commands the synthetic users type, in the proportions of a busy music channel:<br>
+ * - 35% -play, mostly search terms and otherwise video links<br>
+ * - 15% -skip<br>
+ * - 20% -queue, sometimes of the second page<br>
+ * - 20% -nowplaying<br>
+ * - 10% -radio, by genre, by station name or by stream link<br>
+ * <br>
+ * Without stations by name, -radio always uses a stream link, which is loaded like any other source instead of being
+ * tuned in to a shared broadcast.
+ */
+final class CommandMix {
+    private static final String[] GENRES = {"Rock", "Jazz", "Pop", "News", "Classical"};
+    private static final int STATIONS_PER_GENRE = 4;
+
+    private final boolean stationsByName;
+
+    /**
+     * @param stationsByName Whether -radio names stations, so guilds tune in to shared broadcasts.
+     */
+    CommandMix(boolean stationsByName) {
+        this.stationsByName = stationsByName;
+    }
+
+    /**
+     * @return The stand-in radio stations, as "Name, URL".
+     */
+    static List<String> stations() {
+        List<String> stations = new ArrayList<>(GENRES.length * STATIONS_PER_GENRE);
+        for (String genre : GENRES)
+            for (int i = 1; i <= STATIONS_PER_GENRE; i++)
+                stations.add(genre + " Radio " + i + ", " + StandInEndpoints.streamUrl(genre.toLowerCase() + i));
+        return stations;
+    }
+
+    /**
+     * @param random Source of the choices.
+     * @return The content of the next command message.
+     */
+    String next(Random random) {
+        int roll = random.nextInt(100);
+        if (roll < 35)
+            return random.nextInt(10) < 7
+                    ? "-play song " + random.nextInt(StandInEndpoints.VIDEOS)
+                    : "-play " + StandInEndpoints.videoUrl(random.nextInt(StandInEndpoints.VIDEOS));
+        if (roll < 50)
+            return "-skip";
+        if (roll < 70)
+            return random.nextInt(4) == 0 ? "-queue 2" : "-queue";
+        if (roll < 90)
+            return "-nowplaying";
+
+        String genre = GENRES[random.nextInt(GENRES.length)];
+        int station = 1 + random.nextInt(STATIONS_PER_GENRE);
+        if (!stationsByName)
+            return "-radio " + StandInEndpoints.streamUrl(genre.toLowerCase() + station);
+        return random.nextBoolean() ? "-radio " + genre.toLowerCase() : "-radio " + genre + " Radio " + station;
+    }
+}
@@ -0,0 +1,96 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the commands of the synthetic users and records their latencies, from the message being received to the
+ * first reply being sent.<br>
+ * Latencies are kept in a preallocated array, so recording them doesn't add to the garbage being measured. The array
+ * is emptied at the start of each measured window; latencies past {@link #MAX_SAMPLES} in a window aren't kept.
+ */
+final class CommandStats {
+    private static final int MAX_SAMPLES = 1 << 20;
+
+    private final long[] latencies = new long[MAX_SAMPLES];
+    private final AtomicInteger sampled = new AtomicInteger();
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder unanswered = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Counts a command that was typed.
+     */
+    void sent() {
+        commands.increment();
+    }
+
+    /**
+     * Records the first reply to a command.
+     * @param latencyNanos Time from the command being received to the reply being sent.
+     * @param busy Whether the reply was the bot turning the command away because the guild's lane was full.
+     */
+    void replied(long latencyNanos, boolean busy) {
+        int index = sampled.getAndIncrement();
+        if (index < MAX_SAMPLES)
+            latencies[index] = latencyNanos;
+        if (busy)
+            rejected.increment();
+    }
+
+    /**
+     * Counts a command that got no reply within {@link SyntheticGuild#REPLY_TIMEOUT_MILLIS}.
+     */
+    void unanswered() {
+        unanswered.increment();
+    }
+
+    /**
+     * @return Commands typed so far.
+     */
+    long getCommands() {
+        return commands.sum();
+    }
+
+    /**
+     * @return Commands that got no reply in time so far.
+     */
+    long getUnanswered() {
+        return unanswered.sum();
+    }
+
+    /**
+     * @return Commands turned away as busy so far.
+     */
+    long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Starts a new window of latencies.
+     */
+    void resetLatencies() {
+        sampled.set(0);
+    }
+
+    /**
+     * @return The latencies recorded in this window, sorted.
+     */
+    long[] sortedLatencies() {
+        long[] sorted = Arrays.copyOf(latencies, Math.min(sampled.get(), MAX_SAMPLES));
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * @param sorted Sorted latencies.
+     * @param percentile Percentile to get, between 0 and 1.
+     * @return The latency at the percentile, or 0 if there are none.
+     */
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0)
+            return 0;
+        return sorted[Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
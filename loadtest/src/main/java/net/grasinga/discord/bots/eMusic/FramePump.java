@@ -0,0 +1,69 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pulls a frame from every connected guild's send handler once per 20ms of virtual time, as JDA's audio send loops
+ * do.<br>
+ * JDA runs a send loop per voice connection. The pump shares a few threads between all guilds instead, each owning a
+ * stripe of them, so the harness doesn't add thousands of threads of its own to what is measured. A pump that falls
+ * behind runs its ticks back to back until it has caught up; every tick started more than a tick late is counted, as
+ * its frames would have been sent late.
+ */
+final class FramePump {
+    private final VirtualClock clock;
+    private final List<List<SyntheticGuild>> stripes = new ArrayList<>();
+    private final LongAdder lateTicks = new LongAdder();
+    private int added = 0;
+
+    /**
+     * Starts the pump threads.
+     * @param clock Clock the ticks follow.
+     * @param threads Amount of threads.
+     */
+    FramePump(VirtualClock clock, int threads) {
+        this.clock = clock;
+        for (int i = 0; i < threads; i++) {
+            List<SyntheticGuild> stripe = new CopyOnWriteArrayList<>();
+            stripes.add(stripe);
+            Thread thread = new Thread(() -> pump(stripe), "eMusic-load-pump-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Starts pulling frames of a guild whenever it is connected.
+     * @param guild The guild.
+     */
+    synchronized void add(SyntheticGuild guild) {
+        stripes.get(added++ % stripes.size()).add(guild);
+    }
+
+    /**
+     * @return Ticks started more than a tick late so far.
+     */
+    long getLateTicks() {
+        return lateTicks.sum();
+    }
+
+    private void pump(List<SyntheticGuild> stripe) {
+        long tickNanos = clock.toWallNanos(VirtualClock.FRAME_MILLIS);
+        long due = System.nanoTime();
+        while (true) {
+            for (SyntheticGuild guild : stripe)
+                guild.pullFrame();
+
+            due += tickNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+            else if (wait < -tickNanos)
+                lateTicks.increment();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.container.common.OpusPacketRouter;
+import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BaseAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * A track of generated Opus packets, played the way {@link CachedOpusAudioTrack} plays cached ones.<br>
+ * Each 20ms packet is a stereo CELT frame of {@link #PACKET_BYTES} bytes, the size of a 64 kbps Opus stream from
+ * YouTube, filled with noise. The player buffers as many bytes as it would for a real track and passes them through
+ * without transcoding. A stream never ends on its own.
+ */
+final class GeneratedAudioTrack extends BaseAudioTrack {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int CHANNELS = 2;
+    private static final int PACKET_BYTES = 160;
+
+    /**
+     * Packets handed out in a loop. They are direct, like the cache's mapped frames, and never written to once made.
+     */
+    private static final ByteBuffer[] PACKETS = packets(50);
+
+    private final GeneratedSourceManager sourceManager;
+
+    /**
+     * @param trackInfo Info of the track; its length is how much audio is generated unless it is a stream.
+     * @param sourceManager Source manager that loaded the track.
+     */
+    GeneratedAudioTrack(AudioTrackInfo trackInfo, GeneratedSourceManager sourceManager) {
+        super(trackInfo);
+        this.sourceManager = sourceManager;
+    }
+
+    @Override
+    public void process(LocalAudioTrackExecutor executor) throws Exception {
+        long frames = trackInfo.isStream ? Long.MAX_VALUE : trackInfo.length / VirtualClock.FRAME_MILLIS;
+        long[] next = {0};
+        OpusPacketRouter router = new OpusPacketRouter(executor.getProcessingContext(), SAMPLE_RATE, CHANNELS);
+        try {
+            executor.executeProcessingLoop(() -> {
+                for (; next[0] < frames; next[0]++)
+                    router.process(PACKETS[(int) (next[0] % PACKETS.length)].duplicate());
+                router.flush();
+            }, position -> {
+                next[0] = position / VirtualClock.FRAME_MILLIS;
+                router.seekPerformed(position, next[0] * VirtualClock.FRAME_MILLIS);
+            });
+        } finally {
+            router.close();
+        }
+    }
+
+    @Override
+    public AudioTrack makeClone() {
+        return new GeneratedAudioTrack(trackInfo, sourceManager);
+    }
+
+    @Override
+    public AudioSourceManager getSourceManager() {
+        return sourceManager;
+    }
+
+    /**
+     * @param count Amount of packets.
+     * @return Packets of a 20ms stereo CELT frame each, starting with its table of contents byte.
+     */
+    private static ByteBuffer[] packets(int count) {
+        Random random = new Random(0);
+        byte[] payload = new byte[PACKET_BYTES - 1];
+        ByteBuffer[] packets = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            random.nextBytes(payload);
+            ByteBuffer packet = ByteBuffer.allocateDirect(PACKET_BYTES);
+            // Configuration 31 (CELT only, fullband, 20ms), stereo, one frame in the packet.
+            packet.put((byte) 0xFC).put(payload).flip();
+            packets[i] = packet;
+        }
+        return packets;
+    }
+}
@@ -0,0 +1,64 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
+import com.sedmelluq.discord.lavaplayer.track.AudioReference;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+
+/**
+ * Stand-in for the YouTube and HTTP stream sources, serving {@link GeneratedAudioTrack}s for the links of
+ * {@link StandInEndpoints}.<br>
+ * A video is two to five minutes long, derived from its id so it has the same length every time it is loaded. An
+ * Icecast mount is an endless stream with no title, as lavaplayer's HTTP source reports it. Anything else isn't
+ * matched, so nothing is ever fetched.
+ */
+final class GeneratedSourceManager implements AudioSourceManager {
+    private static final long MIN_LENGTH_MILLIS = 120000;
+    private static final long MAX_LENGTH_MILLIS = 300000;
+
+    @Override
+    public String getSourceName() {
+        return "generated";
+    }
+
+    @Override
+    public AudioItem loadItem(DefaultAudioPlayerManager manager, AudioReference reference) {
+        String identifier = reference.identifier;
+        if (identifier.startsWith(StandInEndpoints.WATCH_URL)) {
+            String videoId = identifier.substring(StandInEndpoints.WATCH_URL.length());
+            long length = MIN_LENGTH_MILLIS
+                    + Math.floorMod(videoId.hashCode(), MAX_LENGTH_MILLIS - MIN_LENGTH_MILLIS);
+            return new GeneratedAudioTrack(new AudioTrackInfo("Video " + videoId, "Generated", length, identifier,
+                    false), this);
+        }
+        if (identifier.startsWith(StandInEndpoints.ICECAST_HOST + "/"))
+            return new GeneratedAudioTrack(new AudioTrackInfo("Unknown title", "Unknown artist", Long.MAX_VALUE,
+                    identifier, true), this);
+        return null;
+    }
+
+    @Override
+    public boolean isTrackEncodable(AudioTrack track) {
+        return true;
+    }
+
+    @Override
+    public void encodeTrack(AudioTrack track, DataOutput output) {
+        // Everything needed to generate the track again is in its info.
+    }
+
+    @Override
+    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) {
+        return new GeneratedAudioTrack(trackInfo, this);
+    }
+
+    @Override
+    public void shutdown() {
+        // Nothing to release.
+    }
+}
@@ -0,0 +1,265 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline load test of the bot: synthetic guilds type commands into the bot while a real lavaplayer plays generated
+ * audio to them.<br>
+ * <br>
+ * Nothing is fetched: {@link GeneratedSourceManager} serves the audio, and {@link StandInEndpoints} answers YouTube
+ * searches and Icecast status fetches. The listener of each {@link SyntheticGuild} types the commands of
+ * {@link CommandMix} into {@link eMusic#onGuildMessageReceived}, from a single thread as JDA does, and waits
+ * loadtest.think.ms on average between commands. The {@link FramePump} pulls every connected guild's frames as JDA's
+ * send loops would.<br>
+ * <br>
+ * There are two modes, chosen with loadtest.mode:<br>
+ * - scale (default): guilds are added in steps up to each count of loadtest.guilds (10,50,100,500,1000,2500,5000).
+ * Each step is warmed up for loadtest.warmup.seconds (10), then measured for loadtest.step.seconds (30).<br>
+ * - soak: loadtest.soak.guilds (100) guilds play for loadtest.soak.hours (24) of virtual time, which runs
+ * loadtest.soak.speed (96) times faster than real time, so a day passes in 15 minutes. Every virtual hour is
+ * measured. -radio uses stream links, since shared broadcasts are paced by the bot's own real-time pump.<br>
+ * <br>
+ * Each window reports the commands per (real) second; their p50 and p99 latency; commands with no reply and commands
+ * turned away as busy; frames delivered against the frames expected while something was playing, and start-up
+ * misses; late pump ticks; the heap left after a full GC, also per guild; and the GCs run during the window.<br>
+ * Other settings: loadtest.think.ms (2000, or 60000 of virtual time when soaking), loadtest.search.ms (25),
+ * loadtest.pump.threads (the amount of processors) and loadtest.seed (1). The bot's own timers, such as its lookahead
+ * of the next track and the Icecast poll, run in real time in either mode.
+ */
+final class LoadTest {
+    private static final long FIRST_GUILD_ID = 1000000;
+    private static final String ROW = "%-8s %8s %7s %7s %8s %6s %11s %11s %7s %8s %6s %8s %9s %5s %7s%n";
+
+    private final eMusic bot;
+    private final VirtualClock clock;
+    private final CommandMix mix;
+    private final long thinkMillis;
+    private final Random random;
+    private final CommandStats stats = new CommandStats();
+    private final FramePump pump;
+    private final List<SyntheticGuild> guilds = new ArrayList<>();
+    /**
+     * Delivers the commands of every guild, like JDA's event thread.
+     */
+    private final ScheduledExecutorService eventThread = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "eMusic-load-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Heap left after a full GC before any guild was added.
+     */
+    private final long baselineHeap;
+
+    /**
+     * @param bot The bot under test.
+     * @param clock Clock the commands and frames follow.
+     * @param mix Commands the listeners type.
+     * @param thinkMillis Average virtual time between a listener's commands.
+     * @param pumpThreads Amount of threads pulling frames.
+     * @param seed Seed of the listeners' choices.
+     */
+    LoadTest(eMusic bot, VirtualClock clock, CommandMix mix, long thinkMillis, int pumpThreads, long seed) {
+        this.bot = bot;
+        this.clock = clock;
+        this.mix = mix;
+        this.thinkMillis = thinkMillis;
+        this.random = new Random(seed);
+        this.pump = new FramePump(clock, pumpThreads);
+        this.baselineHeap = liveHeap();
+    }
+
+    /**
+     * Runs the load test with the settings of the loadtest.* system properties.
+     * @param args Not used.
+     * @throws InterruptedException If interrupted while waiting for a window to end.
+     * @see LoadTest
+     */
+    public static void main(String[] args) throws InterruptedException {
+        boolean soak = System.getProperty("loadtest.mode", "scale").equals("soak");
+        List<String> stations = CommandMix.stations();
+        // Read when the bot is created, as if they were listed in bot.properties.
+        eMusic.getRadioStations(stations);
+
+        DefaultAudioPlayerManager playerManager = new DefaultAudioPlayerManager();
+        playerManager.registerSourceManager(new GeneratedSourceManager());
+        StandInEndpoints endpoints = new StandInEndpoints(Long.getLong("loadtest.search.ms", 25), stations);
+        eMusic bot = new eMusic(playerManager, endpoints::search, endpoints::fetch);
+
+        VirtualClock clock = new VirtualClock(soak ? Double.parseDouble(System.getProperty("loadtest.soak.speed", "96"))
+                : 1);
+        LoadTest test = new LoadTest(bot, clock, new CommandMix(!soak),
+                Long.getLong("loadtest.think.ms", soak ? 60000 : 2000),
+                Integer.getInteger("loadtest.pump.threads", Runtime.getRuntime().availableProcessors()),
+                Long.getLong("loadtest.seed", 1));
+        if (soak)
+            test.soak(Integer.getInteger("loadtest.soak.guilds", 100), Integer.getInteger("loadtest.soak.hours", 24));
+        else
+            test.scale(counts(System.getProperty("loadtest.guilds", "10,50,100,500,1000,2500,5000")),
+                    Integer.getInteger("loadtest.warmup.seconds", 10), Integer.getInteger("loadtest.step.seconds", 30));
+
+        System.out.printf("YouTube searches: %d, Icecast status fetches: %d%n", endpoints.getSearches(),
+                endpoints.getFetches());
+        playerManager.shutdown();
+        System.exit(0);
+    }
+
+    /**
+     * Adds guilds in steps, measuring each step after it has warmed up.
+     * @param counts Amount of guilds of each step, increasing.
+     * @param warmupSeconds How long a step runs before it is measured.
+     * @param stepSeconds How long a step is measured.
+     * @throws InterruptedException If interrupted while waiting for a window to end.
+     */
+    void scale(int[] counts, int warmupSeconds, int stepSeconds) throws InterruptedException {
+        printHeader("guilds");
+        for (int count : counts) {
+            addGuilds(count);
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+            Window start = startWindow();
+            TimeUnit.SECONDS.sleep(stepSeconds);
+            report(Integer.toString(count), start, new Window());
+        }
+    }
+
+    /**
+     * Plays a fixed amount of guilds for hours of virtual time, measuring every virtual hour.
+     * @param guildCount Amount of guilds.
+     * @param hours Virtual hours to run for.
+     * @throws InterruptedException If interrupted while waiting for a window to end.
+     */
+    void soak(int guildCount, int hours) throws InterruptedException {
+        System.out.printf("Soaking %d guilds for %d hours at %.0fx, so an hour takes %.1f minutes.%n", guildCount,
+                hours, clock.getSpeed(), 60 / clock.getSpeed());
+        printHeader("hour");
+        addGuilds(guildCount);
+        Window start = startWindow();
+        for (int hour = 1; hour <= hours; hour++) {
+            clock.sleepUntil(TimeUnit.HOURS.toMillis(hour));
+            report(Integer.toString(hour), start, new Window());
+            start = startWindow();
+        }
+    }
+
+    /**
+     * Adds guilds until there are as many as asked for. Each guild types its first command within an average think
+     * time, so the new guilds don't all start at once.
+     */
+    private void addGuilds(int count) {
+        while (guilds.size() < count) {
+            SyntheticGuild guild = new SyntheticGuild(FIRST_GUILD_ID + guilds.size() * 10L, bot, stats);
+            guilds.add(guild);
+            pump.add(guild);
+            schedule(guild, (long) (random.nextDouble() * thinkMillis));
+        }
+    }
+
+    /**
+     * Has a guild's listener type a command after a virtual delay, and the next one a think time after that.
+     */
+    private void schedule(SyntheticGuild guild, long virtualMillis) {
+        eventThread.schedule(() -> {
+            try {
+                guild.type(mix.next(random));
+            } finally {
+                // Think times are exponential, so the commands of all guilds arrive as a Poisson process.
+                schedule(guild, (long) (-Math.log(1 - random.nextDouble()) * thinkMillis));
+            }
+        }, clock.toWallNanos(virtualMillis), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Empties the latencies and reads the counters at the start of a window.
+     */
+    private Window startWindow() {
+        stats.resetLatencies();
+        return new Window();
+    }
+
+    private static void printHeader(String label) {
+        System.out.printf(ROW, label, "cmds/s", "p50 ms", "p99 ms", "no reply", "busy", "frames", "expected",
+                "%", "start-up", "late", "heap MB", "KB/guild", "GCs", "GC ms");
+    }
+
+    /**
+     * Prints the row of a window, then runs a full GC to measure the heap that is left.
+     */
+    private void report(String label, Window start, Window end) {
+        long[] latencies = stats.sortedLatencies();
+        double seconds = (end.nanos - start.nanos) / 1e9;
+        long frames = end.frames - start.frames;
+        long expected = frames + end.underruns - start.underruns;
+        long heap = liveHeap();
+        System.out.printf(ROW, label,
+                String.format("%.1f", (end.commands - start.commands) / seconds),
+                String.format("%.1f", CommandStats.percentile(latencies, 0.5) / 1e6),
+                String.format("%.1f", CommandStats.percentile(latencies, 0.99) / 1e6),
+                end.unanswered - start.unanswered,
+                end.rejected - start.rejected,
+                frames,
+                expected,
+                expected == 0 ? "-" : String.format("%.2f", 100.0 * frames / expected),
+                end.startupMisses - start.startupMisses,
+                end.lateTicks - start.lateTicks,
+                heap / (1024 * 1024),
+                guilds.isEmpty() ? "-" : Long.toString((heap - baselineHeap) / 1024 / guilds.size()),
+                end.gcCount - start.gcCount,
+                end.gcMillis - start.gcMillis);
+    }
+
+    /**
+     * @return Heap in use after a full GC.
+     */
+    private static long liveHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static int[] counts(String list) {
+        String[] parts = list.split(",");
+        int[] counts = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+            counts[i] = Integer.parseInt(parts[i].trim());
+        return counts;
+    }
+
+    /**
+     * The counters at the start or end of a measured window.
+     */
+    private class Window {
+        private final long nanos = System.nanoTime();
+        private final long commands = stats.getCommands();
+        private final long unanswered = stats.getUnanswered();
+        private final long rejected = stats.getRejected();
+        private final long lateTicks = pump.getLateTicks();
+        private long frames = 0;
+        private long underruns = 0;
+        private long startupMisses = 0;
+        private long gcCount = 0;
+        private long gcMillis = 0;
+
+        private Window() {
+            for (SyntheticGuild guild : guilds) {
+                AudioPlayerSendHandler sendHandler = guild.getSendHandler();
+                if (sendHandler != null) {
+                    frames += sendHandler.getFramesProvided();
+                    underruns += sendHandler.getUnderruns();
+                    startupMisses += sendHandler.getStartupMisses();
+                }
+            }
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(0, collector.getCollectionCount());
+                gcMillis += Math.max(0, collector.getCollectionTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stand-ins for the YouTube search API and the Icecast servers, so the bot is load tested without any network
+ * access.<br>
+ * A search takes {@code searchMillis}, as a call to the API would, and finds one of {@link #VIDEOS} videos derived
+ * from the term. The Icecast host answers for every station of {@link CommandMix#stations()}, with a song that changes
+ * every minute.
+ */
+final class StandInEndpoints {
+    /**
+     * Prefix of the stand-in YouTube's video links.
+     */
+    static final String WATCH_URL = "https://www.youtube.com/watch?v=";
+
+    /**
+     * Host of every stand-in radio station.
+     */
+    static final String ICECAST_HOST = "http://icecast.stub:8000";
+
+    /**
+     * Amount of distinct videos searches and links lead to.
+     */
+    static final int VIDEOS = 2000;
+
+    private final long searchMillis;
+    private final Map<String, String> stationNames = new HashMap<>();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder fetches = new LongAdder();
+
+    /**
+     * @param searchMillis How long a search takes.
+     * @param stations The stations served, as "Name, URL".
+     */
+    StandInEndpoints(long searchMillis, List<String> stations) {
+        this.searchMillis = searchMillis;
+        for (String station : stations) {
+            String[] parts = station.split(", ");
+            stationNames.put(InternetRadioParser.getMountPath(parts[1]), parts[0]);
+        }
+    }
+
+    /**
+     * @param video Number of the video.
+     * @return The video's link.
+     */
+    static String videoUrl(int video) {
+        return WATCH_URL + videoId(video);
+    }
+
+    /**
+     * @param mount Mount point of the station, without the leading slash.
+     * @return The station's stream link.
+     */
+    static String streamUrl(String mount) {
+        return ICECAST_HOST + "/" + mount;
+    }
+
+    /**
+     * Searches the stand-in YouTube.
+     * @param term The search term.
+     * @return The id of the video found.
+     * @see YouTubeSearch#videoIdSearch(String)
+     */
+    String search(String term) {
+        searches.increment();
+        try {
+            TimeUnit.MILLISECONDS.sleep(searchMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return YouTubeSearch.NO_RESULT;
+        }
+        return videoId(Math.floorMod(term.hashCode(), VIDEOS));
+    }
+
+    /**
+     * Fetches the status of the stand-in Icecast host.
+     * @param jsonUrl The host's status-json.xsl URL.
+     * @return Info of each station's mount.
+     * @throws IOException If the URL isn't the stand-in host's.
+     * @see InternetRadioParser#fetchStatus(String)
+     */
+    Map<String, StationInfo> fetch(String jsonUrl) throws IOException {
+        fetches.increment();
+        if (!jsonUrl.startsWith(ICECAST_HOST + "/"))
+            throw new IOException("Unknown host: " + jsonUrl);
+
+        long song = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis()) % 100;
+        Map<String, StationInfo> mounts = new HashMap<>();
+        for (Map.Entry<String, String> station : stationNames.entrySet())
+            mounts.put(station.getKey(), new StationInfo(station.getValue(), "Artist " + song, "Song " + song,
+                    "Artist " + song + " - Song " + song));
+        return mounts;
+    }
+
+    /**
+     * @return Searches made so far.
+     */
+    long getSearches() {
+        return searches.sum();
+    }
+
+    /**
+     * @return Status fetches made so far.
+     */
+    long getFetches() {
+        return fetches.sum();
+    }
+
+    private static String videoId(int video) {
+        return String.format("video%06d", video);
+    }
+}
@@ -0,0 +1,311 @@
+package net.grasinga.discord.bots.eMusic;
+
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.audio.AudioSendHandler;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.GuildVoiceState;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.TextChannel;
+import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.entities.VoiceChannel;
+import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
+import net.dv8tion.jda.core.managers.AudioManager;
+import net.dv8tion.jda.core.requests.RestAction;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A guild as JDA presents it to the bot: a text channel commands are typed in, a voice channel with one listener in
+ * it, and an audio manager whose send handler is polled by the {@link FramePump}.<br>
+ * <br>
+ * The entities are proxies that answer only what the bot asks for, so thousands of guilds cost little more heap than
+ * the bot's own state for them. The listener types one command at a time, from JDA's event thread: the time from the
+ * command to the first message sent to the channel is its latency. A command that gets no reply within
+ * {@link #REPLY_TIMEOUT_MILLIS} is given up on.
+ */
+final class SyntheticGuild {
+    /**
+     * How long a command may go without a reply before the next one is typed anyway.
+     */
+    static final long REPLY_TIMEOUT_MILLIS = 10000;
+
+    private static final JDA JDA_STAND_IN = standIn(JDA.class, (proxy, method, args) -> defaultAnswer(proxy, method,
+            args));
+
+    /**
+     * Every message is sent as soon as it is queued. RestAction is a class, so unlike the entities it can't be a
+     * proxy; the mock records nothing, so it doesn't grow over a soak.
+     */
+    @SuppressWarnings("unchecked")
+    private static final RestAction<Object> SENT = mock(RestAction.class, withSettings().stubOnly()
+            .defaultAnswer(invocation -> {
+                for (Object argument : invocation.getArguments())
+                    if (argument instanceof Consumer) {
+                        ((Consumer<Object>) argument).accept(null);
+                        break;
+                    }
+                return null;
+            }));
+
+    private final eMusic bot;
+    private final CommandStats stats;
+
+    private final Guild guild;
+    private final TextChannel channel;
+    private final VoiceChannel voiceChannel;
+    private final User listener;
+
+    private volatile AudioSendHandler sendHandler = null;
+    private volatile VoiceChannel connectedTo = null;
+
+    /**
+     * {@link System#nanoTime()} of when the unanswered command was typed, or 0 if there is none.
+     */
+    private final AtomicLong pendingSince = new AtomicLong();
+    /**
+     * Number of the last event, as JDA numbers them. Only used by JDA's event thread.
+     */
+    private long responseNumber = 0;
+
+    /**
+     * @param id Id of the guild; its channels and listener take the next few ids.
+     * @param bot The bot commands are sent to.
+     * @param stats Where the guild's commands are counted.
+     */
+    SyntheticGuild(long id, eMusic bot, CommandStats stats) {
+        this.bot = bot;
+        this.stats = stats;
+        String guildId = Long.toString(id);
+        String channelId = Long.toString(id + 1);
+        String voiceChannelId = Long.toString(id + 2);
+        String listenerId = Long.toString(id + 3);
+
+        Guild[] guildRef = new Guild[1];
+        listener = standIn(User.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return listenerId;
+                case "getName":
+                    return "Listener " + listenerId;
+                default:
+                    return defaultAnswer(proxy, method, args);
+            }
+        });
+        Member member = standIn(Member.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUser":
+                    return listener;
+                case "getGuild":
+                    return guildRef[0];
+                case "getEffectiveName":
+                    return listener.getName();
+                default:
+                    return defaultAnswer(proxy, method, args);
+            }
+        });
+        List<Member> voiceMembers = Collections.singletonList(member);
+        voiceChannel = standIn(VoiceChannel.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return voiceChannelId;
+                case "getName":
+                    return "Music Room";
+                case "getGuild":
+                    return guildRef[0];
+                case "getMembers":
+                    return voiceMembers;
+                default:
+                    return defaultAnswer(proxy, method, args);
+            }
+        });
+        channel = standIn(TextChannel.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return channelId;
+                case "getName":
+                    return "music";
+                case "getGuild":
+                    return guildRef[0];
+                case "sendMessage":
+                    replied(String.valueOf(args[0]));
+                    return SENT;
+                default:
+                    return defaultAnswer(proxy, method, args);
+            }
+        });
+        AudioManager audioManager = standIn(AudioManager.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "openAudioConnection":
+                    connectedTo = (VoiceChannel) args[0];
+                    return null;
+                case "closeAudioConnection":
+                    connectedTo = null;
+                    return null;
+                case "isConnected":
+                    return connectedTo != null;
+                case "getConnectedChannel":
+                    return connectedTo;
+                case "getSendingHandler":
+                    return sendHandler;
+                case "setSendingHandler":
+                    sendHandler = (AudioSendHandler) args[0];
+                    return null;
+                case "getGuild":
+                    return guildRef[0];
+                default:
+                    return defaultAnswer(proxy, method, args);
+            }
+        });
+        GuildVoiceState selfVoiceState = standIn(GuildVoiceState.class, (proxy, method, args) ->
+                method.getName().equals("getChannel") ? connectedTo : defaultAnswer(proxy, method, args));
+        Member self = standIn(Member.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getGuild":
+                    return guildRef[0];
+                case "getVoiceState":
+                    return selfVoiceState;
+                default:
+                    return defaultAnswer(proxy, method, args);
+            }
+        });
+        List<VoiceChannel> voiceChannels = Collections.singletonList(voiceChannel);
+        List<Member> members = Arrays.asList(member, self);
+        guild = standIn(Guild.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return guildId;
+                case "getName":
+                    return "Guild " + guildId;
+                case "getAudioManager":
+                    return audioManager;
+                case "getSelfMember":
+                    return self;
+                case "getMembers":
+                    return members;
+                case "getMember":
+                    return args[0] == listener ? member : null;
+                case "getTextChannels":
+                    return Collections.singletonList(channel);
+                case "getVoiceChannels":
+                    return voiceChannels;
+                case "getVoiceChannelById":
+                    return voiceChannelId.equals(args[0]) ? voiceChannel : null;
+                case "getVoiceChannelsByName":
+                    return voiceChannel.getName().equalsIgnoreCase((String) args[0]) ? voiceChannels
+                            : Collections.emptyList();
+                default:
+                    return defaultAnswer(proxy, method, args);
+            }
+        });
+        guildRef[0] = guild;
+    }
+
+    /**
+     * Types a command, unless the last one is still waiting for its reply.<br>
+     * Only called from JDA's event thread.
+     * @param content Content of the command message.
+     * @return False if the last command is still waiting.
+     */
+    boolean type(String content) {
+        long pending = pendingSince.get();
+        if (pending != 0) {
+            if (System.nanoTime() - pending < TimeUnit.MILLISECONDS.toNanos(REPLY_TIMEOUT_MILLIS))
+                return false;
+            if (pendingSince.compareAndSet(pending, 0))
+                stats.unanswered();
+        }
+
+        Message message = standIn(Message.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getContent":
+                case "getRawContent":
+                case "getStrippedContent":
+                    return content;
+                case "getGuild":
+                    return guild;
+                case "getTextChannel":
+                case "getChannel":
+                    return channel;
+                case "getAuthor":
+                    return listener;
+                default:
+                    return defaultAnswer(proxy, method, args);
+            }
+        });
+        stats.sent();
+        // Never 0, which means nothing is pending.
+        pendingSince.set(System.nanoTime() | 1);
+        bot.onGuildMessageReceived(new GuildMessageReceivedEvent(JDA_STAND_IN, ++responseNumber, message));
+        return true;
+    }
+
+    /**
+     * Pulls a frame, as JDA's send loop does every 20ms while connected.<br>
+     * Only called from the guild's pump thread.
+     */
+    void pullFrame() {
+        AudioSendHandler handler = sendHandler;
+        if (connectedTo != null && handler != null && handler.canProvide())
+            handler.provide20MsAudio();
+    }
+
+    /**
+     * @return The send handler the bot attached, or null if it never connected to voice.
+     */
+    AudioPlayerSendHandler getSendHandler() {
+        return (AudioPlayerSendHandler) sendHandler;
+    }
+
+    /**
+     * Records the latency of the command waiting for a reply, if any.
+     */
+    private void replied(String message) {
+        long since = pendingSince.getAndSet(0);
+        if (since != 0)
+            stats.replied(System.nanoTime() - since, message.startsWith("Too many commands are waiting"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T standIn(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    /**
+     * Answers a method the bot isn't expected to use: identity for equals and hashCode, and otherwise nothing, false,
+     * zero or an empty list.
+     */
+    private static Object defaultAnswer(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return method.getDeclaringClass().getSimpleName() + "@" + System.identityHashCode(proxy);
+        }
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class)
+            return false;
+        if (type == List.class)
+            return Collections.emptyList();
+        if (type == long.class)
+            return 0L;
+        if (type == int.class)
+            return 0;
+        if (type.isPrimitive() && type != void.class)
+            throw new UnsupportedOperationException(method.getName() + " isn't stood in for.");
+        return null;
+    }
+}
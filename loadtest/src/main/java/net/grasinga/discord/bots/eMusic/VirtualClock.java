@@ -0,0 +1,61 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of the load test, running at a multiple of real time.<br>
+ * At a speed of 1 it is the wall clock. In soak mode it runs faster: the {@link FramePump} ticks and the synthetic
+ * users type that many times as often, so a day of playback passes in a fraction of a day. Latencies are still
+ * measured in real time.
+ */
+final class VirtualClock {
+    /**
+     * Length of an audio frame, which is also the pump's tick.
+     */
+    static final long FRAME_MILLIS = 20;
+
+    private final double speed;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param speed How many times faster than real time the clock runs.
+     */
+    VirtualClock(double speed) {
+        if (speed <= 0)
+            throw new IllegalArgumentException("The speed must be positive: " + speed);
+        this.speed = speed;
+    }
+
+    /**
+     * @return How many times faster than real time the clock runs.
+     */
+    double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return Virtual milliseconds since the clock was started.
+     */
+    long millis() {
+        return (long) ((System.nanoTime() - startNanos) * speed / 1000000);
+    }
+
+    /**
+     * @param virtualMillis A virtual duration.
+     * @return The real nanoseconds that pass in that duration.
+     */
+    long toWallNanos(long virtualMillis) {
+        return (long) (virtualMillis * 1000000 / speed);
+    }
+
+    /**
+     * Sleeps until the clock reaches a virtual time.
+     * @param virtualMillis Virtual milliseconds since the clock was started.
+     * @throws InterruptedException If interrupted while sleeping.
+     */
+    void sleepUntil(long virtualMillis) throws InterruptedException {
+        long remaining;
+        while ((remaining = toWallNanos(virtualMillis - millis())) > 0)
+            TimeUnit.NANOSECONDS.sleep(remaining);
+    }
+}
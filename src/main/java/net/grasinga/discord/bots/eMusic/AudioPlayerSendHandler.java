@@ -1,48 +1,241 @@
 package net.grasinga.discord.bots.eMusic;
 
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
 import net.dv8tion.jda.core.audio.AudioSendHandler;
 
 /**
  * This is a wrapper around AudioPlayer which makes it behave as an AudioSendHandler for JDA. As JDA calls canProvide
  * before every call to provide20MsAudio(), we pull the frame in canProvide() and use the frame we already pulled in
- * provide20MsAudio().
+ * provide20MsAudio().<br>
+ * <br>
+ * When created with more than one buffered frame, the handler keeps a fixed ring of pre-pulled frames for its guild.
+ * The ring's slots are allocated once, so buffering a frame and handing it to JDA allocate nothing. The frames
+ * themselves are still allocated by the player: lavaplayer 1.2.15's provide() returns a new AudioFrame each time and
+ * has no variant that fills a reused frame.<br>
+ * <br>
+ * The player being wrapped can be swapped by {@link TrackScheduler} when it hands off to a pre-buffered track. Frames
+ * already in the ring are kept, so the end of the old track plays out before the start of the new one.<br>
+ * <br>
+ * While the guild listens to a shared radio broadcast, frames are read from its {@link RadioBroadcasts.Subscription}
+ * instead of the player.<br>
+ * <br>
+ * When there is an {@link OpusFrameCache}, the frames pulled from the player are also recorded into it, so the track
+ * can be played from the cache next time.
  */
 public class AudioPlayerSendHandler implements AudioSendHandler {
-    private final AudioPlayer audioPlayer;
-    private AudioFrame lastFrame;
+    /**
+     * Default amount of frames (20ms each) kept ahead of JDA's send thread.
+     */
+    static final int DEFAULT_BUFFERED_FRAMES = 3;
+
+    private AudioPlayer audioPlayer;
+    private RadioBroadcasts.Subscription broadcast = null;
+    private final AudioFrame[] ring;
+    private int head = 0;
+    private int size = 0;
 
+    private final TrackGapStats gapStats;
+    /**
+     * 20ms slots where a frame was ready, and slots where a track was playing but no frame was ready (underruns).
+     * Slots missed before a track's first frame, while it loads and buffers, are counted apart as start-up misses.
+     */
+    private final Metrics.Counter frameHits;
+    private final Metrics.Counter frameMisses;
+    private final Metrics.Counter startupMisses;
     /**
+     * The track, or the broadcast subscription, the last frame was pulled from; null after the buffer was cleared.
+     */
+    private Object started = null;
+    /**
+     * When the last track finished, if the first frame of the next track hasn't been pulled yet; otherwise 0.
+     */
+    private long transitionStartedAt = 0;
+
+    /**
+     * Cache the player's frames are recorded into, or null; and the recording of the playing track, if any.
+     */
+    private final OpusFrameCache cache;
+    private OpusFrameCache.Recording recording = null;
+
+    /**
+     * Creates a send handler that pulls a single frame at a time.
      * @param audioPlayer Audio player to wrap.
      */
     AudioPlayerSendHandler(AudioPlayer audioPlayer) {
+        this(audioPlayer, 1, null, "none", null);
+    }
+
+    /**
+     * @param audioPlayer Audio player to wrap.
+     * @param bufferedFrames Amount of frames to pull ahead of JDA (minimum of 1).
+     * @param gapStats Where gaps between tracks are recorded, or null to not measure them.
+     * @param guildId Id of the handler's guild, used to label its metrics.
+     * @param cache Cache to record played tracks into, or null to not record them.
+     */
+    AudioPlayerSendHandler(AudioPlayer audioPlayer, int bufferedFrames, TrackGapStats gapStats, String guildId,
+                           OpusFrameCache cache) {
         this.audioPlayer = audioPlayer;
+        this.cache = cache;
+        this.ring = new AudioFrame[Math.max(1, bufferedFrames)];
+        this.gapStats = gapStats;
+        this.frameHits = Metrics.counter("emusic_frames_provided_total",
+                "Frames handed to JDA.", "guild", guildId);
+        this.frameMisses = Metrics.counter("emusic_frame_underruns_total",
+                "Times JDA asked for a frame while a track was playing and none was ready.", "guild", guildId);
+        this.startupMisses = Metrics.counter("emusic_frame_startup_misses_total",
+                "Times JDA asked for a frame while a track was loading or buffering its first frame.",
+                "guild", guildId);
     }
 
     @Override
-    public boolean canProvide() {
-        if (lastFrame == null) {
-            lastFrame = audioPlayer.provide();
+    public synchronized boolean canProvide() {
+        fill();
+        if (size > 0) {
+            frameHits.inc();
         }
-
-        return lastFrame != null;
+        else if (broadcast != null ? !broadcast.isPaused()
+                : audioPlayer.getPlayingTrack() != null && !audioPlayer.isPaused()) {
+            if (source() == started)
+                frameMisses.inc();
+            else
+                startupMisses.inc();
+        }
+        return size > 0;
     }
 
     @Override
-    public byte[] provide20MsAudio() {
-        if (lastFrame == null) {
-            lastFrame = audioPlayer.provide();
-        }
+    public synchronized byte[] provide20MsAudio() {
+        fill();
+        if (size == 0)
+            return null;
 
-        byte[] data = lastFrame != null ? lastFrame.data : null;
-        lastFrame = null;
+        AudioFrame frame = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
 
-        return data;
+        return frame.data;
     }
 
     @Override
     public boolean isOpus() {
         return true;
     }
+
+    /**
+     * @return Frames handed to JDA so far.
+     */
+    long getFramesProvided() {
+        return frameHits.get();
+    }
+
+    /**
+     * @return Times JDA asked for a frame while a track was playing and none was ready.
+     */
+    long getUnderruns() {
+        return frameMisses.get();
+    }
+
+    /**
+     * @return Times JDA asked for a frame while a track was loading or buffering its first frame.
+     */
+    long getStartupMisses() {
+        return startupMisses.get();
+    }
+
+    /**
+     * Drops any frames that were pulled ahead, so a skip or stop isn't followed by audio from the old track.
+     */
+    synchronized void clearBuffer() {
+        for (int i = 0; i < ring.length; i++)
+            ring[i] = null;
+        head = 0;
+        size = 0;
+        transitionStartedAt = 0;
+        started = null;
+    }
+
+    /**
+     * Starts pulling frames from another player.
+     * @param audioPlayer The player to wrap from now on.
+     */
+    synchronized void setPlayer(AudioPlayer audioPlayer) {
+        this.audioPlayer = audioPlayer;
+    }
+
+    /**
+     * Starts reading frames from a radio broadcast instead of the player, or goes back to the player. Frames already
+     * pulled ahead are dropped either way.
+     * @param broadcast The guild's subscription to the broadcast, or null to read from the player again.
+     */
+    synchronized void setBroadcast(RadioBroadcasts.Subscription broadcast) {
+        this.broadcast = broadcast;
+        clearBuffer();
+    }
+
+    /**
+     * Starts measuring a gap between tracks; it ends when the next frame is pulled from the player.
+     * @param endedAt {@link System#nanoTime()} of when the last track finished.
+     */
+    synchronized void markTransition(long endedAt) {
+        if (gapStats != null)
+            transitionStartedAt = endedAt;
+    }
+
+    /**
+     * Tops up the ring with frames from the player until it is full or the player has nothing ready.
+     */
+    private void fill() {
+        while (size < ring.length) {
+            // Read the field every time; the player can be swapped by a track ending during provide().
+            AudioFrame frame = broadcast != null ? broadcast.nextFrame() : audioPlayer.provide();
+            if (cache != null && broadcast == null)
+                record(frame);
+            if (frame == null)
+                return;
+            started = source();
+            if (transitionStartedAt != 0) {
+                gapStats.record(System.nanoTime() - transitionStartedAt);
+                transitionStartedAt = 0;
+            }
+            ring[(head + size) % ring.length] = frame;
+            size++;
+        }
+    }
+
+    /**
+     * @return What frames are pulled from now: the broadcast subscription, or the player's playing track.
+     */
+    private Object source() {
+        return broadcast != null ? broadcast : audioPlayer.getPlayingTrack();
+    }
+
+    /**
+     * Records a frame pulled from the player. A recording starts with the first frame of a track and ends when a frame
+     * of another track arrives, the player runs out, or a frame is skipped by a seek; it is only kept if it reached the
+     * end of the track.
+     * @param frame The frame, or null if the player had none ready.
+     */
+    private void record(AudioFrame frame) {
+        AudioTrack playing = audioPlayer.getPlayingTrack();
+        if (frame == null) {
+            // A pause or a slow source leaves the track playing; anything else ends the recording.
+            if (recording != null && !recording.isOf(playing)) {
+                recording.finish();
+                recording = null;
+            }
+            return;
+        }
+        if (recording != null && !recording.add(playing, frame)) {
+            recording.finish();
+            recording = null;
+        }
+        if (recording == null && frame.timecode == 0 && playing != null) {
+            recording = cache.startRecording(playing);
+            if (recording != null)
+                recording.add(playing, frame);
+        }
+    }
 }
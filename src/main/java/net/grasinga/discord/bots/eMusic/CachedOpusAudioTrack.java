@@ -0,0 +1,77 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.container.common.OpusPacketRouter;
+import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BaseAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A track played from the Opus frames in the {@link OpusFrameCache}.<br>
+ * The frames are routed as Opus packets, so when the output format matches and the volume is untouched lavaplayer
+ * passes them to the send handler as they are, without decoding or encoding. Playback starts as soon as the file is
+ * mapped.
+ */
+class CachedOpusAudioTrack extends BaseAudioTrack {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int CHANNELS = 2;
+
+    private final String key;
+    private final OpusFrameCache cache;
+    private final CachedOpusSourceManager sourceManager;
+
+    /**
+     * @param trackInfo Info of the track as it was recorded.
+     * @param key Identifier the track is cached under.
+     * @param cache Cache holding the track's frames.
+     * @param sourceManager Source manager that loaded the track.
+     */
+    CachedOpusAudioTrack(AudioTrackInfo trackInfo, String key, OpusFrameCache cache,
+                         CachedOpusSourceManager sourceManager) {
+        super(trackInfo);
+        this.key = key;
+        this.cache = cache;
+        this.sourceManager = sourceManager;
+    }
+
+    /**
+     * @return Identifier the track is cached under.
+     */
+    String getKey() {
+        return key;
+    }
+
+    @Override
+    public void process(LocalAudioTrackExecutor executor) throws Exception {
+        OpusFrameCache.Entry entry = cache.peek(key);
+        if (entry == null)
+            throw new FriendlyException("The track is no longer cached.", FriendlyException.Severity.COMMON, null);
+
+        OpusFrameCache.FrameReader reader = cache.open(entry);
+        OpusPacketRouter router = new OpusPacketRouter(executor.getProcessingContext(), SAMPLE_RATE, CHANNELS);
+        try {
+            executor.executeProcessingLoop(() -> {
+                ByteBuffer packet;
+                while ((packet = reader.next()) != null)
+                    router.process(packet);
+                router.flush();
+            }, position -> router.seekPerformed(position, reader.seek(position)));
+        } finally {
+            router.close();
+        }
+    }
+
+    @Override
+    public AudioTrack makeClone() {
+        return new CachedOpusAudioTrack(trackInfo, key, cache, sourceManager);
+    }
+
+    @Override
+    public AudioSourceManager getSourceManager() {
+        return sourceManager;
+    }
+}
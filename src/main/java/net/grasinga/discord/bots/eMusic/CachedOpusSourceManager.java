@@ -0,0 +1,71 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
+import com.sedmelluq.discord.lavaplayer.track.AudioReference;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Source manager that loads tracks from the {@link OpusFrameCache}. It is registered before the remote sources, so a
+ * track that has been played before is found here and never fetched again.
+ */
+class CachedOpusSourceManager implements AudioSourceManager {
+    private final OpusFrameCache cache;
+
+    /**
+     * Cache hits and misses of loaded identifiers.
+     */
+    private final Metrics.Counter hits = Metrics.counter("emusic_opus_cache_hits_total",
+            "Audio sources loaded from the Opus frame cache.");
+    private final Metrics.Counter misses = Metrics.counter("emusic_opus_cache_misses_total",
+            "Audio sources not in the Opus frame cache.");
+
+    /**
+     * @param cache Cache to load tracks from.
+     */
+    CachedOpusSourceManager(OpusFrameCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public String getSourceName() {
+        return "opus-cache";
+    }
+
+    @Override
+    public AudioItem loadItem(DefaultAudioPlayerManager manager, AudioReference reference) {
+        OpusFrameCache.Entry entry = cache.get(reference.identifier);
+        if (entry == null) {
+            misses.inc();
+            return null;
+        }
+        hits.inc();
+        return new CachedOpusAudioTrack(entry.getInfo(), reference.identifier, cache, this);
+    }
+
+    @Override
+    public boolean isTrackEncodable(AudioTrack track) {
+        return true;
+    }
+
+    @Override
+    public void encodeTrack(AudioTrack track, DataOutput output) throws IOException {
+        output.writeUTF(((CachedOpusAudioTrack) track).getKey());
+    }
+
+    @Override
+    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) throws IOException {
+        return new CachedOpusAudioTrack(trackInfo, input.readUTF(), cache, this);
+    }
+
+    @Override
+    public void shutdown() {
+        // Nothing to release; cached files are only mapped while a track plays.
+    }
+}
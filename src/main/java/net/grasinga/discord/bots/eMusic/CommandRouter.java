@@ -0,0 +1,198 @@
+package net.grasinga.discord.bots.eMusic;
+
+import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds the command of a guild message and parses its arguments.<br>
+ * Most messages aren't commands, so a message is first rejected by looking only at the first character of its raw
+ * content, which allocates nothing. Commands are then found in a lookup table built once, and each command parses its
+ * own arguments before its handler is run.
+ */
+class CommandRouter {
+    /**
+     * Parses the text after a command's name.
+     * @param <A> Type of the parsed arguments.
+     */
+    interface ArgumentParser<A> {
+        /**
+         * @param arguments Text after the command's name, trimmed; empty if there is none.
+         * @return The parsed arguments.
+         * @throws IllegalArgumentException If the arguments are invalid; the command's usage is shown instead.
+         */
+        A parse(String arguments);
+    }
+
+    /**
+     * Runs a command with its parsed arguments.
+     * @param <A> Type of the parsed arguments.
+     */
+    interface Handler<A> {
+        /**
+         * @param event The message event of the command.
+         * @param arguments The parsed arguments.
+         */
+        void handle(GuildMessageReceivedEvent event, A arguments);
+    }
+
+    /**
+     * Takes no arguments; anything after the command's name is ignored.
+     */
+    static final ArgumentParser<Void> NO_ARGUMENTS = arguments -> null;
+
+    /**
+     * Takes the rest of the message as is, which may be empty.
+     */
+    static final ArgumentParser<String> TEXT = arguments -> arguments;
+
+    /**
+     * Takes the rest of the message, which may not be empty.
+     */
+    static final ArgumentParser<String> REQUIRED_TEXT = arguments -> {
+        if (arguments.isEmpty())
+            throw new IllegalArgumentException("Missing argument");
+        return arguments;
+    };
+
+    /**
+     * Takes an optional number; null if none was given.
+     */
+    static final ArgumentParser<Integer> OPTIONAL_NUMBER = arguments -> {
+        if (arguments.isEmpty())
+            return null;
+        return Integer.parseInt(firstWord(arguments));
+    };
+
+    /**
+     * Takes exactly two numbers.
+     */
+    static final ArgumentParser<int[]> TWO_NUMBERS = arguments -> {
+        String[] parts = arguments.split("\\s+");
+        if (parts.length < 2)
+            throw new IllegalArgumentException("Expected two numbers");
+        return new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+    };
+
+    /**
+     * Characters that commands can start with, indexed by character.
+     */
+    private final boolean[] prefixes = new boolean[128];
+    private final Map<String, Route<?>> routes = new HashMap<>();
+    private final MessageOutbox outbox;
+
+    /**
+     * @param outbox Where usage replies are sent.
+     */
+    CommandRouter(MessageOutbox outbox) {
+        this.outbox = outbox;
+    }
+
+    /**
+     * Adds a command to the lookup table.
+     * @param parser Parser of the command's arguments.
+     * @param handler Runs the command.
+     * @param usage Shown when the arguments can't be parsed.
+     * @param names Names of the command, such as "-queue" and "-list". Case insensitive. The first name labels the
+     *              command's latency metric.
+     * @param <A> Type of the parsed arguments.
+     */
+    <A> void register(ArgumentParser<A> parser, Handler<A> handler, String usage, String... names) {
+        Metrics.Histogram latency = Metrics.histogram("emusic_command_seconds",
+                "Time taken to run a command, by command.", "command", names[0].toLowerCase(Locale.ROOT));
+        Route<A> route = new Route<>(parser, handler, usage, outbox, latency);
+        for (String name : names) {
+            routes.put(name.toLowerCase(Locale.ROOT), route);
+            char prefix = name.charAt(0);
+            if (prefix < prefixes.length)
+                prefixes[prefix] = true;
+        }
+    }
+
+    /**
+     * Finds the command of a message and parses its arguments.
+     * @param event The message event.
+     * @return The command ready to run, or null if the message isn't a command.
+     */
+    Runnable route(GuildMessageReceivedEvent event) {
+        return route(event.getMessage().getRawContent(), event);
+    }
+
+    /**
+     * Finds the command of a message's raw content and parses its arguments.
+     * @param content Raw content of the message.
+     * @param event The message event, bound to the command's handler.
+     * @return The command ready to run, or null if the message isn't a command.
+     */
+    Runnable route(String content, GuildMessageReceivedEvent event) {
+        if (!isCommandPrefix(content))
+            return null;
+
+        int end = content.indexOf(' ');
+        String name = (end < 0 ? content : content.substring(0, end)).toLowerCase(Locale.ROOT);
+        Route<?> route = routes.get(name);
+        if (route == null)
+            return null;
+
+        return route.bind(event, end < 0 ? "" : content.substring(end + 1).trim());
+    }
+
+    /**
+     * Checks if a message could be a command without allocating anything.
+     * @param content Raw content of the message.
+     * @return True if the message starts with a command prefix.
+     */
+    boolean isCommandPrefix(String content) {
+        if (content.isEmpty())
+            return false;
+        char first = content.charAt(0);
+        return first < prefixes.length && prefixes[first];
+    }
+
+    private static String firstWord(String text) {
+        int end = text.indexOf(' ');
+        return end < 0 ? text : text.substring(0, end);
+    }
+
+    /**
+     * A command's parser, handler and usage.
+     */
+    private static class Route<A> {
+        private final ArgumentParser<A> parser;
+        private final Handler<A> handler;
+        private final String usage;
+        private final MessageOutbox outbox;
+        private final Metrics.Histogram latency;
+
+        private Route(ArgumentParser<A> parser, Handler<A> handler, String usage, MessageOutbox outbox,
+                      Metrics.Histogram latency) {
+            this.parser = parser;
+            this.handler = handler;
+            this.usage = usage;
+            this.outbox = outbox;
+            this.latency = latency;
+        }
+
+        /**
+         * Parses the arguments and binds them to the handler; invalid arguments bind to a usage message instead.
+         */
+        private Runnable bind(GuildMessageReceivedEvent event, String arguments) {
+            A parsed;
+            try {
+                parsed = parser.parse(arguments);
+            } catch (IllegalArgumentException e) {
+                return () -> outbox.send(event.getChannel(), "Usage: " + usage);
+            }
+            return () -> {
+                long start = System.nanoTime();
+                try {
+                    handler.handle(event, parsed);
+                } finally {
+                    latency.observeSince(start);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs commands off of JDA's event thread.<br>
+ * Each guild gets its own lane: commands in a lane run one at a time in the order they were submitted, while
+ * different lanes run in parallel on a bounded pool of worker threads. A lane runs at most {@link #MAX_BATCH} commands
+ * before it goes to the back of the pool's queue, so a busy guild can't keep a worker from the others.
+ */
+class GuildCommandExecutor {
+    /**
+     * Maximum amount of commands that can be waiting in a single guild's lane.
+     */
+    private static final int MAX_PENDING_PER_GUILD = 16;
+
+    /**
+     * Most commands a lane runs before it gives its worker thread up.
+     */
+    static final int MAX_BATCH = 4;
+
+    private final ExecutorService workers;
+    private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * @param threads Amount of worker threads shared by all guilds.
+     */
+    GuildCommandExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "eMusic-command-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // Lanes never hand more than one task per guild to the pool, so the pool's queue is bounded by guild count.
+        workers = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+    }
+
+    /**
+     * Adds a command to the guild's lane.
+     * @param guildId Id of the guild the command was used in.
+     * @param command The command to run.
+     * @return False if the guild already has too many commands waiting and the command was dropped.
+     */
+    boolean submit(long guildId, Runnable command) {
+        Lane lane = lanes.computeIfAbsent(guildId, k -> new Lane());
+        if (lane.pending.incrementAndGet() > MAX_PENDING_PER_GUILD) {
+            lane.pending.decrementAndGet();
+            return false;
+        }
+        lane.commands.add(command);
+        lane.schedule();
+        return true;
+    }
+
+    /**
+     * Drops a guild's lane, such as when the bot leaves the guild. Commands still waiting in it are dropped; one that
+     * is running finishes.
+     * @param guildId Id of the guild.
+     */
+    void remove(long guildId) {
+        Lane lane = lanes.remove(guildId);
+        if (lane != null)
+            lane.commands.clear();
+    }
+
+    /**
+     * @return Amount of guilds with a lane.
+     */
+    int getLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * Serialized queue of commands for one guild.
+     */
+    private class Lane implements Runnable {
+        private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean running = new AtomicBoolean(false);
+
+        /**
+         * Hands the lane to the pool if it isn't already running.
+         */
+        private void schedule() {
+            if (running.compareAndSet(false, true))
+                workers.execute(this);
+        }
+
+        @Override
+        public void run() {
+            Runnable command;
+            for (int ran = 0; ran < MAX_BATCH && (command = commands.poll()) != null; ran++) {
+                pending.decrementAndGet();
+                try {
+                    command.run();
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                }
+            }
+            running.set(false);
+            // Commands are left after a full batch, or one was added after the last poll but before running was
+            // cleared.
+            if (!commands.isEmpty())
+                schedule();
+        }
+    }
+}
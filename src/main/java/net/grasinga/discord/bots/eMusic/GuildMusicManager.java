@@ -2,42 +2,144 @@ package net.grasinga.discord.bots.eMusic;
 
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 
 /**
- * Holder for both the player and a track scheduler for one guild.
+ * Holder for the players, the track scheduler and the playback state of one guild.
  */
 class GuildMusicManager {
-    /**
-     * Audio player for the guild.
-     */
-    private final AudioPlayer player;
     /**
      * Track scheduler for the player.
      */
     final TrackScheduler scheduler;
+    /**
+     * Playback state of the guild.
+     */
+    private final GuildPlaybackState state;
+    /**
+     * Send handler for the player, buffering a few frames ahead of JDA.
+     */
+    private final AudioPlayerSendHandler sendHandler;
+    /**
+     * Radio broadcast the guild is listening to instead of its own player, or null.
+     */
+    private RadioBroadcasts.Subscription broadcast = null;
 
     /**
-     * Creates a player and a track scheduler.
-     * @param manager Audio player manager to use for creating the player.
+     * Creates the players and a track scheduler.<br>
+     * Two players are created so the scheduler can prepare the next track on one while the other is playing.
+     * @param manager Audio player manager to use for creating the players.
+     * @param gapStats Where gaps between tracks are recorded.
+     * @param guildId Id of the guild, used to label its metrics.
+     * @param cache Cache to record played tracks into, or null.
      */
-    GuildMusicManager(AudioPlayerManager manager) {
-        player = manager.createPlayer();
-        scheduler = new TrackScheduler(player);
+    GuildMusicManager(AudioPlayerManager manager, TrackGapStats gapStats, String guildId, OpusFrameCache cache) {
+        AudioPlayer player = manager.createPlayer();
+        AudioPlayer standby = manager.createPlayer();
+        state = new GuildPlaybackState();
+        sendHandler = new AudioPlayerSendHandler(player, AudioPlayerSendHandler.DEFAULT_BUFFERED_FRAMES, gapStats,
+                guildId, cache);
+        scheduler = new TrackScheduler(player, standby, state, sendHandler);
         player.addListener(scheduler);
+        standby.addListener(scheduler);
+        Metrics.gauge("emusic_guild_passthrough",
+                "1 if the guild's track is known to be passed through, 0 if it is transcoded or not known.",
+                () -> getPipeline() == OpusPassthrough.Pipeline.PASSTHROUGH ? 1 : 0, "guild", guildId);
     }
 
     /**
-     * Returns the {@link AudioPlayer}.
+     * Returns the {@link AudioPlayer} being heard. It changes whenever the scheduler hands off to a prepared track,
+     * so it shouldn't be kept.
      * @return The {@link AudioPlayer}.
      */
     AudioPlayer getPlayer() {
-        return player;
+        return scheduler.getPlayer();
+    }
+
+    /**
+     * @return Whether the track being heard is passed through or transcoded, or null if nothing is playing.
+     * @see OpusPassthrough
+     */
+    OpusPassthrough.Pipeline getPipeline() {
+        if (getBroadcast() != null)
+            return null;
+        AudioPlayer player = getPlayer();
+        AudioTrack track = player.getPlayingTrack();
+        return track == null ? null : OpusPassthrough.classify(track, player);
+    }
+
+    /**
+     * @return Playback state of the guild.
+     */
+    GuildPlaybackState getState() {
+        return state;
     }
 
     /**
      * @return Wrapper around AudioPlayer to use it as an AudioSendHandler.
      */
     AudioPlayerSendHandler getSendHandler() {
-        return new AudioPlayerSendHandler(player);
+        return sendHandler;
+    }
+
+    /**
+     * Listens to a shared radio broadcast instead of the guild's own player, leaving any earlier broadcast.
+     * @param subscription The guild's subscription to the broadcast.
+     */
+    void joinBroadcast(RadioBroadcasts.Subscription subscription) {
+        RadioBroadcasts.Subscription previous;
+        synchronized (this) {
+            previous = broadcast;
+            broadcast = subscription;
+        }
+        sendHandler.setBroadcast(subscription);
+        if (previous != null)
+            previous.cancel();
+    }
+
+    /**
+     * Stops listening to the radio broadcast, if any, and goes back to the guild's own player.
+     * @return True if the guild was listening to a broadcast.
+     */
+    boolean leaveBroadcast() {
+        RadioBroadcasts.Subscription previous;
+        synchronized (this) {
+            previous = broadcast;
+            broadcast = null;
+        }
+        if (previous == null)
+            return false;
+        sendHandler.setBroadcast(null);
+        previous.cancel();
+        return true;
+    }
+
+    /**
+     * Leaves the radio broadcast only if it is still the given one; used when a broadcast fails.
+     * @param subscription The subscription that ended.
+     */
+    void leaveBroadcast(RadioBroadcasts.Subscription subscription) {
+        synchronized (this) {
+            if (broadcast != subscription)
+                return;
+            broadcast = null;
+        }
+        sendHandler.setBroadcast(null);
+        subscription.cancel();
+    }
+
+    /**
+     * Leaves the radio broadcast and stops and destroys the guild's players. Used once the bot left the guild.
+     */
+    void destroy() {
+        leaveBroadcast();
+        scheduler.destroy();
+    }
+
+    /**
+     * @return The radio broadcast the guild is listening to, or null if it plays from its own player.
+     */
+    synchronized RadioBroadcasts.Subscription getBroadcast() {
+        return broadcast;
     }
 }
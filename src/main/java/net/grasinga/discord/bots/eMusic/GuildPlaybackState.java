@@ -0,0 +1,76 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import net.dv8tion.jda.core.entities.VoiceChannel;
+
+/**
+ * Playback state of one guild, owned by its {@link GuildMusicManager}.<br>
+ * <br>
+ * Thread confinement: the state is only written by threads working for its own guild. Those are the guild's command
+ * lane in {@link GuildCommandExecutor}, the load callbacks of loadItemOrdered (which are ordered per music manager),
+ * and the guild's player events in {@link TrackScheduler}. No two guilds ever share a state, so guilds never contend.
+ * Since more than one of those threads can touch the same guild, every field is volatile.
+ */
+class GuildPlaybackState {
+    private volatile boolean trackLoaded = false;
+    private volatile AudioTrack currentTrack = null;
+    private volatile VoiceChannel voiceChannel = null;
+    private volatile boolean playbackFinished = false;
+
+    /**
+     * @return True if the last play command loaded a track.
+     */
+    boolean isTrackLoaded() {
+        return trackLoaded;
+    }
+
+    /**
+     * @param trackLoaded Whether the last play command loaded a track.
+     */
+    void setTrackLoaded(boolean trackLoaded) {
+        this.trackLoaded = trackLoaded;
+    }
+
+    /**
+     * @return The track last seen playing, or null if there is none.
+     */
+    AudioTrack getCurrentTrack() {
+        return currentTrack;
+    }
+
+    /**
+     * @param currentTrack The track last seen playing.
+     */
+    void setCurrentTrack(AudioTrack currentTrack) {
+        this.currentTrack = currentTrack;
+    }
+
+    /**
+     * @return VoiceChannel that the bot is/will be playing in.
+     */
+    VoiceChannel getVoiceChannel() {
+        return voiceChannel;
+    }
+
+    /**
+     * @param voiceChannel VoiceChannel that the bot is/will be playing in.
+     */
+    void setVoiceChannel(VoiceChannel voiceChannel) {
+        this.voiceChannel = voiceChannel;
+    }
+
+    /**
+     * @return True if the queue ran out and playback finished.
+     */
+    boolean isPlaybackFinished() {
+        return playbackFinished;
+    }
+
+    /**
+     * Set whether the playback is finished or not.
+     * @param playbackFinished Playback's state.
+     */
+    void setPlaybackFinished(boolean playbackFinished) {
+        this.playbackFinished = playbackFinished;
+    }
+}
@@ -0,0 +1,125 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the info of watched internet radio stations up to date in the background.<br>
+ * Each Icecast host's status is fetched once per interval no matter how many guilds are listening to it, and the
+ * latest info of each mount is kept as an immutable {@link StationInfo}, so reading it never touches the network.
+ */
+class IcecastPoller {
+    /**
+     * Fetches an Icecast server's status.
+     * @see InternetRadioParser#fetchStatus(String)
+     */
+    interface StatusFetcher {
+        /**
+         * @param jsonUrl The server's status-json.xsl URL.
+         * @return Info of each mount, by exact mount path.
+         * @throws IOException If the server could not be reached or its status could not be read.
+         */
+        Map<String, StationInfo> fetch(String jsonUrl) throws IOException;
+    }
+
+    /**
+     * How often each watched host's status is fetched.
+     */
+    private static final long POLL_INTERVAL_SECONDS = 15;
+
+    /**
+     * How long a host is polled after its info was last read or watched.
+     */
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final StatusFetcher fetcher;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "eMusic-icecast-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    IcecastPoller() {
+        this(InternetRadioParser::fetchStatus);
+    }
+
+    /**
+     * @param fetcher Fetches each watched host's status, such as a stand-in that never touches the network.
+     */
+    IcecastPoller(StatusFetcher fetcher) {
+        this.fetcher = fetcher;
+        executor.scheduleWithFixedDelay(this::pollAll, POLL_INTERVAL_SECONDS, POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts polling the host of a radio stream, if it isn't polled already.
+     * @param streamUrl Radio station's mp3 stream.
+     */
+    void watch(String streamUrl) {
+        String jsonUrl = InternetRadioParser.getJsonURL(streamUrl);
+        Host host = hosts.computeIfAbsent(jsonUrl, Host::new);
+        host.lastUsed = System.currentTimeMillis();
+        if (host.mounts == null)
+            executor.execute(host::poll);
+    }
+
+    /**
+     * Gets the latest info of a radio stream without any network I/O.
+     * @param streamUrl Radio station's mp3 stream.
+     * @return The latest info or null if the stream's host hasn't been fetched yet.
+     */
+    StationInfo get(String streamUrl) {
+        Host host = hosts.get(InternetRadioParser.getJsonURL(streamUrl));
+        if (host == null) {
+            watch(streamUrl);
+            return null;
+        }
+        host.lastUsed = System.currentTimeMillis();
+
+        Map<String, StationInfo> mounts = host.mounts;
+        if (mounts == null)
+            return null;
+        StationInfo info = mounts.get(InternetRadioParser.getMountPath(streamUrl));
+        return info != null ? info : StationInfo.UNKNOWN;
+    }
+
+    /**
+     * Polls every watched host and stops watching hosts nobody has used for a while. A host whose fetch fails keeps
+     * the info of its last good fetch.
+     */
+    void pollAll() {
+        long now = System.currentTimeMillis();
+        hosts.values().removeIf(host -> now - host.lastUsed > IDLE_TIMEOUT_MILLIS);
+        for (Host host : hosts.values())
+            host.poll();
+    }
+
+    /**
+     * An Icecast host and the latest info of its mounts.
+     */
+    private class Host {
+        private final String jsonUrl;
+        private volatile Map<String, StationInfo> mounts = null;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private Host(String jsonUrl) {
+            this.jsonUrl = jsonUrl;
+        }
+
+        private void poll() {
+            try {
+                mounts = Collections.unmodifiableMap(fetcher.fetch(jsonUrl));
+            } catch (Exception e) {
+                System.out.println("Could not get station info from: " + jsonUrl);
+                if (mounts == null)
+                    mounts = Collections.emptyMap();
+            }
+        }
+    }
+}
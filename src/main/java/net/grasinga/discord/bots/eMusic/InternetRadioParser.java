@@ -1,113 +1,174 @@
 package net.grasinga.discord.bots.eMusic;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
-import java.io.InputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
+import java.net.URI;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * Gets an internet radio station's information.
+ * Gets an internet radio station's information.<br>
+ * The bot reads it through {@link IcecastPoller}, which fetches each server's status in the background and keeps the
+ * last good one while a server is unreachable.
  */
 class InternetRadioParser {
-
     /**
-     * Gets the radio station's name from the url parameter.
-     *
-     * @param url Radio station's mp3 stream.
-     * @return Radio Station's name.
+     * How long to wait for an Icecast server to accept the connection, and then for each read of its status.
      */
-    static String getStationName(String url) {return getInfo(url, "station");}
+    private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+    private static final int READ_TIMEOUT_MILLIS = 5000;
 
     /**
-     * Gets the radio station's song from the url parameter.
-     *
-     * @param url Radio station's mp3 stream.
-     * @return Current song's title.
+     * Latency and failures of fetching a status document.
      */
-    static String getCurrentSong(String url){return getInfo(url, "song");}
+    private static final Metrics.Histogram FETCH_LATENCY = Metrics.histogram("emusic_icecast_fetch_seconds",
+            "Time taken to fetch and parse an Icecast status document.");
+    private static final Metrics.Counter FETCH_FAILURES = Metrics.counter("emusic_icecast_fetch_failures_total",
+            "Icecast status documents that could not be fetched or parsed.");
 
     /**
-     * Gets the radio station's artist from the url parameter.
+     * Fetches an Icecast server's status once and gets the info of every mount it lists.<br>
+     * Gives up after {@link #CONNECT_TIMEOUT_MILLIS} if the server doesn't accept the connection, or after
+     * {@link #READ_TIMEOUT_MILLIS} without any data, so a stalled server never holds up the caller.
      *
-     * @param url Radio station's mp3 stream.
-     * @return Current song's artist.
+     * @param jsonUrl The server's status-json.xsl URL.
+     * @return Info of each mount, by exact mount path.
+     * @throws IOException If the server could not be reached or its status could not be read.
+     * @see #getJsonURL(String)
      */
-    static String getCurrentSongArtist(String url) {return getInfo(url, "artist");}
+    static Map<String, StationInfo> fetchStatus(String jsonUrl) throws IOException {
+        long start = System.nanoTime();
+        try {
+            // Connect to the URL using java's native library
+            URL mount = new URL(jsonUrl);
+            HttpURLConnection request = (HttpURLConnection) mount.openConnection();
+            request.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            request.setReadTimeout(READ_TIMEOUT_MILLIS);
+            request.connect();
+
+            try (JsonReader reader = new JsonReader(new InputStreamReader(request.getInputStream()))) {
+                return parseStatus(reader);
+            } finally {
+                request.disconnect();
+            }
+        } catch (IOException | RuntimeException e) {
+            FETCH_FAILURES.inc();
+            throw e;
+        } finally {
+            FETCH_LATENCY.observeSince(start);
+        }
+    }
 
     /**
-     * Gets the radio station's song info from the url parameter.
+     * Gets the info of every mount listed in an Icecast status document in a single streaming pass. Only the fields
+     * that are used are read; everything else is skipped without being built into a tree.
      *
-     * @param url Radio station's mp3 stream.
-     * @return Current song's artist and title.
+     * @param reader Reader of the status-json.xsl document.
+     * @return Info of each mount, by exact mount path.
+     * @throws IOException If the document could not be read or is not valid JSON.
+     * @see #getMountPath(String)
      */
-    static String getCurrentSongInfo(String url) {return getInfo(url, "info");}
+    static Map<String, StationInfo> parseStatus(JsonReader reader) throws IOException {
+        Map<String, StationInfo> mounts = new HashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("icestats")) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("source")) {
+                    reader.skipValue();
+                    continue;
+                }
+                // Icecast lists a lone mount as an object instead of an array of one.
+                if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext())
+                        parseSource(reader, mounts);
+                    reader.endArray();
+                }
+                else if (reader.peek() == JsonToken.BEGIN_OBJECT)
+                    parseSource(reader, mounts);
+                else
+                    reader.skipValue();
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+
+        return mounts;
+    }
 
     /**
-     * Gets info from the radio station provided by the url parameter.
+     * Reads one entry of the status document's source list and adds it to the mounts.
      *
-     * @param url Radio station's mp3 stream.
-     * @param type Type of info wanting to be returned.
-     * @return Info based on type parameter.
-     * @see #getStationName(String)
-     * @see #getCurrentSong(String)
+     * @param reader Reader positioned at the start of the source object.
+     * @param mounts Info of each mount, by exact mount path.
+     * @throws IOException If the document could not be read or is not valid JSON.
      */
-    private static String getInfo(String url, String type){
-        String mountPoint = getMountPoint(url);
-
-        URL mount;
-        HttpURLConnection request;
-        try {
-            // Connect to the URL using java's native library
-            mount = new URL(getJsonURL(url));
-            request = (HttpURLConnection) mount.openConnection();
-            request.connect();
-        } catch (Exception e) {return "Could not connect to: " + getJsonURL(url);}
-
-        // Convert to a JSON object to print data
-        JsonParser jp = new JsonParser(); //from gson
-        JsonElement jsonResponse;
-        try {
-            jsonResponse = jp.parse(new JsonReader(new InputStreamReader((InputStream) request.getContent())));
-        } catch (Exception e) {return "Was unable to get JSON data from: " + getJsonURL(url);}
-
-        JsonObject obj = jsonResponse.getAsJsonObject();
-        JsonArray sourceArray = obj.getAsJsonObject("icestats").getAsJsonArray("source");
+    private static void parseSource(JsonReader reader, Map<String, StationInfo> mounts) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
 
+        String listenUrl = null;
         String stationName = "Unknown";
         String artist = "Unknown";
         String song = "Unknown";
         String fullSongInfo = "Unknown";
 
-        for(JsonElement element : sourceArray){
-            if(element.toString().contains(mountPoint)) {
-                if(element.getAsJsonObject().get("server_name") != null)
-                    stationName = element.getAsJsonObject().get("server_name").getAsString();
-                if(element.getAsJsonObject().get("artist") != null)
-                    artist = element.getAsJsonObject().get("artist").getAsString();
-                if(element.getAsJsonObject().get("title") != null)
-                    song = element.getAsJsonObject().get("title").getAsString();
-                if(element.getAsJsonObject().get("yp_currently_playing") != null)
-                    fullSongInfo = element.getAsJsonObject().get("yp_currently_playing").getAsString();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "listenurl":
+                    listenUrl = nextString(reader, null);
+                    break;
+                case "server_name":
+                    stationName = nextString(reader, stationName);
+                    break;
+                case "artist":
+                    artist = nextString(reader, artist);
+                    break;
+                case "title":
+                    song = nextString(reader, song);
+                    break;
+                case "yp_currently_playing":
+                    fullSongInfo = nextString(reader, fullSongInfo);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
         }
+        reader.endObject();
 
-        if(type.equalsIgnoreCase("station"))
-            return stationName;
-        if(type.equalsIgnoreCase("song"))
-            return song;
-        if(type.equalsIgnoreCase("artist"))
-            return artist;
-        if(type.equalsIgnoreCase("info"))
-            return fullSongInfo;
-
+        if (listenUrl != null)
+            mounts.put(getMountPath(listenUrl), new StationInfo(stationName, artist, song, fullSongInfo));
+    }
 
-        return "N/A";
+    /**
+     * Reads a string or number value, skipping any other kind of value.
+     *
+     * @param reader Reader positioned at the value.
+     * @param fallback Value to use if the value isn't a string or number.
+     * @return The value as a string or the fallback.
+     * @throws IOException If the document could not be read or is not valid JSON.
+     */
+    private static String nextString(JsonReader reader, String fallback) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER)
+            return reader.nextString();
+        reader.skipValue();
+        return fallback;
     }
 
     /**
@@ -116,7 +177,7 @@ class InternetRadioParser {
      * @param url Radio station's mp3 stream.
      * @return Json file from url parameter.
      */
-    private static String getJsonURL(String url){
+    static String getJsonURL(String url){
         if(url.length() < 1)
             return "Invalid URL provided; can't get station info!";
 
@@ -133,7 +194,7 @@ class InternetRadioParser {
      * @param url Radio station's mp3 stream.
      * @return Gets the mounting point of the url parameter.
      */
-    private static String getMountPoint(String url){
+    static String getMountPoint(String url){
         if(url.length() < 1)
             return "Invalid URL provided; can't get mount point!";
 
@@ -143,4 +204,17 @@ class InternetRadioParser {
         else
             return (parts[1]);
     }
+
+    /**
+     * Gets the exact mount path of a radio stream, which is how {@link #parseStatus(JsonReader)} keys its mounts.
+     *
+     * @param url Radio station's mp3 stream.
+     * @return The path of the url parameter, such as "/stream", or "/" if it has none.
+     */
+    static String getMountPath(String url){
+        try {
+            String path = new URI(url).getRawPath();
+            return (path == null || path.isEmpty()) ? "/" : path;
+        } catch (Exception e) {return "/" + getMountPoint(url);}
+    }
 }
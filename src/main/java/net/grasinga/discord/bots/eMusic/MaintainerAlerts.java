@@ -0,0 +1,182 @@
+package net.grasinga.discord.bots.eMusic;
+
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.PrivateChannel;
+import net.dv8tion.jda.core.entities.Role;
+import net.dv8tion.jda.core.entities.User;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Notifies the members with the bot management role when a command fails, without blocking the caller.<br>
+ * <br>
+ * Failures are grouped by signature: the guild, the exception type, where it was thrown and the command. The first
+ * failure of a signature is sent right away; repeats within {@link #WINDOW_MINUTES} are only counted and then sent as
+ * one summary, such as "NullPointerException in -play x37 in the last 5 min". Alerts are sent from one thread with a
+ * bounded queue, so a storm of errors drops alerts instead of piling up work, and private channels are opened once
+ * and cached.
+ */
+class MaintainerAlerts {
+    /**
+     * Length of the window repeats of a failure are summarized over.
+     */
+    static final long WINDOW_MINUTES = 5;
+
+    /**
+     * Most alerts waiting to be sent; more are dropped.
+     */
+    private static final int MAX_QUEUED_ALERTS = 64;
+
+    /**
+     * Most signatures counted at once; failures with new signatures past this are dropped.
+     */
+    private static final int MAX_WINDOWS = 256;
+
+    private final String managerRole;
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, PrivateChannel> privateChannels = new ConcurrentHashMap<>();
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    private final ThreadPoolExecutor sender = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_ALERTS), r -> daemon(r, "eMusic-alerts"),
+            (r, executor) -> dropped.incrementAndGet());
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(
+            r -> daemon(r, "eMusic-alerts-sweep"));
+
+    /**
+     * @param managerRole Name of the role whose members are notified.
+     */
+    MaintainerAlerts(String managerRole) {
+        this.managerRole = managerRole;
+        sweeper.scheduleAtFixedRate(this::sweep, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Reports a failed command. Returns right away.
+     * @param e The exception the command failed with.
+     * @param guild The guild the command was used in.
+     * @param message The message of the command.
+     * @return True if this is the first failure of its kind in the current window, so the caller can log it in full.
+     */
+    boolean report(Exception e, Guild guild, Message message) {
+        String command = firstWord(message.getContent());
+        String signature = guild.getId() + '|' + e.getClass().getName() + '|' + topFrame(e) + '|' + command;
+
+        Window window = windows.get(signature);
+        if (window != null) {
+            window.repeats.incrementAndGet();
+            return false;
+        }
+        if (windows.size() >= MAX_WINDOWS) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        Window created = new Window(guild, e.getClass().getSimpleName(), command);
+        window = windows.putIfAbsent(signature, created);
+        if (window != null) {
+            window.repeats.incrementAndGet();
+            return false;
+        }
+
+        String alert = "An error occurred when " + message.getAuthor() + " issued command: " + message.getContent()
+                + "\nPlease check the console for the stacktrace.";
+        sender.execute(() -> notifyManagers(guild, alert));
+        return true;
+    }
+
+    /**
+     * @return Amount of alerts dropped because too many were waiting.
+     */
+    int getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Closes windows that have run their course, sending a summary of any repeats.
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Window> entry : windows.entrySet()) {
+            Window window = entry.getValue();
+            if (now - window.openedAt < TimeUnit.MINUTES.toNanos(WINDOW_MINUTES))
+                continue;
+            if (!windows.remove(entry.getKey(), window))
+                continue;
+
+            int repeats = window.repeats.get();
+            if (repeats > 0) {
+                String alert = "**" + window.exception + "** in " + window.command + " x" + repeats
+                        + " in the last " + WINDOW_MINUTES + " min on " + window.guild.getName()
+                        + ".\nPlease check the console for the stacktrace of the first one.";
+                sender.execute(() -> notifyManagers(window.guild, alert));
+            }
+        }
+    }
+
+    /**
+     * Sends an alert to every member of the guild with the bot management role.
+     */
+    private void notifyManagers(Guild guild, String alert) {
+        List<Role> roles = guild.getRolesByName(managerRole, true);
+        if (roles.isEmpty())
+            return;
+
+        for (Member member : guild.getMembersWithRoles(roles.get(0))) {
+            User user = member.getUser();
+            PrivateChannel cached = privateChannels.get(Long.parseLong(user.getId()));
+            if (cached != null)
+                cached.sendMessage(alert).queue();
+            else
+                user.openPrivateChannel().queue(pm -> {
+                    privateChannels.put(Long.parseLong(user.getId()), pm);
+                    pm.sendMessage(alert).queue();
+                });
+        }
+    }
+
+    private static String topFrame(Exception e) {
+        StackTraceElement[] trace = e.getStackTrace();
+        return trace.length == 0 ? "" : trace[0].toString();
+    }
+
+    private static String firstWord(String text) {
+        int end = text.indexOf(' ');
+        return end < 0 ? text : text.substring(0, end);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Failures of one signature within a window.
+     */
+    private static class Window {
+        private final long openedAt = System.nanoTime();
+        private final AtomicInteger repeats = new AtomicInteger();
+        private final Guild guild;
+        private final String exception;
+        private final String command;
+
+        private Window(Guild guild, String exception, String command) {
+            this.guild = guild;
+            this.exception = exception;
+            this.command = command;
+        }
+    }
+}
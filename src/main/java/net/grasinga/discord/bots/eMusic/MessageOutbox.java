@@ -0,0 +1,259 @@
+package net.grasinga.discord.bots.eMusic;
+
+import net.dv8tion.jda.core.entities.TextChannel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers the bot's replies per text channel so bursts of replies don't each hit Discord's per channel rate limit.<br>
+ * <br>
+ * Replies sent within {@link #MERGE_WINDOW_MILLIS} of each other are merged into one message, up to Discord's
+ * {@link #MAX_LENGTH} character limit. Each channel has at most one message in flight; JDA only completes it once
+ * the rate limit allows, and everything sent meanwhile is merged into the next message. A reply can carry a key, such
+ * as a "now playing" status; a newer reply with the same key drops the older one if it hasn't been sent yet.<br>
+ * <br>
+ * Backpressure: a channel buffers at most {@link #MAX_PENDING} messages, and sending never waits for room, so a slow
+ * channel can't hold up a guild's command lane or JDA's event thread. When the buffer is full a reply is merged into
+ * the last buffered message if it fits there; otherwise it is dropped.<br>
+ * <br>
+ * A channel's buffer is removed once it has nothing buffered or in flight, so channels the bot no longer talks in,
+ * including deleted ones and those of guilds it left, don't keep one.
+ */
+class MessageOutbox {
+    /**
+     * Longest message Discord accepts.
+     */
+    static final int MAX_LENGTH = 2000;
+
+    /**
+     * How long replies are held to be merged with the ones after them.
+     */
+    static final long MERGE_WINDOW_MILLIS = 250;
+
+    /**
+     * Most messages buffered per channel.
+     */
+    private static final int MAX_PENDING = 20;
+
+    private final ConcurrentMap<Long, ChannelBuffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "eMusic-outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Sends a reply. Replies over {@link #MAX_LENGTH} are split between lines.
+     * @param channel Channel to send to.
+     * @param text The reply.
+     */
+    void send(TextChannel channel, String text) {
+        send(channel, text, null);
+    }
+
+    /**
+     * Sends a status reply that replaces any unsent reply with the same key.
+     * @param channel Channel to send to.
+     * @param text The reply.
+     * @param key Kind of status, such as "now-playing", or null.
+     */
+    void send(TextChannel channel, String text, String key) {
+        List<String> pieces = split(text);
+        long channelId = Long.parseLong(channel.getId());
+        while (true) {
+            ChannelBuffer buffer = buffers.computeIfAbsent(channelId, ChannelBuffer::new);
+            synchronized (buffer) {
+                // The buffer went idle and was removed after it was looked up; use a new one.
+                if (buffer.removed)
+                    continue;
+                buffer.channel = channel;
+                add(buffer, pieces, key);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Buffers the pieces of a reply and schedules a flush. Called with the buffer's lock held.
+     */
+    private void add(ChannelBuffer buffer, List<String> pieces, String key) {
+        if (key != null)
+            for (Iterator<Pending> it = buffer.pending.iterator(); it.hasNext(); )
+                if (key.equals(it.next().key)) {
+                    it.remove();
+                    dropped.incrementAndGet();
+                }
+
+        for (String piece : pieces) {
+            if (buffer.pending.size() < MAX_PENDING)
+                buffer.pending.addLast(new Pending(piece, key));
+            else if (!merge(buffer, piece))
+                dropped.incrementAndGet();
+        }
+        if (!buffer.scheduled && !buffer.inFlight) {
+            buffer.scheduled = true;
+            flusher.schedule(() -> flush(buffer), MERGE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return Amount of replies dropped, either superseded or because a buffer stayed full.
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return Amount of channels with replies buffered or in flight.
+     */
+    int getChannelCount() {
+        return buffers.size();
+    }
+
+    /**
+     * Appends a reply to the last buffered message, the way {@link #flush} would join them. Keyed messages are left
+     * alone, as a newer status would drop the merged reply along with them.
+     * @return False if the reply doesn't fit into the last message.
+     */
+    private static boolean merge(ChannelBuffer buffer, String piece) {
+        Pending last = buffer.pending.peekLast();
+        if (last == null || last.key != null || last.text.length() + 1 + piece.length() > MAX_LENGTH)
+            return false;
+        buffer.pending.pollLast();
+        buffer.pending.addLast(new Pending(last.text + '\n' + piece, null));
+        return true;
+    }
+
+    /**
+     * Sends as many buffered replies as fit in one message.
+     */
+    private void flush(ChannelBuffer buffer) {
+        TextChannel channel;
+        StringBuilder message = new StringBuilder(MAX_LENGTH);
+        synchronized (buffer) {
+            buffer.scheduled = false;
+            if (buffer.inFlight)
+                return;
+            if (buffer.pending.isEmpty()) {
+                removeIfIdle(buffer);
+                return;
+            }
+
+            while (!buffer.pending.isEmpty()) {
+                String next = buffer.pending.peekFirst().text;
+                int separator = message.length() > 0 ? 1 : 0;
+                if (message.length() + separator + next.length() > MAX_LENGTH)
+                    break;
+                if (separator > 0)
+                    message.append('\n');
+                message.append(next);
+                buffer.pending.pollFirst();
+            }
+            buffer.inFlight = true;
+            channel = buffer.channel;
+        }
+
+        try {
+            channel.sendMessage(message.toString()).queue(m -> sent(buffer), e -> sent(buffer));
+        } catch (RuntimeException e) {
+            // JDA throws, rather than failing the request, when the bot may not write to the channel. The message is
+            // lost, but the channel must not stay in flight forever.
+            System.out.println("Could not send to channel " + buffer.channelId + ": " + e);
+            sent(buffer);
+        }
+    }
+
+    /**
+     * Called once the message in flight was sent or failed; sends whatever was buffered in the meantime.
+     */
+    private void sent(ChannelBuffer buffer) {
+        synchronized (buffer) {
+            buffer.inFlight = false;
+            if (!buffer.pending.isEmpty() && !buffer.scheduled) {
+                buffer.scheduled = true;
+                flusher.execute(() -> flush(buffer));
+            }
+            removeIfIdle(buffer);
+        }
+    }
+
+    /**
+     * Removes a buffer that has nothing buffered, scheduled or in flight. Called with the buffer's lock held.
+     */
+    private void removeIfIdle(ChannelBuffer buffer) {
+        if (buffer.pending.isEmpty() && !buffer.scheduled && !buffer.inFlight) {
+            buffer.removed = true;
+            buffers.remove(buffer.channelId, buffer);
+        }
+    }
+
+    /**
+     * Splits a reply into pieces of at most {@link #MAX_LENGTH} characters, between lines where possible.
+     */
+    static List<String> split(String text) {
+        List<String> pieces = new ArrayList<>(1);
+        if (text.length() <= MAX_LENGTH) {
+            pieces.add(text);
+            return pieces;
+        }
+
+        StringBuilder piece = new StringBuilder(MAX_LENGTH);
+        for (String line : text.split("\n")) {
+            // Start a new piece when this line won't fit, instead of dropping the line.
+            if (piece.length() > 0 && piece.length() + line.length() + 1 > MAX_LENGTH) {
+                pieces.add(piece.toString());
+                piece.setLength(0);
+            }
+            // A single line over the limit is cut into pieces.
+            while (line.length() > MAX_LENGTH) {
+                pieces.add(line.substring(0, MAX_LENGTH));
+                line = line.substring(MAX_LENGTH);
+            }
+            if (piece.length() > 0)
+                piece.append('\n');
+            piece.append(line);
+        }
+        if (piece.length() > 0)
+            pieces.add(piece.toString());
+        return pieces;
+    }
+
+    /**
+     * Replies buffered for one channel. Guarded by its own lock.
+     */
+    private static class ChannelBuffer {
+        private final long channelId;
+        private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+        private TextChannel channel;
+        private boolean scheduled = false;
+        private boolean inFlight = false;
+        private boolean removed = false;
+
+        private ChannelBuffer(long channelId) {
+            this.channelId = channelId;
+        }
+    }
+
+    /**
+     * A buffered reply.
+     */
+    private static class Pending {
+        private final String text;
+        private final String key;
+
+        private Pending(String text, String key) {
+            this.text = text;
+            this.key = key;
+        }
+    }
+}
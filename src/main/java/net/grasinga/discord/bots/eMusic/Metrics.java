@@ -0,0 +1,241 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the bot's counters, gauges and latency histograms, rendered in the Prometheus text format.<br>
+ * <br>
+ * Metrics are created on first use and looked up by name and labels, so any class can record without having the
+ * registry passed to it. Callers on hot paths (such as the send handlers) should look their metrics up once and keep
+ * them. Recording only touches {@link LongAdder}s, so it never blocks; gauges are read from their suppliers when the
+ * registry is scraped.
+ *
+ * @see MetricsServer
+ */
+final class Metrics {
+    /**
+     * Upper bounds of the latency histogram buckets, in seconds.
+     */
+    private static final double[] LATENCY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private static final ConcurrentMap<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+
+    private Metrics() {}
+
+    /**
+     * Gets or creates a counter.
+     * @param name Name of the metric, ending in "_total".
+     * @param help Description of the metric.
+     * @param labels Label names and values, alternating.
+     * @return The counter with those labels.
+     */
+    static Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").children.computeIfAbsent(labels(labels), k -> new Counter());
+    }
+
+    /**
+     * Registers a counter kept by its owner, such as a count of dropped replies, that is read when the registry is
+     * scraped. Registering the same name and labels again replaces the supplier.
+     * @param name Name of the metric, ending in "_total".
+     * @param help Description of the metric.
+     * @param supplier Reads the count; it must never go down.
+     * @param labels Label names and values, alternating.
+     */
+    static void counter(String name, String help, LongSupplier supplier, String... labels) {
+        family(name, help, "counter").children.put(labels(labels), new Gauge(supplier::getAsLong));
+    }
+
+    /**
+     * Gets or creates a latency histogram.
+     * @param name Name of the metric, ending in "_seconds".
+     * @param help Description of the metric.
+     * @param labels Label names and values, alternating.
+     * @return The histogram with those labels.
+     */
+    static Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "histogram").children.computeIfAbsent(labels(labels),
+                k -> new Histogram());
+    }
+
+    /**
+     * Registers a gauge that is read when the registry is scraped. Registering the same name and labels again
+     * replaces the supplier.
+     * @param name Name of the metric.
+     * @param help Description of the metric.
+     * @param supplier Reads the gauge's current value.
+     * @param labels Label names and values, alternating.
+     */
+    static void gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        family(name, help, "gauge").children.put(labels(labels), new Gauge(supplier));
+    }
+
+    /**
+     * Removes every metric with a label, such as the metrics of a guild the bot left.
+     * @param labelName Name of the label.
+     * @param labelValue Value of the label.
+     */
+    static void removeLabeled(String labelName, String labelValue) {
+        String label = labelName + "=\"" + escape(labelValue) + '"';
+        for (Family family : FAMILIES.values())
+            family.children.keySet().removeIf(labels -> labels.contains(label));
+    }
+
+    /**
+     * @return Every metric in the Prometheus text format (version 0.0.4).
+     */
+    static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : FAMILIES.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> child : family.children.entrySet())
+                render(out, name, child.getKey(), child.getValue());
+        }
+        return out.toString();
+    }
+
+    private static void render(StringBuilder out, String name, String labels, Object metric) {
+        if (metric instanceof Counter)
+            sample(out, name, labels, "", ((Counter) metric).value.sum());
+        else if (metric instanceof Gauge)
+            sample(out, name, labels, "", ((Gauge) metric).supplier.getAsDouble());
+        else {
+            Histogram histogram = (Histogram) metric;
+            long cumulative = 0;
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                cumulative += histogram.buckets[i].sum();
+                sample(out, name + "_bucket", labels, "le=\"" + LATENCY_BUCKETS[i] + '"', cumulative);
+            }
+            long count = histogram.count.sum();
+            sample(out, name + "_bucket", labels, "le=\"+Inf\"", count);
+            sample(out, name + "_sum", labels, "", histogram.sumNanos.sum() / 1e9);
+            sample(out, name + "_count", labels, "", count);
+        }
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String extra, double value) {
+        out.append(name);
+        if (!labels.isEmpty() || !extra.isEmpty()) {
+            out.append('{').append(labels);
+            if (!labels.isEmpty() && !extra.isEmpty())
+                out.append(',');
+            out.append(extra).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value))
+            out.append((long) value);
+        else
+            out.append(value);
+        out.append('\n');
+    }
+
+    private static Family family(String name, String help, String type) {
+        Family family = FAMILIES.computeIfAbsent(name, k -> new Family(help, type));
+        if (!family.type.equals(type))
+            throw new IllegalArgumentException(name + " is already a " + family.type);
+        return family;
+    }
+
+    /**
+     * Renders label pairs once, as the key of a family's child.
+     */
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0)
+                rendered.append(',');
+            rendered.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return rendered.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * A count that only goes up.
+     */
+    static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        void inc() {
+            value.increment();
+        }
+
+        void add(long amount) {
+            value.add(amount);
+        }
+
+        long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Counts latencies into fixed buckets.
+     */
+    static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[LATENCY_BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram() {
+            for (int i = 0; i < buckets.length; i++)
+                buckets[i] = new LongAdder();
+        }
+
+        /**
+         * Records a latency measured with {@link System#nanoTime()}.
+         * @param startNanos When the measured work started.
+         */
+        void observeSince(long startNanos) {
+            observeNanos(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Records a latency.
+         * @param nanos The latency in nanoseconds.
+         */
+        void observeNanos(long nanos) {
+            double seconds = nanos / (double) TimeUnit.SECONDS.toNanos(1);
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++)
+                if (seconds <= LATENCY_BUCKETS[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            count.increment();
+            sumNanos.add(nanos);
+        }
+    }
+
+    private static final class Gauge {
+        private final DoubleSupplier supplier;
+
+        private Gauge(DoubleSupplier supplier) {
+            this.supplier = supplier;
+        }
+    }
+
+    private static final class Family {
+        private final String help;
+        private final String type;
+        private final ConcurrentMap<String, Object> children = new ConcurrentHashMap<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Optional local HTTP endpoint serving {@link Metrics} at /metrics in the Prometheus text format.<br>
+ * Only started when the emusic.metrics.port system property is set, and only listens on the loopback address.
+ */
+final class MetricsServer {
+    /**
+     * System property with the port to serve metrics on.
+     */
+    static final String PORT_PROPERTY = "emusic.metrics.port";
+
+    private MetricsServer() {}
+
+    /**
+     * Starts the endpoint if {@link #PORT_PROPERTY} is set. The bot keeps running without it if the port can't be
+     * bound.
+     * @return The running server, or null if metrics aren't served.
+     */
+    static HttpServer startIfConfigured() {
+        Integer port = Integer.getInteger(PORT_PROPERTY);
+        if (port == null)
+            return null;
+
+        HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            System.out.println("Could not serve metrics on port " + port + ": " + e.getMessage());
+            return null;
+        }
+        server.createContext("/metrics", exchange -> {
+            byte[] body = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "eMusic-metrics");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        System.out.println("Serving metrics on http://localhost:" + port + "/metrics");
+        return server;
+    }
+}
@@ -0,0 +1,477 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local cache of the 20ms Opus frames of tracks that have been played, so replaying a track doesn't download, demux,
+ * decode and encode it again.<br>
+ * <br>
+ * Frames are recorded by each guild's {@link AudioPlayerSendHandler} as they are sent. Only a track that was played
+ * from start to end without a seek, and while the {@link QualityController} was at its highest level, is stored; a
+ * track encoded at a lowered quality would otherwise be replayed at that quality for as long as it stays cached. Each
+ * track is one file: a header with the track's info followed by length prefixed frames, which is written by appending
+ * and read back through a memory map. Cached tracks are served by {@link CachedOpusSourceManager}, which lavaplayer
+ * passes through to the send handler without decoding.<br>
+ * <br>
+ * The cache is capped in size. When it is full, the least frequently played of the least recently played tracks is
+ * evicted. The cache is only used when the emusic.cache.dir system property is set; emusic.cache.max.mb sets the cap.
+ */
+class OpusFrameCache {
+    /**
+     * System property with the directory the cache is kept in.
+     */
+    static final String DIR_PROPERTY = "emusic.cache.dir";
+
+    /**
+     * System property with the size cap of the cache in megabytes.
+     */
+    static final String MAX_MB_PROPERTY = "emusic.cache.max.mb";
+
+    private static final int MAGIC = 0x454F5043; // "EOPC"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".opus";
+    private static final String PARTIAL_EXTENSION = ".part";
+
+    /**
+     * Tracks longer than this aren't recorded, which bounds the memory a recording takes.
+     */
+    private static final long MAX_RECORDED_MILLIS = 20 * 60 * 1000;
+
+    /**
+     * How far short of its duration a recording can end and still count as the whole track.
+     */
+    private static final long END_TOLERANCE_MILLIS = 1000;
+
+    /**
+     * Amount of the least recently played tracks considered when evicting.
+     */
+    private static final int EVICTION_CANDIDATES = 8;
+
+    /**
+     * Most request identifiers remembered by {@link #alias(String, String)}; the least recently used is forgotten.
+     */
+    private static final int MAX_ALIASES = 4096;
+
+    private final File directory;
+    private final long maxBytes;
+    /**
+     * Cached tracks by key, in order of last use. Guarded by this cache's lock.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes = 0;
+    /**
+     * Identifier a track was requested with, by the track's own identifier. Guarded by its own lock; an alias is
+     * dropped once its track is stored, and tracks that are loaded but never played are forgotten in LRU order.
+     */
+    private final LinkedHashMap<String, String> requestedAs = new LinkedHashMap<String, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_ALIASES;
+        }
+    };
+    /**
+     * Controller of the quality tracks are encoded at, or null if it never changes.
+     */
+    private volatile QualityController quality = null;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "eMusic-opus-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Opens the cache configured by {@link #DIR_PROPERTY} and {@link #MAX_MB_PROPERTY}.
+     * @return The cache, or null if no directory is set or it can't be used.
+     */
+    static OpusFrameCache fromSystemProperties() {
+        String dir = System.getProperty(DIR_PROPERTY);
+        if (dir == null)
+            return null;
+        File directory = new File(dir);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.out.println("Could not create the Opus cache directory: " + dir);
+            return null;
+        }
+        return new OpusFrameCache(directory, Long.getLong(MAX_MB_PROPERTY, 512) * 1024 * 1024);
+    }
+
+    /**
+     * Opens a cache, indexing the tracks already in its directory.
+     * @param directory Directory the cache is kept in.
+     * @param maxBytes Size cap of the cache.
+     */
+    OpusFrameCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        scan();
+    }
+
+    /**
+     * Remembers the identifier a track was requested with, so the next request for it finds the cached frames.
+     * @param trackIdentifier The loaded track's identifier.
+     * @param requestIdentifier The identifier it was loaded with, such as a URL.
+     */
+    void alias(String trackIdentifier, String requestIdentifier) {
+        synchronized (requestedAs) {
+            requestedAs.put(trackIdentifier, requestIdentifier);
+        }
+    }
+
+    /**
+     * Only records tracks while the controller is at its highest level.
+     * @param quality Controller of the quality tracks are encoded at.
+     */
+    void setQualityController(QualityController quality) {
+        this.quality = quality;
+    }
+
+    /**
+     * Looks up a cached track and counts the use.
+     * @param key Identifier the track was requested with.
+     * @return The cached track, or null if it isn't cached.
+     */
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null)
+            entry.hits++;
+        return entry;
+    }
+
+    /**
+     * Looks up a cached track without counting it as a use, such as when a loaded track starts playing.
+     * @param key Identifier the track was requested with.
+     * @return The cached track, or null if it was evicted.
+     */
+    synchronized Entry peek(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * @return Amount of tracks cached.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Bytes taken up by cached tracks.
+     */
+    synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Starts recording the frames of a track that is about to be played.
+     * @param track The track.
+     * @return The recording, or null if the track can't or needn't be cached, or the quality is lowered.
+     */
+    Recording startRecording(AudioTrack track) {
+        AudioTrackInfo info = track.getInfo();
+        if (info.isStream || track instanceof CachedOpusAudioTrack || track.getDuration() > MAX_RECORDED_MILLIS)
+            return null;
+        QualityController quality = this.quality;
+        if (quality != null && !quality.isHighest())
+            return null;
+
+        String key;
+        synchronized (requestedAs) {
+            key = requestedAs.getOrDefault(info.identifier, info.identifier);
+        }
+        synchronized (this) {
+            if (entries.containsKey(key))
+                return null;
+        }
+        return new Recording(track, key, quality != null ? quality.getChanges() : 0);
+    }
+
+    /**
+     * @return Amount of request identifiers remembered.
+     */
+    int getAliasCount() {
+        synchronized (requestedAs) {
+            return requestedAs.size();
+        }
+    }
+
+    /**
+     * Opens a cached track's frames.
+     * @param entry The cached track.
+     * @return A reader positioned at the first frame.
+     * @throws IOException If the file could not be mapped.
+     */
+    FrameReader open(Entry entry) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(entry.file, "r");
+             FileChannel channel = file.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.position(entry.dataOffset);
+            return new FrameReader(buffer, entry.dataOffset);
+        }
+    }
+
+    /**
+     * Indexes the complete tracks in the directory and deletes recordings that were never finished.
+     */
+    private void scan() {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            if (file.getName().endsWith(PARTIAL_EXTENSION)) {
+                file.delete();
+                continue;
+            }
+            if (!file.getName().endsWith(EXTENSION))
+                continue;
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                Entry entry = readHeader(in, file);
+                entries.put(entry.key, entry);
+                totalBytes += entry.bytes;
+            } catch (IOException e) {
+                System.out.println("Could not read cached track " + file.getName() + "; deleting it.");
+                file.delete();
+            }
+        }
+        evict();
+    }
+
+    private static Entry readHeader(DataInputStream in, File file) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            throw new IOException("Not a cached track");
+        String key = in.readUTF();
+        String title = in.readUTF();
+        String author = in.readUTF();
+        long length = in.readLong();
+        String identifier = in.readUTF();
+        int dataOffset = in.readInt();
+        return new Entry(key, new AudioTrackInfo(title, author, length, identifier, false), file, file.length(),
+                dataOffset);
+    }
+
+    /**
+     * Writes a finished recording to disk and adds it to the index. Runs on the writer thread.
+     */
+    private void store(String key, AudioTrackInfo info, List<byte[]> frames) {
+        File partial = new File(directory, fileName(key) + PARTIAL_EXTENSION);
+        File file = new File(directory, fileName(key) + EXTENSION);
+
+        int dataOffset;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeUTF(info.title);
+            out.writeUTF(info.author);
+            out.writeLong(info.length);
+            out.writeUTF(info.identifier);
+            dataOffset = out.size() + Integer.BYTES;
+            out.writeInt(dataOffset);
+            for (byte[] frame : frames) {
+                out.writeShort(frame.length);
+                out.write(frame);
+            }
+        } catch (IOException e) {
+            System.out.println("Could not cache track " + info.title + ": " + e.getMessage());
+            partial.delete();
+            return;
+        }
+        if (!partial.renameTo(file)) {
+            partial.delete();
+            return;
+        }
+
+        synchronized (this) {
+            Entry previous = entries.put(key, new Entry(key, info, file, file.length(), dataOffset));
+            if (previous != null)
+                totalBytes -= previous.bytes;
+            totalBytes += file.length();
+            evict();
+        }
+    }
+
+    /**
+     * Evicts tracks until the cache is under its cap: the least played of the least recently played few goes first.
+     */
+    private synchronized void evict() {
+        while (totalBytes > maxBytes && !entries.isEmpty()) {
+            Entry victim = null;
+            Iterator<Entry> oldest = entries.values().iterator();
+            for (int i = 0; i < EVICTION_CANDIDATES && oldest.hasNext(); i++) {
+                Entry candidate = oldest.next();
+                if (victim == null || candidate.hits < victim.hits)
+                    victim = candidate;
+            }
+            entries.remove(victim.key);
+            totalBytes -= victim.bytes;
+            // A track being played from the file keeps its memory map; the data is freed once it is done.
+            victim.file.delete();
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(hash.length * 2);
+            for (byte b : hash)
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A cached track.
+     */
+    static final class Entry {
+        private final String key;
+        private final AudioTrackInfo info;
+        private final File file;
+        private final long bytes;
+        private final int dataOffset;
+        private int hits = 0;
+
+        private Entry(String key, AudioTrackInfo info, File file, long bytes, int dataOffset) {
+            this.key = key;
+            this.info = info;
+            this.file = file;
+            this.bytes = bytes;
+            this.dataOffset = dataOffset;
+        }
+
+        /**
+         * @return Info of the track as it was when recorded.
+         */
+        AudioTrackInfo getInfo() {
+            return info;
+        }
+    }
+
+    /**
+     * Reads the frames of a cached track from its memory map.
+     */
+    static final class FrameReader {
+        private final ByteBuffer buffer;
+        private final int dataOffset;
+        private long timecode = 0;
+
+        private FrameReader(ByteBuffer buffer, int dataOffset) {
+            this.buffer = buffer;
+            this.dataOffset = dataOffset;
+        }
+
+        /**
+         * @return The next frame's Opus packet, or null at the end of the track.
+         */
+        ByteBuffer next() {
+            if (buffer.remaining() < Short.BYTES)
+                return null;
+            int length = buffer.getShort() & 0xFFFF;
+            ByteBuffer packet = buffer.slice();
+            packet.limit(length);
+            buffer.position(buffer.position() + length);
+            timecode += 20;
+            return packet;
+        }
+
+        /**
+         * Moves to the frame that contains a position.
+         * @param position Position in milliseconds.
+         * @return Position of the frame moved to, in milliseconds.
+         */
+        long seek(long position) {
+            buffer.position(dataOffset);
+            timecode = 0;
+            while (timecode + 20 <= position && buffer.remaining() >= Short.BYTES) {
+                int length = buffer.getShort() & 0xFFFF;
+                buffer.position(buffer.position() + length);
+                timecode += 20;
+            }
+            return timecode;
+        }
+    }
+
+    /**
+     * Frames of a track being played, kept in memory until the track ends.
+     */
+    final class Recording {
+        private final AudioTrack track;
+        private final String key;
+        private final List<byte[]> frames = new ArrayList<>();
+        /**
+         * {@link QualityController#getChanges()} when the recording started.
+         */
+        private final int qualityChanges;
+        private long lastTimecode = -20;
+
+        private Recording(AudioTrack track, String key, int qualityChanges) {
+            this.track = track;
+            this.key = key;
+            this.qualityChanges = qualityChanges;
+        }
+
+        /**
+         * @param playing The track playing now.
+         * @return True if this is the recording of that track.
+         */
+        boolean isOf(AudioTrack playing) {
+            return playing == track;
+        }
+
+        /**
+         * Adds the next frame if it continues the recording.
+         * @param playing The track playing when the frame was provided.
+         * @param frame The frame.
+         * @return False if the frame belongs to another track or doesn't follow the last one, such as after a seek.
+         */
+        boolean add(AudioTrack playing, AudioFrame frame) {
+            if (playing != track || frame.timecode != lastTimecode + 20)
+                return false;
+            frames.add(frame.data);
+            lastTimecode = frame.timecode;
+            return true;
+        }
+
+        /**
+         * Ends the recording, storing it if it covers the whole track and the quality didn't change meanwhile.
+         */
+        void finish() {
+            if (lastTimecode + 20 < track.getDuration() - END_TOLERANCE_MILLIS)
+                return;
+            QualityController quality = OpusFrameCache.this.quality;
+            if (quality != null && quality.getChanges() != qualityChanges)
+                return;
+            AudioTrackInfo info = track.getInfo();
+            synchronized (requestedAs) {
+                requestedAs.remove(info.identifier);
+            }
+            writer.execute(() -> store(key, info, frames));
+        }
+    }
+}
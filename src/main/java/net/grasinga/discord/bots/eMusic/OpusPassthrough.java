@@ -0,0 +1,118 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import java.util.Locale;
+
+/**
+ * Tells whether a track's frames are passed through to Discord as they are, or decoded and encoded again.<br>
+ * <br>
+ * Lavaplayer forwards Opus packets untouched when the source already is Opus in Discord's format and nothing
+ * processes the PCM. Only PCM processing forces a track to be transcoded; so far that is a volume other than 100.
+ * Settings that only apply when transcoding, such as the encoding quality set by
+ * {@link QualityController}, don't. Any new feature that processes PCM (filters, equalizers, ...) must be added to
+ * {@link #processesPcm(AudioPlayer)}.<br>
+ * <br>
+ * Play time is counted per pipeline, so the share of audio that is never encoded can be seen. The share is an
+ * estimate: lavaplayer 1.2.15 doesn't expose which format it picked for a YouTube video, so those tracks are counted
+ * as {@link Pipeline#UNKNOWN} and left out of the passed through share.
+ */
+final class OpusPassthrough {
+    /**
+     * How a track's frames get to Discord. UNKNOWN tracks may be passed through, depending on a format that isn't
+     * known.
+     */
+    enum Pipeline {
+        PASSTHROUGH, TRANSCODING, UNKNOWN
+    }
+
+    private static final Metrics.Counter PASSTHROUGH_MILLIS = Metrics.counter("emusic_played_milliseconds_total",
+            "Time tracks were played, by whether their frames were passed through or transcoded.",
+            "pipeline", "passthrough");
+    private static final Metrics.Counter TRANSCODING_MILLIS = Metrics.counter("emusic_played_milliseconds_total",
+            "Time tracks were played, by whether their frames were passed through or transcoded.",
+            "pipeline", "transcoding");
+    private static final Metrics.Counter UNKNOWN_MILLIS = Metrics.counter("emusic_played_milliseconds_total",
+            "Time tracks were played, by whether their frames were passed through or transcoded.",
+            "pipeline", "unknown");
+
+    private OpusPassthrough() {}
+
+    /**
+     * @param track The track.
+     * @param player The player playing it.
+     * @return The pipeline the track's frames go through.
+     */
+    static Pipeline classify(AudioTrack track, AudioPlayer player) {
+        if (processesPcm(player))
+            return Pipeline.TRANSCODING;
+        if (isOpusSource(track))
+            return Pipeline.PASSTHROUGH;
+        return mayBeOpusSource(track) ? Pipeline.UNKNOWN : Pipeline.TRANSCODING;
+    }
+
+    /**
+     * Tracks from the {@link OpusFrameCache} are always Opus. Files are only known to be Opus by their extension.
+     * @param track The track.
+     * @return True if the track's source is known to be Opus.
+     */
+    static boolean isOpusSource(AudioTrack track) {
+        if (track instanceof CachedOpusAudioTrack)
+            return true;
+        if (track.getInfo().isStream)
+            return false;
+        return track.getInfo().identifier.toLowerCase(Locale.ROOT).endsWith(".opus");
+    }
+
+    /**
+     * YouTube videos are played from their WebM/Opus format when lavaplayer picks it, which it does for most videos
+     * that have it; but the format picked isn't exposed, so it can't be told for sure. Live streams are AAC.
+     * @param track The track.
+     * @return True if the track's source may be Opus, though it isn't known to be.
+     */
+    static boolean mayBeOpusSource(AudioTrack track) {
+        return !track.getInfo().isStream && track.getSourceManager() instanceof YoutubeAudioSourceManager;
+    }
+
+    /**
+     * @param player The player.
+     * @return True if the player changes the PCM of what it plays, which forces it to be transcoded.
+     */
+    static boolean processesPcm(AudioPlayer player) {
+        return player.getVolume() != 100;
+    }
+
+    /**
+     * Counts the time a track was played towards its pipeline. Called when the track ends.
+     * @param track The track.
+     * @param player The player that played it.
+     */
+    static void record(AudioTrack track, AudioPlayer player) {
+        long played = Math.min(track.getPosition(), track.getDuration());
+        if (played <= 0)
+            return;
+        switch (classify(track, player)) {
+            case PASSTHROUGH:
+                PASSTHROUGH_MILLIS.add(played);
+                break;
+            case TRANSCODING:
+                TRANSCODING_MILLIS.add(played);
+                break;
+            default:
+                UNKNOWN_MILLIS.add(played);
+                break;
+        }
+    }
+
+    /**
+     * @return Share of play time known to be passed through, from 0 to 1. Play time of {@link Pipeline#UNKNOWN}
+     * tracks counts towards the total only, so this is a lower bound.
+     */
+    static double getRatio() {
+        long passthrough = PASSTHROUGH_MILLIS.get();
+        long total = passthrough + TRANSCODING_MILLIS.get() + UNKNOWN_MILLIS.get();
+        return total == 0 ? 0 : (double) passthrough / total;
+    }
+}
@@ -0,0 +1,104 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.io.File;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * What the argument of a play command is, decided before anything is loaded so it can go straight to the right
+ * resolution path.
+ */
+class PlayInput {
+    /**
+     * Kinds of input a play command can be given.
+     */
+    enum Type {
+        /**
+         * A link that the player manager can load directly. Links typed without a scheme, like youtu.be/..., are
+         * given https://.
+         */
+        URL,
+        /**
+         * A file on the bot's machine.
+         */
+        LOCAL_PATH,
+        /**
+         * The name of a radio station from bot.properties.
+         */
+        RADIO_STATION,
+        /**
+         * A search the player manager runs itself, like ytsearch:[Terms] or scsearch:[Terms].
+         */
+        SOURCE_SEARCH,
+        /**
+         * Anything else; searched for on YouTube.
+         */
+        SEARCH_TERM
+    }
+
+    private static final Pattern URL_PATTERN = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*://\\S+$");
+    /**
+     * A link typed without a scheme: a host with a path after it, or a host starting with www. A bare name.tld is
+     * left to the search, so a search like "mr.brightside" stays one.
+     */
+    private static final Pattern SCHEMELESS_URL_PATTERN = Pattern.compile(
+            "^(?:(?:[a-zA-Z0-9-]+\\.)+[a-zA-Z]{2,}(?::\\d+)?/|www\\.[a-zA-Z0-9-]+\\.)\\S*$");
+    private static final Pattern SOURCE_SEARCH_PATTERN = Pattern.compile("^(?:ytsearch|scsearch):\\s*\\S.*$",
+            Pattern.CASE_INSENSITIVE);
+
+    private final Type type;
+    private final String input;
+    private final String identifier;
+
+    private PlayInput(Type type, String input, String identifier) {
+        this.type = type;
+        this.input = input;
+        this.identifier = identifier;
+    }
+
+    /**
+     * Classifies the argument of a play command.
+     * @param input The argument as the user typed it.
+     * @param stationLookup Gets a radio station's URL from its exact name, or null if there is no such station.
+     * @return The classified input.
+     */
+    static PlayInput classify(String input, Function<String, String> stationLookup) {
+        String trimmed = input.trim();
+        if (URL_PATTERN.matcher(trimmed).matches())
+            return new PlayInput(Type.URL, trimmed, trimmed);
+        if (SCHEMELESS_URL_PATTERN.matcher(trimmed).matches())
+            return new PlayInput(Type.URL, trimmed, "https://" + trimmed);
+        if (SOURCE_SEARCH_PATTERN.matcher(trimmed).matches())
+            return new PlayInput(Type.SOURCE_SEARCH, trimmed, trimmed);
+        if (new File(trimmed).isFile())
+            return new PlayInput(Type.LOCAL_PATH, trimmed, trimmed);
+
+        String station = stationLookup.apply(trimmed);
+        if (station != null)
+            return new PlayInput(Type.RADIO_STATION, trimmed, station);
+
+        return new PlayInput(Type.SEARCH_TERM, trimmed, null);
+    }
+
+    /**
+     * @return The kind of input.
+     */
+    Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The input as the user typed it, trimmed.
+     */
+    String getInput() {
+        return input;
+    }
+
+    /**
+     * @return The identifier to give the player manager, or null for {@link Type#SEARCH_TERM} which still needs to be
+     * searched for.
+     */
+    String getIdentifier() {
+        return identifier;
+    }
+}
@@ -0,0 +1,199 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioConfiguration;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Lowers the audio quality of the player manager when the host can't keep up, and raises it again once it can.<br>
+ * <br>
+ * Every few seconds the controller samples the CPU load and the share of 20ms slots where a playing guild had no
+ * frame ready (underruns). Sustained pressure steps the level down one at a time; a longer stretch of idle samples
+ * steps it back up, so the level doesn't flap around a threshold. Each level sets the Opus encoding quality and the
+ * frame buffer duration: lower levels use cheaper encoding, and buffer more so a busy host has more slack before a
+ * guild runs dry. The highest level is lavaplayer's own default. Resampling is left at lavaplayer's default, LOW,
+ * which already is its cheapest. A new level applies to tracks started after the change.
+ */
+class QualityController {
+    /**
+     * Settings applied to the player manager at each level, from lowest to highest.
+     */
+    enum Level {
+        LOW(4, 10000),
+        MEDIUM(7, 7500),
+        HIGH(10, 5000);
+
+        private final int opusQuality;
+        private final int bufferMillis;
+
+        Level(int opusQuality, int bufferMillis) {
+            this.opusQuality = opusQuality;
+            this.bufferMillis = bufferMillis;
+        }
+    }
+
+    private static final long SAMPLE_SECONDS = 5;
+
+    /**
+     * CPU load (0 to 1) and underrun share above which a sample counts as pressure.
+     */
+    private static final double HIGH_CPU = 0.85;
+    private static final double HIGH_UNDERRUNS = 0.01;
+
+    /**
+     * CPU load and underrun share below which a sample counts as idle.
+     */
+    private static final double LOW_CPU = 0.50;
+    private static final double LOW_UNDERRUNS = 0.001;
+
+    /**
+     * Consecutive samples needed to step down or up. Stepping up takes longer so a brief lull doesn't undo a step down.
+     */
+    private static final int SAMPLES_TO_STEP_DOWN = 2;
+    private static final int SAMPLES_TO_STEP_UP = 12;
+
+    private static final OperatingSystemMXBean OS = ManagementFactory.getOperatingSystemMXBean();
+
+    private final Consumer<Level> apply;
+    private final LongSupplier framesProvided;
+    private final LongSupplier underruns;
+    private final DoubleSupplier cpuLoad;
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "eMusic-quality");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Level level = Level.HIGH;
+    /**
+     * Amount of level changes so far. Only written by the sampler.
+     */
+    private volatile int changes = 0;
+    private long lastProvided = 0;
+    private long lastUnderruns = 0;
+    private int pressured = 0;
+    private int idle = 0;
+
+    /**
+     * Applies the highest level and starts sampling.
+     * @param manager Player manager whose settings are changed.
+     * @param framesProvided Frames handed to JDA across every guild so far.
+     * @param underruns Underruns across every guild so far.
+     */
+    QualityController(AudioPlayerManager manager, LongSupplier framesProvided, LongSupplier underruns) {
+        this(level -> apply(manager, level), framesProvided, underruns, QualityController::cpuLoad);
+        sampler.scheduleWithFixedDelay(this::sample, SAMPLE_SECONDS, SAMPLE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Applies the highest level without sampling; {@link #sample()} is left to the caller.
+     * @param apply Applies a level's settings.
+     * @param framesProvided Frames handed to JDA across every guild so far.
+     * @param underruns Underruns across every guild so far.
+     * @param cpuLoad CPU load from 0 to 1.
+     */
+    QualityController(Consumer<Level> apply, LongSupplier framesProvided, LongSupplier underruns,
+                      DoubleSupplier cpuLoad) {
+        this.apply = apply;
+        this.framesProvided = framesProvided;
+        this.underruns = underruns;
+        this.cpuLoad = cpuLoad;
+        apply.accept(level);
+    }
+
+    /**
+     * @return The level in use.
+     */
+    Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return True if the highest level is in use, so tracks are encoded at full quality.
+     */
+    boolean isHighest() {
+        return level.ordinal() == Level.values().length - 1;
+    }
+
+    /**
+     * @return Amount of level changes so far; compared to tell whether the level changed in between.
+     */
+    int getChanges() {
+        return changes;
+    }
+
+    /**
+     * Takes one sample and steps the level if the last few samples call for it.
+     */
+    void sample() {
+        try {
+            long provided = framesProvided.getAsLong();
+            long missed = underruns.getAsLong();
+            // The totals drop when a guild's music manager is removed; that interval is counted as nothing.
+            long newlyProvided = Math.max(0, provided - lastProvided);
+            long newlyMissed = Math.max(0, missed - lastUnderruns);
+            long slots = newlyProvided + newlyMissed;
+            double underrunShare = slots > 0 ? (double) newlyMissed / slots : 0;
+            lastProvided = provided;
+            lastUnderruns = missed;
+
+            double cpu = cpuLoad.getAsDouble();
+            if (cpu > HIGH_CPU || underrunShare > HIGH_UNDERRUNS) {
+                idle = 0;
+                if (++pressured >= SAMPLES_TO_STEP_DOWN && level.ordinal() > 0) {
+                    pressured = 0;
+                    step(Level.values()[level.ordinal() - 1], cpu, underrunShare);
+                }
+            }
+            else if (cpu < LOW_CPU && underrunShare < LOW_UNDERRUNS) {
+                pressured = 0;
+                if (++idle >= SAMPLES_TO_STEP_UP && level.ordinal() < Level.values().length - 1) {
+                    idle = 0;
+                    step(Level.values()[level.ordinal() + 1], cpu, underrunShare);
+                }
+            }
+            else {
+                pressured = 0;
+                idle = 0;
+            }
+        } catch (Exception e) {
+            // An exception would cancel the schedule; keep sampling.
+            e.printStackTrace();
+        }
+    }
+
+    private void step(Level next, double cpu, double underrunShare) {
+        System.out.println("Audio quality " + level + " -> " + next + String.format(" (CPU %.0f%%, underruns %.2f%%)",
+                cpu * 100, underrunShare * 100));
+        level = next;
+        changes++;
+        apply.accept(next);
+    }
+
+    private static void apply(AudioPlayerManager manager, Level level) {
+        AudioConfiguration configuration = manager.getConfiguration();
+        configuration.setOpusEncodingQuality(level.opusQuality);
+        manager.setFrameBufferDuration(level.bufferMillis);
+    }
+
+    /**
+     * @return CPU load of the process from 0 to 1, or the load average per processor if the JVM doesn't report it.
+     */
+    private static double cpuLoad() {
+        if (OS instanceof com.sun.management.OperatingSystemMXBean) {
+            double load = ((com.sun.management.OperatingSystemMXBean) OS).getProcessCpuLoad();
+            if (load >= 0)
+                return load;
+        }
+        double average = OS.getSystemLoadAverage();
+        return average < 0 ? 0 : average / OS.getAvailableProcessors();
+    }
+}
@@ -0,0 +1,134 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders pages of a {@link TrackQueue} for the -queue command.<br>
+ * A page only reads the tracks it shows, and the queue's total duration is kept up to date by the queue itself, so a
+ * page costs O(page size) no matter how long the queue is. Rendered pages are cached until the queue changes.<br>
+ * Not thread safe; {@link TrackScheduler} guards it along with its queue.
+ */
+class QueueView {
+    /**
+     * Amount of tracks listed on each page.
+     */
+    static final int PAGE_SIZE = 15;
+
+    /**
+     * Longest title shown before it is cut off, which keeps every page under Discord's 2000 character limit.
+     */
+    private static final int MAX_TITLE_LENGTH = 100;
+
+    private final TrackQueue queue;
+    private final Map<Integer, String> pages = new HashMap<>();
+    private long cachedVersion = -1;
+
+    /**
+     * @param queue The queue to render.
+     */
+    QueueView(TrackQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * @return Amount of pages the queue currently takes up; at least 1.
+     */
+    int pageCount() {
+        return Math.max(1, (queue.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    /**
+     * Renders a page of the queue.
+     * @param page Page number, starting at 1. Numbers past the last page show the last page.
+     * @return The page's message.
+     */
+    String render(int page) {
+        if (cachedVersion != queue.version()) {
+            pages.clear();
+            cachedVersion = queue.version();
+        }
+        int pageCount = pageCount();
+        int number = Math.max(1, Math.min(page, pageCount));
+        return pages.computeIfAbsent(number, n -> renderUncached(n, pageCount));
+    }
+
+    private String renderUncached(int page, int pageCount) {
+        int from = (page - 1) * PAGE_SIZE;
+        int to = Math.min(queue.size(), from + PAGE_SIZE);
+
+        StringBuilder builder = new StringBuilder(64 * PAGE_SIZE);
+        builder.append("__**Current Queue ");
+        appendDuration(builder, queue.totalDuration());
+        builder.append(":**__");
+        if (pageCount > 1) {
+            builder.append(" Page ").append(page).append('/').append(pageCount);
+            if (from > 0) {
+                builder.append(", starts in ");
+                appendDuration(builder, queue.durationBefore(from));
+            }
+        }
+        builder.append('\n');
+
+        List<AudioTrack> tracks = queue.subList(from, to);
+        Iterator<AudioTrack> iterator = tracks.iterator();
+        for (int position = from + 1; iterator.hasNext(); position++) {
+            AudioTrack track = iterator.next();
+            String title = track.getInfo().title;
+            builder.append('\n').append(position).append(". ");
+            if (title.length() > MAX_TITLE_LENGTH)
+                builder.append(title, 0, MAX_TITLE_LENGTH).append("...");
+            else
+                builder.append(title);
+            builder.append(' ');
+            if (track.getInfo().isStream)
+                builder.append("[LIVE]");
+            else
+                appendDuration(builder, track.getDuration());
+        }
+        if (pageCount > 1 && page < pageCount)
+            builder.append("\n\nUse -queue ").append(page + 1).append(" for the next page.");
+
+        return builder.toString();
+    }
+
+    /**
+     * Calculate the hours, minutes, and seconds of a time of type long.
+     * @param duration Time as long.
+     * @return A String of the time in the format [hh:mm:ss].
+     */
+    static String formatDuration(long duration) {
+        StringBuilder builder = new StringBuilder(10);
+        appendDuration(builder, duration);
+        return builder.toString();
+    }
+
+    /**
+     * Appends a time in the format [hh:mm:ss], leaving out the hours if there are none.
+     */
+    private static void appendDuration(StringBuilder builder, long duration) {
+        long hours = duration / (1000 * 60 * 60);
+        int minutes = (int) ((duration / (1000 * 60)) % 60);
+        int seconds = (int) (duration / 1000) % 60;
+
+        builder.append('[');
+        if (hours > 0) {
+            appendTwoDigits(builder, hours);
+            builder.append(':');
+        }
+        appendTwoDigits(builder, minutes);
+        builder.append(':');
+        appendTwoDigits(builder, seconds);
+        builder.append(']');
+    }
+
+    private static void appendTwoDigits(StringBuilder builder, long value) {
+        if (value < 10)
+            builder.append('0');
+        builder.append(value);
+    }
+}
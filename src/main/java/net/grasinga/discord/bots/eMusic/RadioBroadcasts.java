@@ -0,0 +1,351 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Plays each radio station once for every guild listening to it.<br>
+ * <br>
+ * The first guild to tune in to a station starts a broadcast: a single upstream player that opens the stream and
+ * produces its Opus frames. A pump thread moves those frames into a ring shared by every listener, and each guild's
+ * {@link AudioPlayerSendHandler} reads the ring through its own {@link Subscription} cursor. A station played in 40
+ * guilds is downloaded, decoded and encoded once instead of 40 times.<br>
+ * <br>
+ * The pump writes at the rate the listeners read: one frame per 20ms tick, plus at most one extra frame per tick to
+ * catch up after a late tick. Pulling faster would drain the upstream player's buffer into the ring and push the
+ * writer past listeners that are only reading in real time.<br>
+ * <br>
+ * Guilds that tune in late start {@link #JOIN_LEAD_FRAMES} behind the live edge, so jitter between the pump and JDA's
+ * send threads doesn't run them dry, and listeners that fall more than the ring behind skip ahead to it. Broadcasts
+ * are reference counted and torn down when their last listener leaves; if the stream can't be loaded or ends, every
+ * listener is told so through its failure callback.
+ */
+class RadioBroadcasts {
+    /**
+     * Frames (20ms each) kept in a broadcast's ring.
+     */
+    static final int RING_FRAMES = 150;
+
+    /**
+     * How many frames behind the live edge a new or resuming listener starts; 500ms.
+     */
+    private static final int JOIN_LEAD_FRAMES = 25;
+
+    /**
+     * Length of a frame, which is also the pump's tick.
+     */
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /**
+     * Most frames moved from an upstream player per tick: the one that is due, and one to catch up.
+     */
+    private static final int MAX_FRAMES_PER_PUMP = 2;
+
+    /**
+     * Most frames a broadcast catches up on after the pump fell behind; anything older is let go so the catch-up
+     * never outruns the listeners' lead.
+     */
+    private static final int MAX_CATCH_UP_FRAMES = JOIN_LEAD_FRAMES;
+
+    private final AudioPlayerManager manager;
+    /**
+     * Broadcasts by stream URL. Guarded by this registry's lock.
+     */
+    private final Map<String, Broadcast> broadcasts = new HashMap<>();
+    private final List<Broadcast> live = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService pump = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "eMusic-broadcast");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param manager Creates the upstream players and loads their streams.
+     */
+    RadioBroadcasts(AudioPlayerManager manager) {
+        this.manager = manager;
+        pump.scheduleAtFixedRate(this::pumpAll, 20, 20, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tunes in to a station, starting its broadcast if no other guild is listening to it.
+     * @param url The station's stream URL.
+     * @param onFailure Given the subscription if the stream can't be loaded or ends; it is already ended by then.
+     * @return The new listener's subscription.
+     */
+    synchronized Subscription subscribe(String url, Consumer<Subscription> onFailure) {
+        Broadcast broadcast = broadcasts.get(url);
+        boolean created = broadcast == null;
+        if (created) {
+            broadcast = new Broadcast(url, manager.createPlayer());
+            broadcasts.put(url, broadcast);
+            live.add(broadcast);
+        }
+
+        Subscription subscription = new Subscription(broadcast, onFailure);
+        broadcast.subscribers.add(subscription);
+        if (created)
+            broadcast.start();
+        return subscription;
+    }
+
+    /**
+     * @return Amount of stations being broadcast.
+     */
+    synchronized int getBroadcastCount() {
+        return broadcasts.size();
+    }
+
+    /**
+     * @return Amount of listeners across every broadcast.
+     */
+    synchronized int getSubscriberCount() {
+        int count = 0;
+        for (Broadcast broadcast : broadcasts.values())
+            count += broadcast.subscribers.size();
+        return count;
+    }
+
+    /**
+     * Removes a listener, tearing the broadcast down if it was the last one.
+     */
+    private void unsubscribe(Subscription subscription) {
+        Broadcast broadcast = subscription.broadcast;
+        boolean last;
+        synchronized (this) {
+            if (!broadcast.subscribers.remove(subscription))
+                return;
+            last = broadcast.subscribers.isEmpty() && broadcasts.get(broadcast.url) == broadcast;
+            if (last) {
+                broadcasts.remove(broadcast.url);
+                live.remove(broadcast);
+            }
+        }
+        // The player is never called while holding the registry's lock, as it fires events back into it.
+        if (last)
+            broadcast.player.destroy();
+    }
+
+    /**
+     * Ends a broadcast whose stream failed, letting every listener know.
+     */
+    private void fail(Broadcast broadcast) {
+        List<Subscription> subscribers;
+        synchronized (this) {
+            if (broadcasts.get(broadcast.url) != broadcast)
+                return;
+            broadcasts.remove(broadcast.url);
+            live.remove(broadcast);
+            subscribers = new ArrayList<>(broadcast.subscribers);
+            broadcast.subscribers.clear();
+        }
+        broadcast.player.destroy();
+        for (Subscription subscription : subscribers) {
+            subscription.ended = true;
+            subscription.onFailure.accept(subscription);
+        }
+    }
+
+    private void pumpAll() {
+        long now = System.nanoTime();
+        for (Broadcast broadcast : live)
+            broadcast.pump(now);
+    }
+
+    /**
+     * One station's upstream player and its ring of frames. Only the pump thread writes to the ring.
+     */
+    private class Broadcast extends AudioEventAdapter {
+        private final String url;
+        private final AudioPlayer player;
+        private final List<Subscription> subscribers = new CopyOnWriteArrayList<>();
+        private final AtomicReferenceArray<AudioFrame> ring = new AtomicReferenceArray<>(RING_FRAMES);
+        /**
+         * Sequence number of the next frame to be written; frame n is kept at ring[n % RING_FRAMES].
+         */
+        private volatile long written = 0;
+        /**
+         * {@link System#nanoTime()} the next frame is due at, or 0 before the first pump. Only used by the pump thread.
+         */
+        private long nextDue = 0;
+
+        private Broadcast(String url, AudioPlayer player) {
+            this.url = url;
+            this.player = player;
+            player.addListener(this);
+        }
+
+        private void start() {
+            manager.loadItem(url, new AudioLoadResultHandler() {
+                @Override
+                public void trackLoaded(AudioTrack track) {
+                    // Every listener could have left while the stream was loading.
+                    if (live.contains(Broadcast.this))
+                        player.startTrack(track, false);
+                }
+
+                @Override
+                public void playlistLoaded(AudioPlaylist playlist) {
+                    AudioTrack track = playlist.getSelectedTrack();
+                    if (live.contains(Broadcast.this))
+                        player.startTrack(track != null ? track : playlist.getTracks().get(0), false);
+                }
+
+                @Override
+                public void noMatches() {
+                    fail(Broadcast.this);
+                }
+
+                @Override
+                public void loadFailed(FriendlyException exception) {
+                    fail(Broadcast.this);
+                }
+            });
+        }
+
+        /**
+         * Moves the frames that are due into the ring.
+         * @param now {@link System#nanoTime()} of this tick.
+         */
+        private void pump(long now) {
+            if (nextDue == 0 || now - nextDue > MAX_CATCH_UP_FRAMES * FRAME_NANOS)
+                nextDue = now;
+            // Half a frame of slack, so a tick that fires a little early doesn't skip its frame.
+            for (int i = 0; i < MAX_FRAMES_PER_PUMP && nextDue - now <= FRAME_NANOS / 2; i++) {
+                AudioFrame frame = player.provide();
+                if (frame == null) {
+                    // The stream is loading or stalled; nothing is owed for the time it had nothing to give.
+                    nextDue = now + FRAME_NANOS;
+                    return;
+                }
+                append(frame);
+                nextDue += FRAME_NANOS;
+            }
+        }
+
+        private void append(AudioFrame frame) {
+            long sequence = written;
+            ring.set((int) (sequence % RING_FRAMES), frame);
+            written = sequence + 1;
+        }
+
+        @Override
+        public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) {
+            OpusPassthrough.record(track, player);
+            // Streams only end on their own if the connection dropped; a stop means the broadcast was torn down.
+            // This fires inside the pump's provide(), so the player is destroyed after the pump is done with it.
+            if (endReason != AudioTrackEndReason.STOPPED && endReason != AudioTrackEndReason.CLEANUP)
+                pump.execute(() -> fail(this));
+        }
+    }
+
+    /**
+     * One guild listening to a broadcast. Read by the guild's send handler, which guards the cursor.
+     */
+    class Subscription {
+        private final Broadcast broadcast;
+        private final Consumer<Subscription> onFailure;
+        private long cursor;
+        private volatile boolean paused = false;
+        private volatile boolean rejoin = false;
+        private volatile boolean ended = false;
+
+        private Subscription(Broadcast broadcast, Consumer<Subscription> onFailure) {
+            this.broadcast = broadcast;
+            this.onFailure = onFailure;
+            this.cursor = Math.max(0, broadcast.written - JOIN_LEAD_FRAMES);
+        }
+
+        /**
+         * @return The station's stream URL.
+         */
+        String getUrl() {
+            return broadcast.url;
+        }
+
+        /**
+         * @return The station's track, or null until its stream has loaded.
+         */
+        AudioTrack getTrack() {
+            return broadcast.player.getPlayingTrack();
+        }
+
+        /**
+         * @return True if the broadcast failed; it won't produce any more frames.
+         */
+        boolean isEnded() {
+            return ended;
+        }
+
+        /**
+         * @return True if the listener paused the station.
+         */
+        boolean isPaused() {
+            return paused;
+        }
+
+        /**
+         * Pauses or resumes the station for this listener only. Resuming rejoins the live edge.
+         * @param paused Whether to pause.
+         */
+        void setPaused(boolean paused) {
+            if (!paused && this.paused)
+                rejoin = true;
+            this.paused = paused;
+        }
+
+        /**
+         * Stops listening; the broadcast is torn down if this was its last listener.
+         */
+        void cancel() {
+            unsubscribe(this);
+        }
+
+        /**
+         * Reads the next frame of the broadcast.
+         * @return The next frame, or null if the listener is paused or caught up with the live edge.
+         */
+        AudioFrame nextFrame() {
+            if (paused)
+                return null;
+
+            long written = broadcast.written;
+            if (rejoin) {
+                rejoin = false;
+                cursor = Math.max(0, written - JOIN_LEAD_FRAMES);
+            }
+            while (cursor < written) {
+                // Fell behind the ring; skip ahead to the live edge.
+                if (written - cursor >= RING_FRAMES)
+                    cursor = written - JOIN_LEAD_FRAMES;
+
+                AudioFrame frame = broadcast.ring.get((int) (cursor % RING_FRAMES));
+                // The slot could have been overwritten while it was read; only keep it if it still holds the cursor.
+                written = broadcast.written;
+                if (written - cursor < RING_FRAMES) {
+                    cursor++;
+                    return frame;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache from a search term to a result.<br>
+ * Entries are no longer returned once they are older than the time to live, and are evicted when the cache is full,
+ * in least recently used order. Expired entries can still be read with {@link #getStale(String)} when a fresh result
+ * can't be fetched. Hits and misses are counted so the cache's usefulness can be checked.
+ */
+class SearchCache {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxSize Maximum amount of search terms kept.
+     * @param ttlMillis How long a result stays valid, in milliseconds.
+     */
+    SearchCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SearchCache.Entry> eldest) {
+                return size() > SearchCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached result of a search term.
+     * @param term Normalized search term.
+     * @return The cached result or null if there is none or it expired.
+     */
+    synchronized String get(String term) {
+        Entry entry = entries.get(term);
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Gets the cached result of a search term even if it has expired.
+     * @param term Normalized search term.
+     * @return The cached result or null if there is none.
+     */
+    synchronized String getStale(String term) {
+        Entry entry = entries.get(term);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Caches the result of a search term.
+     * @param term Normalized search term.
+     * @param value Result of the search.
+     */
+    synchronized void put(String term, String value) {
+        entries.put(term, new Entry(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * @return Amount of lookups that found a valid result.
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Amount of lookups that found no result or an expired one.
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Amount of search terms currently cached.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A cached result and the time it expires.
+     */
+    private static class Entry {
+        private final String value;
+        private final long expiresAt;
+
+        private Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Prebuilt index over radio station names for fast, case insensitive lookups.<br>
+ * Every 1, 2 and 3 character gram of each lower cased name maps to the stations that contain it, so a lookup only
+ * checks the stations that share the search term's rarest gram instead of every station. Matches are ranked: exact
+ * name, then name prefix, then word prefix, then any substring; ties go to the shorter name, then to the station
+ * listed first in bot.properties.
+ */
+class StationIndex {
+    private static final int MAX_GRAM = 3;
+    private static final int[] NONE = new int[0];
+
+    private final Station[] stations;
+    private final Map<String, Station> exact = new HashMap<>();
+    private final Map<String, int[]> grams;
+
+    /**
+     * @param stationUrls Station names to their URLs, in the order they were listed.
+     */
+    StationIndex(Map<String, String> stationUrls) {
+        stations = new Station[stationUrls.size()];
+        Map<String, List<Integer>> postings = new HashMap<>();
+
+        int id = 0;
+        for (Map.Entry<String, String> entry : stationUrls.entrySet()) {
+            Station station = new Station(id, entry.getKey(), entry.getValue());
+            stations[id] = station;
+            exact.putIfAbsent(station.lowerName, station);
+
+            for (int length = 1; length <= MAX_GRAM; length++)
+                for (int i = 0; i + length <= station.lowerName.length(); i++) {
+                    List<Integer> ids = postings.computeIfAbsent(station.lowerName.substring(i, i + length),
+                            k -> new ArrayList<>());
+                    // Ids are added in increasing order, so a repeated gram only needs checking against the last id.
+                    if (ids.isEmpty() || ids.get(ids.size() - 1) != id)
+                        ids.add(id);
+                }
+            id++;
+        }
+
+        grams = new HashMap<>(postings.size() * 2);
+        for (Map.Entry<String, List<Integer>> posting : postings.entrySet()) {
+            int[] ids = new int[posting.getValue().size()];
+            for (int i = 0; i < ids.length; i++)
+                ids[i] = posting.getValue().get(i);
+            grams.put(posting.getKey(), ids);
+        }
+    }
+
+    /**
+     * Gets a station's URL from its exact name (case insensitive).
+     * @param name Name of the radio station.
+     * @return The station's URL or null if no station has that name.
+     */
+    String getByName(String name) {
+        Station station = exact.get(name.trim().toLowerCase(Locale.ROOT));
+        return station != null ? station.url : null;
+    }
+
+    /**
+     * Finds the stations whose names contain the term, best match first.
+     * @param term Search term.
+     * @param limit Maximum amount of stations returned.
+     * @return Names of the matching stations to their URLs, in ranked order.
+     */
+    List<Map.Entry<String, String>> search(String term, int limit) {
+        String lowerTerm = term.trim().toLowerCase(Locale.ROOT);
+        if (lowerTerm.isEmpty() || limit < 1)
+            return Collections.emptyList();
+
+        List<Match> matches = new ArrayList<>();
+        for (int id : candidates(lowerTerm)) {
+            Station station = stations[id];
+            int rank = rank(station.lowerName, lowerTerm);
+            if (rank >= 0)
+                matches.add(new Match(station, rank));
+        }
+        matches.sort(Comparator.<Match>comparingInt(m -> m.rank)
+                .thenComparingInt(m -> m.station.lowerName.length())
+                .thenComparingInt(m -> m.station.id));
+
+        List<Map.Entry<String, String>> results = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            Station station = matches.get(i).station;
+            results.add(new AbstractMap.SimpleImmutableEntry<>(station.name, station.url));
+        }
+        return results;
+    }
+
+    /**
+     * @return Amount of stations in the index.
+     */
+    int size() {
+        return stations.length;
+    }
+
+    /**
+     * Gets the ids of the stations sharing the term's rarest gram. These are the only stations that can contain it.
+     */
+    private int[] candidates(String lowerTerm) {
+        if (lowerTerm.length() <= MAX_GRAM) {
+            int[] ids = grams.get(lowerTerm);
+            return ids != null ? ids : NONE;
+        }
+
+        int[] rarest = null;
+        for (int i = 0; i + MAX_GRAM <= lowerTerm.length(); i++) {
+            int[] ids = grams.get(lowerTerm.substring(i, i + MAX_GRAM));
+            if (ids == null)
+                return NONE;
+            if (rarest == null || ids.length < rarest.length)
+                rarest = ids;
+        }
+        return rarest != null ? rarest : NONE;
+    }
+
+    /**
+     * Ranks how well a name matches a term; lower is better.
+     * @return 0 for an exact name, 1 for a name prefix, 2 for a word prefix, 3 for a substring or -1 for no match.
+     */
+    private static int rank(String lowerName, String lowerTerm) {
+        if (lowerName.equals(lowerTerm))
+            return 0;
+        if (lowerName.startsWith(lowerTerm))
+            return 1;
+
+        int index = lowerName.indexOf(lowerTerm);
+        if (index < 0)
+            return -1;
+        for (; index >= 0; index = lowerName.indexOf(lowerTerm, index + 1))
+            if (!Character.isLetterOrDigit(lowerName.charAt(index - 1)))
+                return 2;
+        return 3;
+    }
+
+    /**
+     * A station with its lower cased name computed once.
+     */
+    private static class Station {
+        private final int id;
+        private final String name;
+        private final String lowerName;
+        private final String url;
+
+        private Station(int id, String name, String url) {
+            this.id = id;
+            this.name = name;
+            this.lowerName = name.toLowerCase(Locale.ROOT);
+            this.url = url;
+        }
+    }
+
+    /**
+     * A station that matched a search term and how well it matched.
+     */
+    private static class Match {
+        private final Station station;
+        private final int rank;
+
+        private Match(Station station, int rank) {
+            this.station = station;
+            this.rank = rank;
+        }
+    }
+}
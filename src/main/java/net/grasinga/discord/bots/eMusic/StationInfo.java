@@ -0,0 +1,57 @@
+package net.grasinga.discord.bots.eMusic;
+
+/**
+ * Immutable snapshot of what an internet radio station mount is playing.
+ */
+final class StationInfo {
+    /**
+     * Snapshot used when a mount has no information.
+     */
+    static final StationInfo UNKNOWN = new StationInfo("Unknown", "Unknown", "Unknown", "Unknown");
+
+    private final String station;
+    private final String artist;
+    private final String title;
+    private final String info;
+
+    /**
+     * @param station Radio station's name.
+     * @param artist Current song's artist.
+     * @param title Current song's title.
+     * @param info Current song's artist and title.
+     */
+    StationInfo(String station, String artist, String title, String info) {
+        this.station = station;
+        this.artist = artist;
+        this.title = title;
+        this.info = info;
+    }
+
+    /**
+     * @return Radio station's name.
+     */
+    String getStation() {
+        return station;
+    }
+
+    /**
+     * @return Current song's artist.
+     */
+    String getArtist() {
+        return artist;
+    }
+
+    /**
+     * @return Current song's title.
+     */
+    String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return Current song's artist and title.
+     */
+    String getInfo() {
+        return info;
+    }
+}
@@ -0,0 +1,53 @@
+package net.grasinga.discord.bots.eMusic;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter.<br>
+ * The bucket holds up to a set amount of tokens and refills at a steady rate; each call takes one token.
+ */
+class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param capacity Maximum amount of tokens that can be saved up for a burst.
+     * @param tokensPerPeriod Amount of tokens added over one period.
+     * @param period Length of the period.
+     * @param unit Unit of the period.
+     */
+    TokenBucket(double capacity, double tokensPerPeriod, long period, TimeUnit unit) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerPeriod / unit.toNanos(period);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a token if there is one, without waiting for one to be added.
+     * @return True if a token was taken.
+     */
+    synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1)
+            return false;
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * @return Amount of whole tokens currently in the bucket.
+     */
+    synchronized long available() {
+        refill();
+        return (long) tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,20 @@
+package net.grasinga.discord.bots.eMusic;
+
+/**
+ * Measures the gap between tracks: the time from one track finishing to the first frame of the next track being
+ * ready to send. Only natural transitions are measured; skips and stops are not gaps.<br>
+ * Shared by every guild's {@link AudioPlayerSendHandler}, and exported as the emusic_track_gap_seconds histogram, from
+ * which the average, percentiles and count of the gaps can be read.
+ */
+class TrackGapStats {
+    private final Metrics.Histogram gaps = Metrics.histogram("emusic_track_gap_seconds",
+            "Time from a track finishing to the first frame of the next one being ready.");
+
+    /**
+     * Records the gap of one transition.
+     * @param nanos Length of the gap in nanoseconds.
+     */
+    void record(long nanos) {
+        gaps.observeNanos(nanos);
+    }
+}
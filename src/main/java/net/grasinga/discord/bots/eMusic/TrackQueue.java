@@ -0,0 +1,518 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Queue of tracks built for large, frequently edited queues.<br>
+ * The first few tracks are kept in a small head buffer so popping and pushing at the front are O(1) amortized. The
+ * rest are kept in an implicit treap (a randomized balanced tree ordered by position), so getting, inserting, removing
+ * or moving a track at any position is O(log n). Shuffling and removing duplicates are O(n).<br>
+ * Every tree node also keeps the total duration of its subtree, so the queue's total duration is O(1) and the
+ * duration of the tracks before any position is O(log n). A version number changes on every edit so views of the queue
+ * can be cached.<br>
+ * Not thread safe; {@link TrackScheduler} guards it.
+ */
+class TrackQueue implements Iterable<AudioTrack> {
+    /**
+     * Amount of tracks moved from the tree into the head buffer at once.
+     */
+    private static final int HEAD_BATCH = 32;
+
+    /**
+     * Largest the head buffer can grow from pushes at the front before it is folded back into the tree.
+     */
+    static final int HEAD_LIMIT = 2 * HEAD_BATCH;
+
+    private final Random random = new Random();
+
+    /**
+     * Front of the queue, stored in reverse so the first track is at the end of the list.
+     */
+    private final ArrayList<AudioTrack> head = new ArrayList<>();
+
+    /**
+     * Rest of the queue, after the head buffer.
+     */
+    private Node root = null;
+
+    /**
+     * Total duration of the tracks in the head buffer.
+     */
+    private long headDuration = 0;
+
+    private long version = 0;
+
+    /**
+     * @return Amount of tracks in the queue.
+     */
+    int size() {
+        return head.size() + size(root);
+    }
+
+    /**
+     * @return Total duration of every track in the queue, in milliseconds, not counting streams.
+     */
+    long totalDuration() {
+        return headDuration + duration(root);
+    }
+
+    /**
+     * Gets the total duration of the tracks before a position in O(log n).
+     * @param index Position in the queue, starting at 0.
+     * @return Duration of the tracks before the position, in milliseconds, not counting streams.
+     */
+    long durationBefore(int index) {
+        checkIndex(index, size() + 1);
+        long total = 0;
+        int inHead = Math.min(index, head.size());
+        if (inHead == head.size())
+            total += headDuration;
+        else
+            for (int i = 0; i < inHead; i++)
+                total += durationOf(head.get(head.size() - 1 - i));
+
+        index -= inHead;
+        Node node = root;
+        while (node != null && index > 0) {
+            int leftSize = size(node.left);
+            if (index <= leftSize)
+                node = node.left;
+            else {
+                total += duration(node.left) + durationOf(node.track);
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return Amount of tracks in the head buffer; at most {@link #HEAD_LIMIT} after any edit.
+     */
+    int headSize() {
+        return head.size();
+    }
+
+    /**
+     * @return Number that changes every time the queue is edited.
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * @return True if there are no tracks in the queue.
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return The first track without removing it, or null if the queue is empty.
+     */
+    AudioTrack peekFirst() {
+        refillHead();
+        return head.isEmpty() ? null : head.get(head.size() - 1);
+    }
+
+    /**
+     * Removes the first track.
+     * @return The first track, or null if the queue is empty.
+     */
+    AudioTrack pollFirst() {
+        refillHead();
+        if (head.isEmpty())
+            return null;
+        version++;
+        AudioTrack track = head.remove(head.size() - 1);
+        headDuration -= durationOf(track);
+        return track;
+    }
+
+    /**
+     * Adds a track to the front of the queue.
+     * @param track The track to add.
+     */
+    void addFirst(AudioTrack track) {
+        version++;
+        addToHead(0, track);
+        spillHead();
+    }
+
+    /**
+     * Adds a track to the end of the queue.
+     * @param track The track to add.
+     */
+    void addLast(AudioTrack track) {
+        version++;
+        root = merge(root, new Node(track, random.nextInt()));
+    }
+
+    /**
+     * Adds tracks to the end of the queue in one O(k + log n) operation.
+     * @param tracks The tracks to add, in order.
+     */
+    void addAllLast(List<AudioTrack> tracks) {
+        version++;
+        root = merge(root, build(tracks));
+    }
+
+    /**
+     * Gets the track at a position.
+     * @param index Position in the queue, starting at 0.
+     * @return The track at the position.
+     */
+    AudioTrack get(int index) {
+        checkIndex(index, size());
+        if (index < head.size())
+            return head.get(head.size() - 1 - index);
+
+        index -= head.size();
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize)
+                node = node.left;
+            else if (index == leftSize)
+                return node.track;
+            else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Inserts a track at a position, moving the track there and the ones after it back by one.
+     * @param index Position in the queue, starting at 0. May be the size of the queue to add to the end.
+     * @param track The track to insert.
+     */
+    void insert(int index, AudioTrack track) {
+        checkIndex(index, size() + 1);
+        if (index == 0) {
+            addFirst(track);
+            return;
+        }
+        version++;
+        if (index <= head.size()) {
+            addToHead(index, track);
+            spillHead();
+            return;
+        }
+
+        Node[] parts = split(root, index - head.size());
+        root = merge(merge(parts[0], new Node(track, random.nextInt())), parts[1]);
+    }
+
+    /**
+     * Removes the track at a position.
+     * @param index Position in the queue, starting at 0.
+     * @return The removed track.
+     */
+    AudioTrack remove(int index) {
+        checkIndex(index, size());
+        version++;
+        if (index < head.size()) {
+            AudioTrack track = head.remove(head.size() - 1 - index);
+            headDuration -= durationOf(track);
+            return track;
+        }
+
+        Node[] parts = split(root, index - head.size());
+        Node[] rest = split(parts[1], 1);
+        root = merge(parts[0], rest[1]);
+        return rest[0].track;
+    }
+
+    /**
+     * Moves a track to another position.
+     * @param from Current position of the track.
+     * @param to Position the track will end up at.
+     */
+    void move(int from, int to) {
+        checkIndex(to, size());
+        insert(to, remove(from));
+    }
+
+    /**
+     * Shuffles the queue in O(n).
+     */
+    void shuffle() {
+        List<AudioTrack> tracks = toList();
+        Collections.shuffle(tracks, random);
+        rebuild(tracks);
+    }
+
+    /**
+     * Removes every track whose identifier was already seen earlier in the queue, in O(n).
+     * @return Amount of tracks removed.
+     */
+    int dedupe() {
+        List<AudioTrack> tracks = toList();
+        List<AudioTrack> unique = new ArrayList<>(tracks.size());
+        Set<String> seen = new HashSet<>();
+        for (AudioTrack track : tracks)
+            if (seen.add(track.getIdentifier()))
+                unique.add(track);
+        rebuild(unique);
+        return tracks.size() - unique.size();
+    }
+
+    /**
+     * Removes every track.
+     */
+    void clear() {
+        version++;
+        head.clear();
+        headDuration = 0;
+        root = null;
+    }
+
+    /**
+     * Gets the tracks in a range of positions in O(log n + k).
+     * @param from First position, inclusive.
+     * @param to Last position, exclusive.
+     * @return The tracks in the range, in order.
+     */
+    List<AudioTrack> subList(int from, int to) {
+        int size = size();
+        from = Math.max(0, from);
+        to = Math.min(size, to);
+        List<AudioTrack> tracks = new ArrayList<>(Math.max(0, to - from));
+        if (from >= to)
+            return tracks;
+
+        Iterator<AudioTrack> iterator = iterator(from);
+        for (int i = from; i < to; i++)
+            tracks.add(iterator.next());
+        return tracks;
+    }
+
+    /**
+     * @return Every track, in order.
+     */
+    List<AudioTrack> toList() {
+        return subList(0, size());
+    }
+
+    @Override
+    public Iterator<AudioTrack> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Iterates over the queue starting at a position; finding the start is O(log n).
+     */
+    private Iterator<AudioTrack> iterator(int start) {
+        return new Iterator<AudioTrack>() {
+            private int headIndex = head.size() - 1 - start;
+            private final Deque<Node> path = new ArrayDeque<>();
+
+            {
+                // Walk down to the first tree position, remembering the nodes still to be visited.
+                int index = Math.max(0, start - head.size());
+                Node node = root;
+                while (node != null) {
+                    int leftSize = size(node.left);
+                    if (index < leftSize) {
+                        path.push(node);
+                        node = node.left;
+                    }
+                    else if (index == leftSize) {
+                        path.push(node);
+                        break;
+                    }
+                    else {
+                        index -= leftSize + 1;
+                        node = node.right;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return headIndex >= 0 || !path.isEmpty();
+            }
+
+            @Override
+            public AudioTrack next() {
+                if (headIndex >= 0)
+                    return head.get(headIndex--);
+                if (path.isEmpty())
+                    throw new NoSuchElementException();
+
+                Node node = path.pop();
+                for (Node next = node.right; next != null; next = next.left)
+                    path.push(next);
+                return node.track;
+            }
+        };
+    }
+
+    /**
+     * Moves the next batch of tracks from the tree into the head buffer when it runs empty.
+     */
+    private void refillHead() {
+        if (!head.isEmpty() || root == null)
+            return;
+
+        Node[] parts = split(root, HEAD_BATCH);
+        root = parts[1];
+        List<AudioTrack> batch = new ArrayList<>(HEAD_BATCH);
+        collect(parts[0], batch);
+        Collections.reverse(batch);
+        head.addAll(batch);
+        headDuration = duration(parts[0]);
+    }
+
+    /**
+     * Folds the back of the head buffer into the front of the tree once pushes have grown it past its limit.
+     */
+    private void spillHead() {
+        if (head.size() <= HEAD_LIMIT)
+            return;
+        List<AudioTrack> spill = new ArrayList<>(head.subList(0, HEAD_BATCH));
+        head.subList(0, HEAD_BATCH).clear();
+        Collections.reverse(spill);
+        Node spilled = build(spill);
+        headDuration -= duration(spilled);
+        root = merge(spilled, root);
+    }
+
+    /**
+     * Adds a track to the head buffer at a position counted from the front of the queue.
+     */
+    private void addToHead(int index, AudioTrack track) {
+        head.add(head.size() - index, track);
+        headDuration += durationOf(track);
+    }
+
+    private void rebuild(List<AudioTrack> tracks) {
+        version++;
+        head.clear();
+        headDuration = 0;
+        root = build(tracks);
+    }
+
+    /**
+     * Builds a treap from tracks in O(n) by giving each a random priority and forming the Cartesian tree.
+     */
+    private Node build(List<AudioTrack> tracks) {
+        Deque<Node> spine = new ArrayDeque<>();
+        for (AudioTrack track : tracks) {
+            Node node = new Node(track, random.nextInt());
+            Node last = null;
+            while (!spine.isEmpty() && spine.peek().priority < node.priority)
+                last = update(spine.pop());
+            node.left = last;
+            if (!spine.isEmpty())
+                spine.peek().right = node;
+            spine.push(node);
+        }
+
+        Node top = null;
+        while (!spine.isEmpty())
+            top = update(spine.pop());
+        return top;
+    }
+
+    /**
+     * Splits a tree into its first count tracks and the rest.
+     */
+    private static Node[] split(Node node, int count) {
+        if (node == null)
+            return new Node[] {null, null};
+
+        if (size(node.left) >= count) {
+            Node[] parts = split(node.left, count);
+            node.left = parts[1];
+            parts[1] = update(node);
+            return parts;
+        }
+
+        Node[] parts = split(node.right, count - size(node.left) - 1);
+        node.right = parts[0];
+        parts[0] = update(node);
+        return parts;
+    }
+
+    /**
+     * Joins two trees, with every track of the first coming before the second.
+     */
+    private static Node merge(Node first, Node second) {
+        if (first == null)
+            return second;
+        if (second == null)
+            return first;
+
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            return update(first);
+        }
+        second.left = merge(first, second.left);
+        return update(second);
+    }
+
+    private static void collect(Node node, List<AudioTrack> tracks) {
+        if (node == null)
+            return;
+        collect(node.left, tracks);
+        tracks.add(node.track);
+        collect(node.right, tracks);
+    }
+
+    private static Node update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        node.duration = durationOf(node.track) + duration(node.left) + duration(node.right);
+        return node;
+    }
+
+    private static long duration(Node node) {
+        return node == null ? 0 : node.duration;
+    }
+
+    /**
+     * Gets a track's duration for the queue's totals. Streams have no real duration, so they count as 0.
+     */
+    static long durationOf(AudioTrack track) {
+        return track.getInfo().isStream ? 0 : track.getDuration();
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bound);
+    }
+
+    /**
+     * A track in the tree, with the size of its subtree.
+     */
+    private static class Node {
+        private final AudioTrack track;
+        private final int priority;
+        private int size = 1;
+        private long duration;
+        private Node left;
+        private Node right;
+
+        private Node(AudioTrack track, int priority) {
+            this.track = track;
+            this.priority = priority;
+            this.duration = durationOf(track);
+        }
+    }
+}
@@ -5,24 +5,86 @@ import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This class schedules tracks for the audio player. It contains the queue of tracks.
+ * This class schedules tracks for the audio player. It contains the queue of tracks.<br>
+ * Commands and the player's events both use the queue, so it is only touched while holding this scheduler's lock.<br>
+ * <br>
+ * Gapless playback: the scheduler owns two players. Once the playing track is within {@link #LOOKAHEAD_MILLIS} of
+ * its end, the next queued track is started paused on the standby player, which loads, connects and buffers it ahead
+ * of time. When the playing track ends, the send handler is switched to the standby player and it is unpaused, so
+ * nothing has to be resolved or decoded between the tracks. A clone of the next track is prepared and the track itself
+ * stays in the queue until the hand-off; if the queue changes in the meantime, the clone is dropped and the new next
+ * track is prepared instead.
  */
 public class TrackScheduler extends AudioEventAdapter {
-    private AudioPlayer player;
-    List<AudioTrack> queue;
-    AudioTrack lastTrack = null;
+    /**
+     * How long before the end of a track the next one is prepared. Can be set with the emusic.lookahead.ms system
+     * property; 0 turns preparing off.
+     */
+    static final long LOOKAHEAD_MILLIS = Long.getLong("emusic.lookahead.ms", 10000);
+
+    /**
+     * How often a track within the lookahead window checks that the right track is prepared.
+     */
+    private static final long LOOKAHEAD_RECHECK_MILLIS = 1000;
+
+    /**
+     * Runs the lookahead checks of every guild.
+     */
+    private static final ScheduledExecutorService LOOKAHEAD = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "eMusic-lookahead");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The player being heard. Swapped with {@link #standby} on a hand-off.
+     */
+    private volatile AudioPlayer player;
+    private AudioPlayer standby;
+    private final GuildPlaybackState state;
+    private final AudioPlayerSendHandler sendHandler;
+    private final TrackQueue queue;
+    private final QueueView queueView;
+    private AudioTrack lastTrack = null;
     private AudioTrack nowPlaying = null;
+    /**
+     * Queued track that {@link #prepared} is a clone of, or null if none is prepared.
+     */
+    private AudioTrack preparedFor = null;
+    /**
+     * Clone of the next track started paused on {@link #standby}, or null if none is prepared.
+     */
+    private AudioTrack prepared = null;
 
     /**
      * @param player The audio player this scheduler uses
+     * @param standby A second player of the same guild, used to prepare the next track.
+     * @param state Playback state of the player's guild.
+     * @param sendHandler Send handler of the guild, switched between the players on a hand-off.
      */
-    TrackScheduler(AudioPlayer player) {
+    TrackScheduler(AudioPlayer player, AudioPlayer standby, GuildPlaybackState state,
+                   AudioPlayerSendHandler sendHandler) {
         this.player = player;
-        this.queue = new ArrayList<>();
+        this.standby = standby;
+        // The standby player stays paused, so a track prepared on it never plays until it is handed off.
+        standby.setPaused(true);
+        this.state = state;
+        this.sendHandler = sendHandler;
+        this.queue = new TrackQueue();
+        this.queueView = new QueueView(queue);
+    }
+
+    /**
+     * @return The player being heard.
+     */
+    AudioPlayer getPlayer() {
+        return player;
     }
 
     /**
@@ -35,54 +97,327 @@ public class TrackScheduler extends AudioEventAdapter {
         // something is playing, it returns false and does nothing. In that case the player was already playing so this
         // track goes to the queue instead.
         if(player.startTrack(track, true)) {
-            lastTrack = track;
-            nowPlaying = track;
+            synchronized (this) {
+                lastTrack = track;
+                nowPlaying = track;
+            }
         }
         else
-            queue.add(track);
+            synchronized (this) {
+                queue.addLast(track);
+            }
+    }
+
+    /**
+     * Adds a whole playlist in one operation. The first track is played right away if nothing is playing, and the
+     * rest are added to the end of the queue together.
+     *
+     * @param tracks The tracks to play or add to queue, in order.
+     */
+    void queueAll(List<AudioTrack> tracks) {
+        if(tracks.isEmpty())
+            return;
+
+        List<AudioTrack> rest = tracks;
+        if(player.startTrack(tracks.get(0), true)) {
+            synchronized (this) {
+                lastTrack = tracks.get(0);
+                nowPlaying = tracks.get(0);
+            }
+            rest = tracks.subList(1, tracks.size());
+        }
+        synchronized (this) {
+            queue.addAllLast(rest);
+        }
     }
 
     /**
      * Start the next track, stopping the current one if it is playing.
      */
     void nextTrack() {
+        nextTrack(0);
+    }
+
+    /**
+     * Start the next track, handing off to the standby player if the next track is already prepared on it.
+     * @param endedAt {@link System#nanoTime()} of when the last track finished, or 0 if it didn't finish naturally.
+     */
+    private void nextTrack(long endedAt) {
         // Start the next track, regardless of if something is already playing or not. In case queue was empty, we are
         // giving null to startTrack, which is a valid argument and will simply stop the player.
 
-        lastTrack = nowPlaying;
+        AudioTrack track;
+        AudioPlayer previous;
+        AudioPlayer next;
+        AudioPlayer dropFrom = null;
+        boolean handOff;
+        synchronized (this) {
+            lastTrack = nowPlaying;
+            track = queue.pollFirst();
 
-        AudioTrack track = queue.get(0);
-        if(track == null)
-            eMusic.playbackFinished(true);
-        else
-            eMusic.playbackFinished(false);
+            previous = player;
+            handOff = track != null && track == preparedFor;
+            if (handOff) {
+                track = prepared;
+                player = standby;
+                standby = previous;
+            }
+            else if (prepared != null)
+                dropFrom = standby;
+            next = player;
+            nowPlaying = track;
+            preparedFor = null;
+            prepared = null;
+        }
+
+        state.setPlaybackFinished(track == null);
+        if (track != null && endedAt != 0)
+            sendHandler.markTransition(endedAt);
+
+        // The players are never started or stopped while holding this scheduler's lock, as they fire events back
+        // into it.
+        if (handOff) {
+            next.setPaused(previous.isPaused());
+            sendHandler.setPlayer(next);
+            // A track skipped during the hand-off ends on what is now the standby player; count it here.
+            AudioTrack skipped = previous.getPlayingTrack();
+            if (skipped != null)
+                OpusPassthrough.record(skipped, previous);
+            previous.stopTrack();
+            previous.setPaused(true);
+            scheduleLookahead(track, next);
+            return;
+        }
+
+        if (dropFrom != null)
+            dropFrom.stopTrack();
         try {
-            player.startTrack(track, false);
+            next.startTrack(track, false);
         } catch (Exception e) {
             if(track != null)
-                player.startTrack(track.makeClone(), false);
+                next.startTrack(track.makeClone(), false);
         }
-        nowPlaying = track;
-        queue.remove(track);
+    }
+
+    /**
+     * Puts the last played track back at the front of the queue and starts it.
+     * @return False if there is no last played track.
+     */
+    boolean previousTrack() {
+        synchronized (this) {
+            if(lastTrack == null)
+                return false;
+
+            // A track can only be played once, so play a copy of the last one.
+            queue.addFirst(lastTrack.makeClone());
+        }
+        nextTrack();
+        return true;
     }
 
     /**
      * Get the next track in the queue.
      * @return The next {@link AudioTrack} in the queue.
      */
-    AudioTrack getNextTrack() {
-        if(queue.size() > 0)
-            return queue.get(0);
-        else
-            return null;
+    synchronized AudioTrack getNextTrack() {
+        return queue.peekFirst();
+    }
+
+    /**
+     * @return The track that was playing before the current one, or null if there is none.
+     */
+    synchronized AudioTrack getLastTrack() {
+        return lastTrack;
+    }
+
+    /**
+     * @return Amount of tracks in the queue.
+     */
+    synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return Total duration of the queue in milliseconds, not counting streams.
+     */
+    synchronized long getQueueDuration() {
+        return queue.totalDuration();
+    }
+
+    /**
+     * Renders a page of the queue for the -queue command. Pages are cached until the queue changes.
+     * @param page Page number, starting at 1.
+     * @return The page's message.
+     * @see QueueView
+     */
+    synchronized String renderQueuePage(int page) {
+        return queueView.render(page);
+    }
+
+    /**
+     * Gets the track at a position of the queue.
+     * @param index Position in the queue, starting at 0.
+     * @return The track at the position.
+     */
+    synchronized AudioTrack getQueuedTrack(int index) {
+        return queue.get(index);
+    }
+
+    /**
+     * Gets the tracks in a range of the queue.
+     * @param from First position, inclusive.
+     * @param to Last position, exclusive.
+     * @return The tracks in the range, in order.
+     */
+    synchronized List<AudioTrack> getQueuedTracks(int from, int to) {
+        return queue.subList(from, to);
+    }
+
+    /**
+     * Removes the track at a position of the queue.
+     * @param index Position in the queue, starting at 0.
+     * @return The removed track.
+     */
+    synchronized AudioTrack removeQueuedTrack(int index) {
+        return queue.remove(index);
+    }
+
+    /**
+     * Moves a track to another position of the queue.
+     * @param from Current position of the track, starting at 0.
+     * @param to Position the track will end up at, starting at 0.
+     */
+    synchronized void moveQueuedTrack(int from, int to) {
+        queue.move(from, to);
+    }
+
+    /**
+     * Shuffles the queue.
+     */
+    synchronized void shuffleQueue() {
+        queue.shuffle();
+    }
+
+    /**
+     * Removes tracks that are already in the queue at an earlier position.
+     * @return Amount of tracks removed.
+     */
+    synchronized int dedupeQueue() {
+        return queue.dedupe();
+    }
+
+    /**
+     * Removes every track from the queue.
+     */
+    void clearQueue() {
+        AudioPlayer dropFrom = null;
+        synchronized (this) {
+            queue.clear();
+            if (prepared != null)
+                dropFrom = standby;
+            preparedFor = null;
+            prepared = null;
+        }
+        if (dropFrom != null)
+            dropFrom.stopTrack();
+    }
+
+    /**
+     * Clears the queue and destroys both players; the scheduler can't be used afterwards.
+     */
+    void destroy() {
+        AudioPlayer heard;
+        AudioPlayer other;
+        synchronized (this) {
+            queue.clear();
+            preparedFor = null;
+            prepared = null;
+            heard = player;
+            other = standby;
+        }
+        heard.destroy();
+        other.destroy();
+    }
+
+    @Override
+    public void onTrackStart(AudioPlayer player, AudioTrack track) {
+        // Tracks started on the standby player are only being prepared.
+        if (player == this.player)
+            scheduleLookahead(track, player);
     }
 
     @Override
     public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) {
+        if (player != this.player) {
+            // Tracks ending on the standby player were only prepared, or were already counted by the hand-off.
+            // A prepared track that failed to load is simply loaded again by the hand-off.
+            synchronized (this) {
+                if (track == prepared) {
+                    preparedFor = null;
+                    prepared = null;
+                }
+            }
+            return;
+        }
+
+        OpusPassthrough.record(track, player);
         // Only start the next track if the end reason is suitable for it (FINISHED or LOAD_FAILED)
         if (endReason.mayStartNext) {
-            lastTrack = track;
-            nextTrack();
+            synchronized (this) {
+                lastTrack = track;
+            }
+            nextTrack(endReason == AudioTrackEndReason.FINISHED ? System.nanoTime() : 0);
+        }
+    }
+
+    /**
+     * Checks the track again once it is within {@link #LOOKAHEAD_MILLIS} of its end.
+     * @param track The track being played.
+     * @param player The player playing it.
+     */
+    private void scheduleLookahead(AudioTrack track, AudioPlayer player) {
+        if (LOOKAHEAD_MILLIS <= 0 || track.getInfo().isStream)
+            return;
+        long delay = Math.max(0, track.getDuration() - track.getPosition() - LOOKAHEAD_MILLIS);
+        LOOKAHEAD.schedule(() -> checkLookahead(track, player), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Prepares the next queued track if the playing track is near its end. Keeps checking until the track ends, so
+     * tracks queued, moved or removed late are still picked up.
+     */
+    private void checkLookahead(AudioTrack track, AudioPlayer player) {
+        if (player != this.player || player.getPlayingTrack() != track)
+            return;
+
+        long remaining = track.getDuration() - track.getPosition();
+        if (remaining > LOOKAHEAD_MILLIS) {
+            // Paused or seeked back; wait until the window is reached again.
+            scheduleLookahead(track, player);
+            return;
+        }
+
+        AudioTrack clone = null;
+        AudioPlayer target = null;
+        boolean dropPrepared = false;
+        synchronized (this) {
+            AudioTrack next = queue.peekFirst();
+            if (next != null && next != preparedFor) {
+                dropPrepared = prepared != null;
+                target = standby;
+                clone = next.makeClone();
+                preparedFor = next;
+                prepared = clone;
+            }
+        }
+
+        // The standby player is already paused. A hand-off that happens before the clone is started has unpaused it,
+        // and the clone then plays right away.
+        if (target != null) {
+            if (dropPrepared)
+                target.stopTrack();
+            target.startTrack(clone, false);
         }
+        LOOKAHEAD.schedule(() -> checkLookahead(track, player), LOOKAHEAD_RECHECK_MILLIS, TimeUnit.MILLISECONDS);
     }
 }
@@ -0,0 +1,114 @@
+package net.grasinga.discord.bots.eMusic;
+
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.entities.VoiceChannel;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index of the voice channel each user is in, per guild.<br>
+ * A guild is indexed with one pass over its voice channels when it becomes ready (or the first time it is looked up or
+ * has a voice event), then kept up to date from voice join, move and leave events, so finding a user's channel is
+ * O(1) instead of a scan over every member of every voice channel. Channel ids are stored rather than channels, so a
+ * lookup always returns JDA's current channel object.<br>
+ * Updated from JDA's event thread and read from the command lanes. Scans and events of a guild are applied under the
+ * guild's lock, so an event is never lost to, or overwritten by, a scan running at the same time; JDA updates its
+ * cache before firing an event, so applying an event a scan already saw changes nothing. Lookups don't lock once the
+ * guild is indexed.
+ */
+class VoiceChannelIndex {
+    private final ConcurrentMap<Long, GuildIndex> guilds = new ConcurrentHashMap<>();
+
+    /**
+     * (Re)builds the index of a guild from its current voice channels.
+     * @param guild The guild to index.
+     */
+    void index(Guild guild) {
+        GuildIndex index = guilds.computeIfAbsent(id(guild.getId()), k -> new GuildIndex());
+        synchronized (index) {
+            index.scan(guild);
+        }
+    }
+
+    /**
+     * Drops the index of a guild the bot is no longer in.
+     * @param guild The guild that was left.
+     */
+    void remove(Guild guild) {
+        guilds.remove(id(guild.getId()));
+    }
+
+    /**
+     * Records a member joining or moving to a voice channel.
+     * @param member The member.
+     * @param channel The channel joined.
+     */
+    void joined(Member member, VoiceChannel channel) {
+        GuildIndex index = indexOf(member.getGuild());
+        synchronized (index) {
+            index.users.put(id(member.getUser().getId()), channel.getId());
+        }
+    }
+
+    /**
+     * Records a member leaving voice.
+     * @param member The member.
+     */
+    void left(Member member) {
+        GuildIndex index = indexOf(member.getGuild());
+        synchronized (index) {
+            index.users.remove(id(member.getUser().getId()));
+        }
+    }
+
+    /**
+     * Finds the voice channel a user is in.
+     * @param guild The guild to look in.
+     * @param user The user.
+     * @return The user's voice channel, or null if they aren't in one.
+     */
+    VoiceChannel getChannel(Guild guild, User user) {
+        String channelId = indexOf(guild).users.get(id(user.getId()));
+        return channelId == null ? null : guild.getVoiceChannelById(channelId);
+    }
+
+    /**
+     * Gets the index of a guild, scanning the guild first if it wasn't indexed yet.
+     */
+    private GuildIndex indexOf(Guild guild) {
+        GuildIndex index = guilds.computeIfAbsent(id(guild.getId()), k -> new GuildIndex());
+        if (!index.scanned)
+            synchronized (index) {
+                if (!index.scanned)
+                    index.scan(guild);
+            }
+        return index;
+    }
+
+    private static long id(String snowflake) {
+        return Long.parseLong(snowflake);
+    }
+
+    /**
+     * The voice channel id of each user of one guild. Written while holding its lock.
+     */
+    private static class GuildIndex {
+        private volatile ConcurrentMap<Long, String> users = new ConcurrentHashMap<>();
+        private volatile boolean scanned = false;
+
+        /**
+         * Replaces the users with a fresh scan, so lookups meanwhile still see the previous index.
+         */
+        private void scan(Guild guild) {
+            ConcurrentMap<Long, String> scannedUsers = new ConcurrentHashMap<>();
+            for (VoiceChannel channel : guild.getVoiceChannels())
+                for (Member member : channel.getMembers())
+                    scannedUsers.put(id(member.getUser().getId()), channel.getId());
+            users = scannedUsers;
+            scanned = true;
+        }
+    }
+}
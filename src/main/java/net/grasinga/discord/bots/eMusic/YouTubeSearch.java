@@ -16,10 +16,18 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Properties;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Gets the first YouTube video from a search term.
+ * Gets the first YouTube video from a search term.<br>
+ * The API key and YouTube client are created once and reused, and results are cached by normalized search term.<br>
+ * Identical searches made at the same time share one API request, and requests are rate limited to stay within the
+ * daily API quota. When the quota is used up, an expired cached result is used if there is one; otherwise the search
+ * fails right away with {@link #QUOTA_EXHAUSTED} instead of waiting, as a token takes many minutes to be refilled.
  */
 class YouTubeSearch {
     private final static Charset ENCODING = StandardCharsets.UTF_8;
@@ -32,40 +40,120 @@ class YouTubeSearch {
 
     private static final long NUMBER_OF_VIDEOS_RETURNED = 1;
 
+    /**
+     * Returned by {@link #videoIdSearch(String)} when no video was found or the search failed.
+     */
+    static final String NO_RESULT = "blank";
+
+    /**
+     * Returned by {@link #videoIdSearch(String)} when the search quota is used up and nothing is cached for the term.
+     */
+    static final String QUOTA_EXHAUSTED = "quota-exhausted";
+
+    /**
+     * Maximum amount of search terms kept in {@link #CACHE}.
+     */
+    private static final int CACHE_SIZE = 1000;
+
+    /**
+     * How long a cached search result is used before YouTube is asked again.
+     */
+    private static final long CACHE_TTL = TimeUnit.HOURS.toMillis(12);
+
+    /**
+     * Cache of normalized search terms to video ids.
+     */
+    private static final SearchCache CACHE = new SearchCache(CACHE_SIZE, CACHE_TTL);
+
+    /**
+     * Latency and failures of calls to the search API; cached and rate limited searches aren't counted.
+     */
+    private static final Metrics.Histogram SEARCH_LATENCY = Metrics.histogram("emusic_youtube_search_seconds",
+            "Time taken by calls to the YouTube search API.");
+    private static final Metrics.Counter SEARCH_FAILURES = Metrics.counter("emusic_youtube_search_failures_total",
+            "Calls to the YouTube search API that failed.");
+
+    /**
+     * Daily YouTube API quota in units. Can be overridden by the second line of {@link #PROPERTIES_FILENAME}.
+     */
+    private static final long DEFAULT_DAILY_QUOTA = 10000;
+
+    /**
+     * Quota units used by one search.list request.
+     */
+    private static final long SEARCH_COST = 100;
+
+    /**
+     * Amount of searches that can be made in a burst before the daily rate applies.
+     */
+    private static final int SEARCH_BURST = 10;
+
+    /**
+     * Searches currently being made, by normalized search term.
+     */
+    private static final ConcurrentMap<String, CompletableFuture<String>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private static String apiKey = null;
+
+    private static long dailyQuota = DEFAULT_DAILY_QUOTA;
+
+    private static TokenBucket limiter = null;
+
+    private static YouTube youtube = null;
+
     /**
      * Searches for a video on YouTube from the given term, then
      * selects the first video, and finally returns that video's id.
      *
      * @param term The search term to be used on YouTube.
-     * @return The YouTube video id from the specified search term.
+     * @return The YouTube video id from the specified search term, {@link #NO_RESULT} or {@link #QUOTA_EXHAUSTED}.
      */
     static String videoIdSearch(String term) {
-        // Read the developer key from the properties file.
-        Properties properties = new Properties();
+        // Prompt the user to enter a query term.
+        String queryTerm = setInputQuery(normalize(term));
+
+        String cached = CACHE.get(queryTerm);
+        if (cached != null)
+            return cached;
+
+        // Only the first caller for a term searches; anyone else asking for it meanwhile waits for that result.
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = IN_FLIGHT.putIfAbsent(queryTerm, result);
+        if (inFlight != null)
+            return inFlight.join();
+
+        String videoId = NO_RESULT;
         try {
-            List<String> lines = readPropertiesFile("./" + PROPERTIES_FILENAME);
-            properties.put("youtube.apikey",lines.get(0));
-        } catch (IOException e) {
-            System.err.println("There was an error reading " + PROPERTIES_FILENAME + ": " + e.getCause()
-                    + " : " + e.getMessage());
-            System.exit(1);
+            videoId = search(queryTerm);
+        } finally {
+            IN_FLIGHT.remove(queryTerm, result);
+            result.complete(videoId);
         }
+        return videoId;
+    }
 
+    /**
+     * Makes the API request for a search term, if the rate limiter allows it.
+     * @param queryTerm Normalized search term.
+     * @return The YouTube video id from the specified search term, {@link #NO_RESULT} or {@link #QUOTA_EXHAUSTED}.
+     */
+    private static String search(String queryTerm) {
         try {
-            YouTube youtube = new YouTube.Builder(new NetHttpTransport(), new JacksonFactory(), request -> {
-            }).setApplicationName("enetmusic-youtube-search").build();
-
-            // Prompt the user to enter a query term.
-            String queryTerm = setInputQuery(term);
+            if (!getLimiter().tryAcquire()) {
+                String stale = CACHE.getStale(queryTerm);
+                if (stale != null)
+                    return stale;
+                System.err.println("YouTube search quota is used up; could not search for: " + queryTerm);
+                return QUOTA_EXHAUSTED;
+            }
 
             // Define the API request for retrieving search results.
-            YouTube.Search.List search = youtube.search().list("id,snippet");
+            YouTube.Search.List search = getClient().search().list("id,snippet");
 
             // Set your developer key from the Google API Console for
             // non-authenticated requests. See:
             // https://console.developers.google.com/
-            String apiKey = properties.getProperty("youtube.apikey");
-            search.setKey(apiKey);
+            search.setKey(getApiKey());
             search.setQ(queryTerm);
 
             // Restrict the search results to only include videos. See:
@@ -78,10 +166,22 @@ class YouTubeSearch {
             search.setMaxResults(NUMBER_OF_VIDEOS_RETURNED);
 
             // Call the API and print results.
-            SearchListResponse searchResponse = search.execute();
+            long start = System.nanoTime();
+            SearchListResponse searchResponse;
+            try {
+                searchResponse = search.execute();
+            } catch (IOException e) {
+                SEARCH_FAILURES.inc();
+                throw e;
+            } finally {
+                SEARCH_LATENCY.observeSince(start);
+            }
             List<SearchResult> searchResultList = searchResponse.getItems();
             if (searchResultList != null) {
-                return getVideo(searchResultList.iterator());
+                String videoId = getVideo(searchResultList.iterator());
+                if (!videoId.equals(NO_RESULT))
+                    CACHE.put(queryTerm, videoId);
+                return videoId;
             }
         } catch (GoogleJsonResponseException e) {
             System.err.println("There was a service error: " + e.getDetails().getCode() + " : "
@@ -91,7 +191,58 @@ class YouTubeSearch {
         } catch (Throwable t) {
             t.printStackTrace();
         }
-        return "blank";
+        return NO_RESULT;
+    }
+
+    /**
+     * @return The search result cache, for its hit and miss counts.
+     */
+    static SearchCache getCache() {
+        return CACHE;
+    }
+
+    /**
+     * Reads the developer key from the properties file the first time it is needed.
+     * @return The YouTube API key.
+     */
+    private static synchronized String getApiKey() {
+        if (apiKey == null) {
+            try {
+                List<String> lines = readPropertiesFile("./" + PROPERTIES_FILENAME);
+                apiKey = lines.get(0);
+                if (lines.size() > 1 && !lines.get(1).trim().isEmpty())
+                    dailyQuota = Long.parseLong(lines.get(1).trim());
+            } catch (IOException e) {
+                System.err.println("There was an error reading " + PROPERTIES_FILENAME + ": " + e.getCause()
+                        + " : " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        return apiKey;
+    }
+
+    /**
+     * Creates the rate limiter the first time it is needed, sized so searches spread the daily quota over the day.
+     * @return The search rate limiter.
+     */
+    private static synchronized TokenBucket getLimiter() {
+        if (limiter == null) {
+            getApiKey();
+            limiter = new TokenBucket(SEARCH_BURST, (double) dailyQuota / SEARCH_COST, 1, TimeUnit.DAYS);
+        }
+        return limiter;
+    }
+
+    /**
+     * Builds the YouTube client the first time it is needed. The client is thread safe and shared by all searches.
+     * @return The YouTube client.
+     */
+    private static synchronized YouTube getClient() {
+        if (youtube == null) {
+            youtube = new YouTube.Builder(new NetHttpTransport(), new JacksonFactory(), request -> {
+            }).setApplicationName("enetmusic-youtube-search").build();
+        }
+        return youtube;
     }
 
     private static List<String> readPropertiesFile(String aFileName) throws IOException {
@@ -106,6 +257,15 @@ class YouTubeSearch {
         return inputQuery;
     }
 
+    /**
+     * Lower cases a search term and collapses its whitespace so equal searches share a cache entry.
+     * @param term Search term to normalize.
+     * @return The normalized search term.
+     */
+    private static String normalize(String term) {
+        return term.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
     /**
      * Returns the video id based on Iterator.
      *
@@ -115,11 +275,11 @@ class YouTubeSearch {
      */
     private static String getVideo(Iterator<SearchResult> iteratorSearchResults) {
         if (!iteratorSearchResults.hasNext()) {
-            return "blank";
+            return NO_RESULT;
         }
 
         SearchResult singleVideo = iteratorSearchResults.next();
         ResourceId rId = singleVideo.getId();
-        return rId.getVideoId();
+        return rId.getVideoId() != null ? rId.getVideoId() : NO_RESULT;
     }
 }
@@ -11,6 +11,12 @@ import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import net.dv8tion.jda.core.AccountType;
 import net.dv8tion.jda.core.JDABuilder;
 import net.dv8tion.jda.core.entities.*;
+import net.dv8tion.jda.core.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.core.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.core.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.core.events.guild.voice.GuildVoiceJoinEvent;
+import net.dv8tion.jda.core.events.guild.voice.GuildVoiceLeaveEvent;
+import net.dv8tion.jda.core.events.guild.voice.GuildVoiceMoveEvent;
 import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
 import net.dv8tion.jda.core.exceptions.RateLimitedException;
 import net.dv8tion.jda.core.hooks.ListenerAdapter;
@@ -19,9 +25,12 @@ import net.dv8tion.jda.core.managers.AudioManager;
 import javax.security.auth.login.LoginException;
 import java.io.*;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 /**
  * <a href="http://ethereal.network/" target="_blank">Ethereal Network</a>'s MusicPlayer Bot<br>
@@ -76,6 +85,7 @@ class eMusic extends ListenerAdapter {
                 br.close();
             }
 
+            MetricsServer.startIfConfigured();
             new JDABuilder(AccountType.BOT)
                     .setBulkDeleteSplittingEnabled(false)
                     .setToken(token)
@@ -104,7 +114,7 @@ class eMusic extends ListenerAdapter {
      * Populates {@link #radioStations} from a list of stations. Stations are in the format "Name, URL".
      * @param stations {@link List} of stations to be added to {@link #radioStations}.
      */
-    private static void getRadioStations(List<String> stations) {
+    static void getRadioStations(List<String> stations) {
         try {
             for (String station : stations) {
                 String[] parts = station.split(", ");
@@ -123,280 +133,494 @@ class eMusic extends ListenerAdapter {
     private static String managerRole = "Server";
 
     /**
-     * VoiceChannel that the bot is/will be playing in.
+     * Holds internet radio stations: String 1 = Station name, String 2 = Station URL
      */
-    private VoiceChannel voiceChannel = null;
+    private static Map<String,String> radioStations = new LinkedHashMap<>();
 
     /**
-     * Holds internet radio stations: String 1 = Station name, String 2 = Station URL
+     * Amount of other matching stations listed when a -radio search term matches more than one station.
      */
-    private static HashMap<String,String> radioStations = new HashMap<>();
+    private static final int MAX_STATION_SUGGESTIONS = 5;
 
     private final AudioPlayerManager playerManager;
 
-    private final Map<Long, GuildMusicManager> musicManagers;
+    /**
+     * Plays each radio station once for every guild tuned in to it.
+     */
+    private final RadioBroadcasts broadcasts;
+
+    /**
+     * Opus frames of tracks played before, or null if the cache isn't configured.
+     */
+    private final OpusFrameCache opusCache;
+
+    /**
+     * Steps the {@link #playerManager}'s audio quality down when the host can't keep up.
+     */
+    private final QualityController quality;
+
+    /**
+     * Index over {@link #radioStations}, built once the stations are loaded.
+     */
+    private final StationIndex stationIndex;
+
+    private final ConcurrentMap<Long, GuildMusicManager> musicManagers;
+
+    /**
+     * Gaps between tracks of every guild, measured by their send handlers.
+     */
+    private final TrackGapStats gapStats = new TrackGapStats();
+
+    /**
+     * Keeps the info of playing radio stations up to date for {@link #nowPlaying(TextChannel)}.
+     */
+    private final IcecastPoller radioPoller;
+
+    /**
+     * Gets the id of the first YouTube video found for a search term.
+     * @see YouTubeSearch#videoIdSearch(String)
+     */
+    private final Function<String, String> videoSearch;
+
+    /**
+     * Voice channel of every user, kept up to date from voice events.
+     */
+    private final VoiceChannelIndex voiceChannels = new VoiceChannelIndex();
+
+    /**
+     * Notifies the bot managers of failed commands.
+     */
+    private final MaintainerAlerts alerts = new MaintainerAlerts(managerRole);
+
+    /**
+     * Amount of threads used to run commands for all guilds.
+     */
+    private static final int COMMAND_THREADS = 4;
 
-    private boolean trackIsLoaded = false;
+    /**
+     * Runs commands on a per guild lane, off of JDA's event thread.
+     */
+    private final GuildCommandExecutor commandExecutor = new GuildCommandExecutor(COMMAND_THREADS);
 
-    private AudioTrack currentAudioTrack = null;
+    /**
+     * Buffers and merges the replies sent to each channel.
+     */
+    private final MessageOutbox outbox = new MessageOutbox();
 
-    private static boolean finishedPlayback = false;
+    /**
+     * Lookup table of every command the bot responds to. Messages that aren't commands are ignored.
+     */
+    private final CommandRouter router = new CommandRouter(outbox);
 
     /**
      * Sets the bot management role and loads the {@link #playerManager}.
      */
     private eMusic() {
-        this.musicManagers = new HashMap<>();
+        this(OpusFrameCache.fromSystemProperties());
+    }
 
-        this.playerManager = new DefaultAudioPlayerManager();
+    private eMusic(OpusFrameCache opusCache) {
+        this(createPlayerManager(opusCache), opusCache);
+    }
+
+    /**
+     * Creates the bot with the given player manager, such as one with local stand-in sources for load testing.
+     * @param playerManager Loads and plays every guild's tracks.
+     */
+    eMusic(AudioPlayerManager playerManager) {
+        this(playerManager, YouTubeSearch::videoIdSearch, InternetRadioParser::fetchStatus);
+    }
+
+    /**
+     * Creates the bot with stand-ins for everything it fetches, so it can be driven without any network access.
+     * @param playerManager Loads and plays every guild's tracks.
+     * @param videoSearch Gets a YouTube video id for a search term, or {@link YouTubeSearch#NO_RESULT} or
+     *                    {@link YouTubeSearch#QUOTA_EXHAUSTED}.
+     * @param stationFetcher Fetches the status of the radio stations being played.
+     */
+    eMusic(AudioPlayerManager playerManager, Function<String, String> videoSearch,
+           IcecastPoller.StatusFetcher stationFetcher) {
+        this(playerManager, null, videoSearch, stationFetcher);
+    }
+
+    private eMusic(AudioPlayerManager playerManager, OpusFrameCache opusCache) {
+        this(playerManager, opusCache, YouTubeSearch::videoIdSearch, InternetRadioParser::fetchStatus);
+    }
+
+    /**
+     * @param playerManager Loads and plays every guild's tracks.
+     * @param opusCache Cache the player manager loads from and played tracks are recorded into, or null.
+     * @param videoSearch Gets a YouTube video id for a search term.
+     * @param stationFetcher Fetches the status of the radio stations being played.
+     */
+    private eMusic(AudioPlayerManager playerManager, OpusFrameCache opusCache, Function<String, String> videoSearch,
+                   IcecastPoller.StatusFetcher stationFetcher) {
+        this.videoSearch = videoSearch;
+        this.radioPoller = new IcecastPoller(stationFetcher);
+        this.musicManagers = new ConcurrentHashMap<>();
+        this.stationIndex = new StationIndex(radioStations);
+        registerCommands();
+
+        this.playerManager = playerManager;
+        this.opusCache = opusCache;
+        this.broadcasts = new RadioBroadcasts(playerManager);
+        this.quality = new QualityController(playerManager,
+                () -> musicManagers.values().stream().mapToLong(m -> m.getSendHandler().getFramesProvided()).sum(),
+                () -> musicManagers.values().stream().mapToLong(m -> m.getSendHandler().getUnderruns()).sum());
+        if (opusCache != null)
+            opusCache.setQualityController(quality);
+        registerMetrics();
+    }
+
+    /**
+     * @param opusCache Cache of played tracks, or null.
+     * @return A player manager with the cache, remote and local sources registered.
+     */
+    private static AudioPlayerManager createPlayerManager(OpusFrameCache opusCache) {
+        AudioPlayerManager playerManager = new DefaultAudioPlayerManager();
+        // Sources are tried in order, so cached tracks are found before anything is fetched.
+        if (opusCache != null)
+            playerManager.registerSourceManager(new CachedOpusSourceManager(opusCache));
         AudioSourceManagers.registerRemoteSources(playerManager);
         AudioSourceManagers.registerLocalSource(playerManager);
+        return playerManager;
     }
 
-    private synchronized GuildMusicManager getGuildAudioPlayer(Guild guild) {
-        long guildId = Long.parseLong(guild.getId());
-        GuildMusicManager musicManager = musicManagers.computeIfAbsent(guildId, k -> new GuildMusicManager(playerManager));
-
-        guild.getAudioManager().setSendingHandler(musicManager.getSendHandler());
+    /**
+     * Registers the gauges read from the bot's state whenever metrics are scraped.
+     * @see Metrics
+     */
+    private void registerMetrics() {
+        Metrics.gauge("emusic_guilds", "Guilds with a music manager.", musicManagers::size);
+        Metrics.gauge("emusic_queued_tracks", "Tracks queued across every guild.",
+                () -> musicManagers.values().stream().mapToInt(m -> m.scheduler.getQueueSize()).sum());
+        Metrics.gauge("emusic_active_players", "Players playing a track that isn't paused.",
+                () -> musicManagers.values().stream().map(GuildMusicManager::getPlayer)
+                        .filter(p -> p.getPlayingTrack() != null && !p.isPaused()).count());
+        Metrics.gauge("emusic_search_cache_entries", "YouTube searches cached.",
+                () -> YouTubeSearch.getCache().size());
+        Metrics.counter("emusic_search_cache_hits_total", "YouTube searches answered from the cache.",
+                () -> YouTubeSearch.getCache().getHits());
+        Metrics.counter("emusic_search_cache_misses_total", "YouTube searches not in the cache.",
+                () -> YouTubeSearch.getCache().getMisses());
+        Metrics.gauge("emusic_broadcasts", "Radio stations being broadcast.", broadcasts::getBroadcastCount);
+        Metrics.gauge("emusic_broadcast_listeners", "Guilds tuned in to a radio broadcast.",
+                broadcasts::getSubscriberCount);
+        if (opusCache != null) {
+            Metrics.gauge("emusic_opus_cache_tracks", "Tracks in the Opus frame cache.", opusCache::size);
+            Metrics.gauge("emusic_opus_cache_bytes", "Size of the Opus frame cache.", opusCache::getTotalBytes);
+            Metrics.gauge("emusic_opus_cache_aliases", "Request identifiers remembered by the Opus frame cache.",
+                    opusCache::getAliasCount);
+        }
+        Metrics.gauge("emusic_passthrough_ratio_estimated",
+                "Share of play time known to be passed through without transcoding; YouTube tracks, whose format "
+                        + "isn't known, count as not passed through.", OpusPassthrough::getRatio);
+        Metrics.gauge("emusic_quality_level", "Audio quality level in use: 0 low, 1 medium, 2 high.",
+                () -> quality.getLevel().ordinal());
+        Metrics.counter("emusic_outbox_dropped_total", "Replies dropped by the outbox.", outbox::getDropped);
+        Metrics.counter("emusic_alerts_dropped_total", "Maintainer alerts dropped.", alerts::getDropped);
+    }
 
+    /**
+     * Gets the guild's {@link GuildMusicManager}, creating it the first time the guild uses a command.<br>
+     * Lookups don't lock; the send handler is attached separately when a voice connection is opened.
+     * @param guild The guild to get the music manager of.
+     * @return The guild's music manager.
+     * @see #attachSendHandler(Guild)
+     */
+    private GuildMusicManager getGuildAudioPlayer(Guild guild) {
+        long guildId = Long.parseLong(guild.getId());
+        GuildMusicManager musicManager = musicManagers.get(guildId);
+        if(musicManager == null)
+            musicManager = musicManagers.computeIfAbsent(guildId,
+                    k -> new GuildMusicManager(playerManager, gapStats, guild.getId(), opusCache));
         return musicManager;
     }
 
+    /**
+     * Makes the guild's send handler the one JDA pulls audio from, unless it already is.
+     * @param guild The guild whose voice connection is being opened.
+     */
+    private void attachSendHandler(Guild guild) {
+        AudioManager audioManager = guild.getAudioManager();
+        AudioPlayerSendHandler sendHandler = getGuildAudioPlayer(guild).getSendHandler();
+        if(audioManager.getSendingHandler() != sendHandler)
+            audioManager.setSendingHandler(sendHandler);
+    }
+
     /**
      * Checks for a command anytime a guild message is received.<br>
-     * Creates parameters for all functions that run commands.<br>
-     * Parameters are as follows:<br>
-     * &nbsp;&nbsp;&nbsp;&nbsp;guild = Guild of the event's message.<br>
-     * &nbsp;&nbsp;&nbsp;&nbsp;channel = TextChannel of the event's message.<br>
-     * &nbsp;&nbsp;&nbsp;&nbsp;message = The event's message.<br>
-     * &nbsp;&nbsp;&nbsp;&nbsp;commandline = The command and arguments of the event's message.<br>
-     * &nbsp;&nbsp;&nbsp;&nbsp;command = The command of the event's message.<br>
-     * &nbsp;&nbsp;&nbsp;&nbsp;audioManager = The guild's AudioManager.<br>
-     *
-     * Runs any functions that the command specifies by passing in the
-     * above parameters where it's appropriate. (This is the main function
-     * that calls all the other functions.)<br>
-     *
-     * If the MusicPlayer is not already created;
-     * creates the MusicPlayer via createMusicPlayer(audioManager).<br>
+     * Messages that aren't commands are rejected by {@link #router} without allocating anything. A command's
+     * arguments are parsed here, then the command is handed to the guild's lane in {@link #commandExecutor} so JDA's
+     * event thread never waits on a command.
      *
      * @param event Contains all the info needed for running commands.
+     * @see #registerCommands()
      */
     public void onGuildMessageReceived(GuildMessageReceivedEvent event) {
-        // Set argument variables for the current event.
-        Guild guild = event.getGuild();
-        TextChannel channel = event.getChannel();
-        Message message = event.getMessage();
-        String commandline = message.getContent();
-        String[] parts = commandline.split(" "); // Quick parse to get command.
-        String command = parts[0];
-        AudioManager audioManager = guild.getAudioManager();
-        GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
-        AudioPlayer player = musicManager.getPlayer();
+        Runnable command = router.route(event);
+        if(command == null)
+            return;
 
+        long guildId = Long.parseLong(event.getGuild().getId());
+        if(!commandExecutor.submit(guildId, () -> runCommand(event, command)))
+            outbox.send(event.getChannel(), "Too many commands are waiting; please try again in a moment.", "busy");
+    }
+
+    @Override
+    public void onGuildReady(GuildReadyEvent event) {
+        voiceChannels.index(event.getGuild());
+    }
+
+    @Override
+    public void onGuildJoin(GuildJoinEvent event) {
+        voiceChannels.index(event.getGuild());
+    }
+
+    @Override
+    public void onGuildLeave(GuildLeaveEvent event) {
+        voiceChannels.remove(event.getGuild());
+        commandExecutor.remove(Long.parseLong(event.getGuild().getId()));
+        GuildMusicManager musicManager = musicManagers.remove(Long.parseLong(event.getGuild().getId()));
+        if(musicManager != null)
+            musicManager.destroy();
+        Metrics.removeLabeled("guild", event.getGuild().getId());
+    }
+
+    @Override
+    public void onGuildVoiceJoin(GuildVoiceJoinEvent event) {
+        voiceChannels.joined(event.getMember(), event.getChannelJoined());
+    }
+
+    @Override
+    public void onGuildVoiceMove(GuildVoiceMoveEvent event) {
+        voiceChannels.joined(event.getMember(), event.getChannelJoined());
+    }
+
+    @Override
+    public void onGuildVoiceLeave(GuildVoiceLeaveEvent event) {
+        voiceChannels.left(event.getMember());
+    }
+
+    /**
+     * Runs a routed command on the guild's lane of {@link #commandExecutor}.<br>
+     * If the command fails, the user and the bot managers are notified.
+     *
+     * @param event Contains all the info needed for running commands.
+     * @param command The command with its parsed arguments.
+     */
+    private void runCommand(GuildMessageReceivedEvent event, Runnable command) {
         try {
-            // Do an action based on the command given (case insensitive).
-            switch (command.toLowerCase()){
-                case "-join":
-                    joinVoice(audioManager,guild,channel,message);
-                    break;
-                case "-leave":
-                    leaveVoice(audioManager);
-                    break;
-                case "-play":
-                    if(parts.length == 1) {
-                        if (player.isPaused())
-                            resume(channel);
-                        else if (musicManager.scheduler.queue.size() < 1)
-                            channel.sendMessage("Nothing to play or resume!").queue();
-                        else {
-                            AudioTrack next = musicManager.scheduler.getNextTrack();
-                            channel.sendMessage("Now playing **" + next.getInfo().title + "**").queue();
-                            musicManager.scheduler.nextTrack();
-                        }
-                    }
-                    else if(parts.length == 2)
-                        load(message, channel, parts[1]);
-                    else {
-                        for(int i = 2; i < parts.length-1; i++)
-                            parts[1] += (" " + parts[i]);
-                        load(message, channel, parts[1]);
-                    }
-                    break;
-                case "-pause":
-                    pause(channel);
-                    break;
-                case "-resume":
-                    resume(channel);
-                    break;
-                case "-nowplaying":
-                    nowPlaying(channel);
-                    break;
-                case "-queue":
-                    currentQueue(channel);
-                    break;
-                case "-list":
-                    currentQueue(channel);
-                    break;
-                case "-skip":
-                    skip(channel);
-                    break;
-                case "-previous":
-                    previous(channel);
-                    break;
-                case "-stop":
-                    stop(channel);
-                    break;
-                case "-clear":
-                    clear(channel);
-                    break;
-                case "-remove":
-                    remove(message, channel);
-                    break;
-                case "-reset":
-                    reset(channel);
-                    break;
-                case "-radio":
-                    if(parts.length == 2)
-                        radio(message, channel, parts[1]);
-                    else
-                        channel.sendMessage("Usage: -radio [Station URL | Search Term]").queue();
-                    break;
-                case "?emusic":
-                    sendCommands(event.getAuthor());
-                    break;
-                default:
-                    break;
-            }
+            command.run();
         } catch (Exception e) {
             // Let the command user know there was an error with the command used then notify bot maintenance.
-            commandException(e,guild,channel,message);
+            commandException(e, event.getGuild(), event.getChannel(), event.getMessage());
+        }
+    }
+
+    /**
+     * Adds every command to {@link #router}, each with the parser of its arguments and the function that runs it.
+     */
+    private void registerCommands() {
+        router.register(CommandRouter.TEXT,
+                (event, name) -> joinVoice(event.getGuild().getAudioManager(), event.getGuild(), event.getChannel(),
+                        event.getMessage(), name),
+                "-join [VoiceChannel]", "-join");
+        router.register(CommandRouter.NO_ARGUMENTS,
+                (event, args) -> {
+                    getGuildAudioPlayer(event.getGuild()).leaveBroadcast();
+                    leaveVoice(event.getGuild().getAudioManager());
+                },
+                "-leave", "-leave");
+        router.register(CommandRouter.TEXT,
+                (event, input) -> playOrResume(event.getMessage(), event.getChannel(), input),
+                "-play [Audio Source]", "-play");
+        router.register(CommandRouter.NO_ARGUMENTS, (event, args) -> pause(event.getChannel()), "-pause", "-pause");
+        router.register(CommandRouter.NO_ARGUMENTS, (event, args) -> resume(event.getChannel()), "-resume", "-resume");
+        router.register(CommandRouter.NO_ARGUMENTS,
+                (event, args) -> nowPlaying(event.getChannel()),
+                "-nowplaying", "-nowplaying");
+        router.register(CommandRouter.OPTIONAL_NUMBER,
+                (event, page) -> currentQueue(page, event.getChannel()),
+                "-queue [Page]", "-queue", "-list");
+        router.register(CommandRouter.NO_ARGUMENTS, (event, args) -> skip(event.getChannel()), "-skip", "-skip");
+        router.register(CommandRouter.NO_ARGUMENTS,
+                (event, args) -> previous(event.getChannel()),
+                "-previous", "-previous");
+        router.register(CommandRouter.NO_ARGUMENTS, (event, args) -> stop(event.getChannel()), "-stop", "-stop");
+        router.register(CommandRouter.NO_ARGUMENTS, (event, args) -> clear(event.getChannel()), "-clear", "-clear");
+        router.register(CommandRouter.OPTIONAL_NUMBER,
+                (event, position) -> remove(position, event.getChannel()),
+                "-remove [Position in Queue]", "-remove");
+        router.register(CommandRouter.TWO_NUMBERS,
+                (event, positions) -> move(positions[0], positions[1], event.getChannel()),
+                "-move [From Position] [To Position]", "-move");
+        router.register(CommandRouter.NO_ARGUMENTS,
+                (event, args) -> shuffle(event.getChannel()),
+                "-shuffle", "-shuffle");
+        router.register(CommandRouter.NO_ARGUMENTS, (event, args) -> dedupe(event.getChannel()), "-dedupe", "-dedupe");
+        router.register(CommandRouter.NO_ARGUMENTS, (event, args) -> reset(event.getChannel()), "-reset", "-reset");
+        router.register(CommandRouter.REQUIRED_TEXT,
+                (event, station) -> radio(event.getMessage(), event.getChannel(), station),
+                "-radio [Station URL | Search Term]", "-radio");
+        router.register(CommandRouter.NO_ARGUMENTS,
+                (event, args) -> sendCommands(event.getAuthor()),
+                "?eMusic", "?eMusic");
+    }
+
+    /**
+     * Loads the [Audio Source] if one is given; otherwise resumes playback or starts the next queued track.
+     * @param message "-play [Audio Source]"
+     * @param channel {@link TextChannel} the command was used. Needed for output.
+     * @param input The [Audio Source], or empty if none was given.
+     */
+    private void playOrResume(Message message, TextChannel channel, String input) {
+        if(!input.isEmpty()) {
+            load(message, channel, input, false);
+            return;
+        }
+
+        GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
+        if (musicManager.getPlayer().isPaused())
+            resume(channel);
+        else if (musicManager.scheduler.getQueueSize() < 1)
+            outbox.send(channel, "Nothing to play or resume!");
+        else {
+            AudioTrack next = musicManager.scheduler.getNextTrack();
+            outbox.send(channel, "Now playing **" + next.getInfo().title + "**", "now-playing");
+            musicManager.scheduler.nextTrack();
         }
     }
 
     /**
-     * Loads the audio track and then calls {@link #play(Message, GuildMusicManager, AudioTrack)}.
+     * Classifies the [Audio Source] with {@link PlayInput}, resolves it, and then calls
+     * {@link #play(Message, GuildMusicManager, AudioTrack)}.<br>
+     * Links, local files, radio station names and ytsearch:/scsearch: searches are loaded directly; other search
+     * terms are searched for on YouTube first, so nothing is loaded twice.
      * @param command "-play [Audio Source]"
      * @param channel {@link TextChannel} the command was used. Needed for output.
-     * @param trackURL The [Audio Source].
+     * @param input The [Audio Source].
+     * @param radio True if it came from -radio, so a source that can't be loaded was found in the station database.
      */
-    private void load(final Message command, final TextChannel channel, final String trackURL) {
-        trackIsLoaded = false;
+    private void load(final Message command, final TextChannel channel, final String input, final boolean radio) {
         GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
+        GuildPlaybackState state = musicManager.getState();
+        state.setTrackLoaded(false);
+        PlayInput playInput = PlayInput.classify(input, this::getStationByName);
+
+        String source = playInput.getIdentifier();
+        if(playInput.getType() == PlayInput.Type.SEARCH_TERM) {
+            String videoId = videoSearch.apply(playInput.getInput());
+            if(videoId.equals(YouTubeSearch.QUOTA_EXHAUSTED)) {
+                outbox.send(channel, "The YouTube search quota is used up for now; please use a link instead of **"
+                        + playInput.getInput() + "**.");
+                return;
+            }
+            if(videoId.equals(YouTubeSearch.NO_RESULT)) {
+                outbox.send(channel, "Could not find a video on YouTube for **" + playInput.getInput() + "**.");
+                return;
+            }
+            source = "https://www.youtube.com/watch?v=" + videoId;
+        }
+        final String identifier = source;
 
-        playerManager.loadItemOrdered(musicManager, trackURL, new AudioLoadResultHandler() {
+        long loadStart = System.nanoTime();
+        playerManager.loadItemOrdered(musicManager, identifier, new AudioLoadResultHandler() {
             @Override
             public void trackLoaded(AudioTrack track) {
+                loadLatency("track").observeSince(loadStart);
+                // The next request for the same source finds the track in the cache once it has been played.
+                if(opusCache != null && !track.getInfo().isStream)
+                    opusCache.alias(track.getInfo().identifier, identifier);
                 if(track.getInfo().isStream && track.getInfo().title.toLowerCase().contains("unknown"))
-                    channel.sendMessage("Added stream **" + track.getInfo().identifier + "** to queue.").queue();
+                    outbox.send(channel, "Added stream **" + track.getInfo().identifier + "** to queue.", "added");
                 else
-                    channel.sendMessage("Added **" + track.getInfo().title + "** to queue.").queue();
+                    outbox.send(channel, "Added **" + track.getInfo().title + "** to queue.", "added");
 
-                setTrackLoaded(true);
+                state.setTrackLoaded(true);
                 play(command, musicManager, track);
             }
 
             @Override
             public void playlistLoaded(AudioPlaylist playlist) {
+                loadLatency("playlist").observeSince(loadStart);
                 AudioTrack firstTrack = playlist.getSelectedTrack();
 
                 if (firstTrack == null) {
                     firstTrack = playlist.getTracks().get(0);
                 }
 
-                channel.sendMessage("Adding to queue **" + firstTrack.getInfo().title
-                        + "** (first track of playlist ***" + playlist.getName() + "***).").queue();
-
-                setTrackLoaded(true);
-                for(AudioTrack track : playlist.getTracks())
-                    play(command, musicManager, track);
+                state.setTrackLoaded(true);
+                // A search only ever wants its first result; a playlist link wants the whole playlist.
+                if(playInput.getType() == PlayInput.Type.SEARCH_TERM || playlist.isSearchResult()) {
+                    outbox.send(channel, "Adding to queue **" + firstTrack.getInfo().title
+                            + "** (first track of playlist ***" + playlist.getName() + "***).");
+                    play(command, musicManager, firstTrack);
+                }
+                else {
+                    List<AudioTrack> tracks = playlist.getTracks();
+                    outbox.send(channel, "Added **" + tracks.size() + "** tracks from playlist ***" + playlist.getName()
+                            + "*** to queue, starting with **" + tracks.get(0).getInfo().title + "**.");
+                    playAll(command, musicManager, tracks);
+                }
             }
 
             @Override
             public void noMatches() {
-                setTrackLoaded(false);
-                play(command, musicManager, null);
+                loadLatency("no_matches").observeSince(loadStart);
+                state.setTrackLoaded(false);
+                if(radio)
+                    outbox.send(channel,
+                            "Found **" + playInput.getInput() + "** in database, but it could not be loaded!" +
+                                    "\nPerhaps it is an unsupported file type?");
+                else
+                    outbox.send(channel,
+                            "Could not load **" + playInput.getInput() + "**\nPerhaps it is an unsupported file type?");
             }
 
             @Override
             public void loadFailed(FriendlyException exception) {
-                setTrackLoaded(false);
-                play(command, musicManager, null);
+                loadLatency("failed").observeSince(loadStart);
+                state.setTrackLoaded(false);
+                outbox.send(channel, "Loading failed for **" + playInput.getInput() + "**.");
             }
         });
     }
 
+    /**
+     * @param result How the load ended: track, playlist, no_matches or failed.
+     * @return Histogram of the time loadItemOrdered takes to resolve an [Audio Source].
+     */
+    private static Metrics.Histogram loadLatency(String result) {
+        return Metrics.histogram("emusic_load_seconds", "Time to resolve an audio source.", "result", result);
+    }
+
     /**
      * Queues a song.
-     * @param command Contains the arguments of the command and the {@link TextChannel} for output.
+     * @param command Contains the {@link TextChannel} for output.
      * @param musicManager Handles queues.
      * @param track The song to be queued.
      */
     private void play(Message command, GuildMusicManager musicManager, AudioTrack track) {
-        // Handles cases where a link or local file weren't found in load()
-        String[] args = command.getContent().split(" ");
-        if (!trackIsLoaded || track == null) {
-            if (args.length > 1) {
-                TextChannel channel = command.getTextChannel();
-                String trackURL = args[1];
-                if (args[0].equalsIgnoreCase("-radio"))
-                    channel.sendMessage(
-                            "Found **" + getStation(trackURL) + "** in database, but it could not be loaded!" +
-                                    "\nPerhaps it is an unsupported file type?"
-                    ).queue();
-                else if (!trackURL.contains("https://") || !trackURL.contains("http://")) {
-                    String youtubeLink = ("https://www.youtube.com/watch?v=" + YouTubeSearch.videoIdSearch(trackURL));
-                    playerManager.loadItemOrdered(musicManager, youtubeLink, new AudioLoadResultHandler() {
-                        @Override
-                        public void trackLoaded(AudioTrack track) {
-                            if(track.getInfo().isStream && track.getInfo().title.toLowerCase().contains("unknown"))
-                                channel.sendMessage("Added stream **" + track.getInfo().identifier + "** to queue.").queue();
-                            else
-                                channel.sendMessage("Added **" + track.getInfo().title + "** to queue.").queue();
-
-                            setTrackLoaded(true);
-                            play(command, musicManager, track);
-                        }
-
-                        @Override
-                        public void playlistLoaded(AudioPlaylist playlist) {
-                            AudioTrack firstTrack = playlist.getSelectedTrack();
-
-                            if (firstTrack == null) {
-                                firstTrack = playlist.getTracks().get(0);
-                            }
-
-                            channel.sendMessage("Adding to queue **" + firstTrack.getInfo().title
-                                    + "** (first track of playlist ***" + playlist.getName() + "***).").queue();
-
-                            setTrackLoaded(true);
-                            play(command, musicManager, firstTrack);
-                        }
-
-                        @Override
-                        public void noMatches() {
-                            channel.sendMessage(
-                                    "Could not load **" + trackURL + "**\nPerhaps it is an unsupported file type?"
-                            ).queue();
-                        }
-
-                        @Override
-                        public void loadFailed(FriendlyException exception) {
-                            channel.sendMessage("Loading failed for **" + trackURL + "**.").queue();
-                        }
-                    });
-                    return;
-                }
-            }
-        }
+        musicManager.leaveBroadcast();
+        if(track.getInfo().isStream)
+            radioPoller.watch(track.getInfo().identifier);
+        musicManager.getState().setCurrentTrack(musicManager.getPlayer().getPlayingTrack());
+        checkVoiceConnection(command.getGuild(), command.getTextChannel(), command);
+        musicManager.scheduler.queue(track);
+    }
 
-        if(trackIsLoaded) {
-            currentAudioTrack = musicManager.getPlayer().getPlayingTrack();
-            checkVoiceConnection(command.getGuild(), command.getTextChannel(), command);
-            musicManager.scheduler.queue(track);
-        }
-        else if(!args[0].equalsIgnoreCase("-radio"))
-            command.getTextChannel().sendMessage("Nothing to play or resume!").queue();
+    /**
+     * Queues a whole playlist with a single voice connection check.
+     * @param command Contains the {@link TextChannel} for output.
+     * @param musicManager Handles queues.
+     * @param tracks The songs to be queued, in order.
+     */
+    private void playAll(Message command, GuildMusicManager musicManager, List<AudioTrack> tracks) {
+        musicManager.leaveBroadcast();
+        musicManager.getState().setCurrentTrack(musicManager.getPlayer().getPlayingTrack());
+        checkVoiceConnection(command.getGuild(), command.getTextChannel(), command);
+        musicManager.scheduler.queueAll(tracks);
     }
 
     /**
@@ -405,16 +629,27 @@ class eMusic extends ListenerAdapter {
      */
     private void pause(TextChannel channel) {
         GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
+        RadioBroadcasts.Subscription broadcast = musicManager.getBroadcast();
+        if(broadcast != null) {
+            if(broadcast.isPaused())
+                outbox.send(channel, "Playback is already paused. Use -play or -resume to start playback.");
+            else {
+                broadcast.setPaused(true);
+                outbox.send(channel, "Playback has been paused.");
+            }
+            return;
+        }
+
         AudioPlayer player = musicManager.getPlayer();
         if(player.isPaused())
-            channel.sendMessage("Playback is already paused. Use -play or -resume to start playback.").queue();
-        else if(trackIsLoaded) {
+            outbox.send(channel, "Playback is already paused. Use -play or -resume to start playback.");
+        else if(musicManager.getState().isTrackLoaded()) {
             player.setPaused(true);
-            playbackFinished(false);
-            channel.sendMessage("Playback has been paused.").queue();
+            musicManager.getState().setPlaybackFinished(false);
+            outbox.send(channel, "Playback has been paused.");
         }
         else
-            channel.sendMessage("Playback is not paused. There is currently no songs playing.").queue();
+            outbox.send(channel, "Playback is not paused. There is currently no songs playing.");
     }
 
     /**
@@ -423,34 +658,47 @@ class eMusic extends ListenerAdapter {
      */
     private void resume(TextChannel channel) {
         GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
-        AudioPlayer player = musicManager.getPlayer();
-        if(trackIsLoaded) {
-            long guildId = Long.parseLong(channel.getGuild().getId());
-            currentAudioTrack = musicManagers.get(guildId).getPlayer().getPlayingTrack();
+        RadioBroadcasts.Subscription broadcast = musicManager.getBroadcast();
+        if(broadcast != null) {
+            if(!broadcast.isPaused())
+                outbox.send(channel, "Playback is not paused.");
+            else {
+                // A station resumes live rather than where it was paused.
+                broadcast.setPaused(false);
+                outbox.send(channel, "Now resuming **" + broadcast.getUrl() + "**.", "now-playing");
+            }
+            return;
         }
+
+        AudioPlayer player = musicManager.getPlayer();
+        GuildPlaybackState state = musicManager.getState();
+        if(state.isTrackLoaded())
+            state.setCurrentTrack(player.getPlayingTrack());
         if (player.getPlayingTrack() == null && !player.isPaused()) {
             if(musicManager.scheduler.getNextTrack() != null) {
-                currentAudioTrack = musicManager.scheduler.getNextTrack();
-                player.startTrack(currentAudioTrack, false);
-                channel.sendMessage("Now resuming with **" + currentAudioTrack.getInfo().title + "**.").queue();
+                state.setCurrentTrack(musicManager.scheduler.getNextTrack());
+                player.startTrack(state.getCurrentTrack(), false);
+                outbox.send(channel, "Now resuming with **" + state.getCurrentTrack().getInfo().title + "**.",
+                        "now-playing");
             }
             else {
-                channel.sendMessage("Nothing in queue to resume!").queue();
+                outbox.send(channel, "Nothing in queue to resume!");
                 return;
             }
         }
         if (!player.isPaused()) {
-            channel.sendMessage("Playback is not paused.").queue();
+            outbox.send(channel, "Playback is not paused.");
             return;
         }
-        if (currentAudioTrack != null) {
+        AudioTrack currentTrack = state.getCurrentTrack();
+        if (currentTrack != null) {
             player.setPaused(false);
-            channel.sendMessage("Now resuming **" + currentAudioTrack.getInfo().title + "**.").queue();
+            outbox.send(channel, "Now resuming **" + currentTrack.getInfo().title + "**.", "now-playing");
         }
-        else if(finishedPlayback)
-            channel.sendMessage("Music Bot has no songs to resume.").queue();
+        else if(state.isPlaybackFinished())
+            outbox.send(channel, "Music Bot has no songs to resume.");
         else
-            channel.sendMessage("Nothing to play or resume.").queue();
+            outbox.send(channel, "Nothing to play or resume.");
     }
 
     /**
@@ -459,12 +707,14 @@ class eMusic extends ListenerAdapter {
      */
     private void skip(TextChannel channel) {
         GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
-        if(musicManager.scheduler.queue.size() > 0) {
+        if(musicManager.scheduler.getQueueSize() > 0) {
+            musicManager.leaveBroadcast();
+            musicManager.getSendHandler().clearBuffer();
             musicManager.scheduler.nextTrack();
-            channel.sendMessage("Skipped to the next track.").queue();
+            outbox.send(channel, "Skipped to the next track.");
         }
         else
-            channel.sendMessage("There are no tracks in the queue to skip to.").queue();
+            outbox.send(channel, "There are no tracks in the queue to skip to.");
     }
 
     /**
@@ -474,18 +724,14 @@ class eMusic extends ListenerAdapter {
     private void previous(TextChannel channel) {
         GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
 
-        if(musicManager.scheduler.lastTrack == null) {
-            channel.sendMessage("There is no previous track.").queue();
+        musicManager.leaveBroadcast();
+        musicManager.getSendHandler().clearBuffer();
+        if(!musicManager.scheduler.previousTrack()) {
+            outbox.send(channel, "There is no previous track.");
             return;
         }
 
-        List<AudioTrack> newListWithLast = new ArrayList<>();
-        newListWithLast.add(musicManager.scheduler.lastTrack);
-        newListWithLast.addAll(musicManager.scheduler.queue);
-        musicManager.scheduler.queue = newListWithLast;
-        musicManager.scheduler.nextTrack();
-
-        channel.sendMessage("Skipped to the previous track.").queue();
+        outbox.send(channel, "Skipped to the previous track.");
     }
 
     /**
@@ -493,110 +739,48 @@ class eMusic extends ListenerAdapter {
      * @param channel {@link TextChannel} the command was used. Needed for output.
      */
     private void nowPlaying(TextChannel channel) {
-        if(trackIsLoaded) {
-            long guildId = Long.parseLong(channel.getGuild().getId());
-            currentAudioTrack = musicManagers.get(guildId).getPlayer().getPlayingTrack();
-        }
+        GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
+        GuildPlaybackState state = musicManager.getState();
+        RadioBroadcasts.Subscription broadcast = musicManager.getBroadcast();
+        if(broadcast != null)
+            state.setCurrentTrack(broadcast.getTrack());
+        else if(state.isTrackLoaded())
+            state.setCurrentTrack(musicManager.getPlayer().getPlayingTrack());
+        AudioTrack currentAudioTrack = state.getCurrentTrack();
         if(currentAudioTrack != null) {
             if(currentAudioTrack.getInfo().isStream) {
-                String song = InternetRadioParser.getCurrentSong(currentAudioTrack.getInfo().identifier);
-                String artist = InternetRadioParser.getCurrentSongArtist(currentAudioTrack.getInfo().identifier);
-                if(song.contains("Was unable to get JSON data"))
-                    song = currentAudioTrack.getInfo().title;
-                if(artist.contains("Was unable to get JSON data"))
-                    artist = currentAudioTrack.getInfo().author;
+                // Read the poller's latest snapshot; it falls back to the track's own info until the first fetch.
+                StationInfo info = radioPoller.get(currentAudioTrack.getInfo().identifier);
+                String song = info != null ? info.getTitle() : currentAudioTrack.getInfo().title;
+                String artist = info != null ? info.getArtist() : currentAudioTrack.getInfo().author;
                 if(song.toLowerCase().contains("unknown") && artist.toLowerCase().contains("unknown"))
-                    channel.sendMessage("**Radio Station:** " + currentAudioTrack.getInfo().identifier).queue();
+                    outbox.send(channel, "**Radio Station:** " + currentAudioTrack.getInfo().identifier);
                 else
-                    channel.sendMessage(
-                            "**Song:** " + song
-                                    + "\n**Artist:** " + artist
-                    ).queue();
+                    outbox.send(channel, "**Song:** " + song
+                            + "\n**Artist:** " + artist);
             }
             else
-                channel.sendMessage(
-                        "**Song:** " + currentAudioTrack.getInfo().title
-                                + "\n**Artist:** " + currentAudioTrack.getInfo().author
-                ).queue();
+                outbox.send(channel, "**Song:** " + currentAudioTrack.getInfo().title
+                        + "\n**Artist:** " + currentAudioTrack.getInfo().author);
         }
         else
-            channel.sendMessage("Nothing is playing currently.").queue();
+            outbox.send(channel, "Nothing is playing currently.");
     }
 
     /**
-     * Display's all the currently queued songs.
+     * Display's a page of the currently queued songs.
+     * @param page The page to display, starting at 1, or null for the first page.
      * @param channel {@link TextChannel} the command was used. Needed for output.
      */
-    private void currentQueue(TextChannel channel) {
+    private void currentQueue(Integer page, TextChannel channel) {
         GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
-        if(musicManager.scheduler.queue.size() < 1) {
-            channel.sendMessage("There is currently no queue.").queue();
+        if(musicManager.scheduler.getQueueSize() < 1) {
+            outbox.send(channel, "There is currently no queue.");
             return;
         }
 
-        String list = "";
-        long total = 0;
-        String title;
-        String time;
-        for(AudioTrack track : musicManager.scheduler.queue) {
-            long duration = track.getDuration();
-            total += duration;
-            title = track.getInfo().title;
-            time = calculateDurationTime(duration);
-            list += "\n" + title + " " + time;
-        }
-        String queue = "__**Current Queue " + calculateDurationTime(total) + ":**__\n";
-        queue += list;
-
-        if(queue.length() > 2000)
-            splitMessage(queue, channel);
-        else
-            channel.sendMessage(queue).queue();
-    }
-
-    /**
-     * Allows for messages over 2000 characters be sent.
-     * @param longMessage {@link Message} that is over 2000 characters.
-     * @param channel {@link TextChannel} that the split up {@link Message} will be sent to.
-     */
-    private void splitMessage(String longMessage, TextChannel channel) {
-        String[] lines = longMessage.split("\n");
-        String message = "";
-        for(String s : lines) {
-            if((message.length() + s.length()) < 2000)
-                message += s + "\n";
-            else {
-                channel.sendMessage(message).queue();
-                message = "";
-            }
-        }
-        if(message.length() > 0)
-            channel.sendMessage(message).queue();
-    }
-
-    /**
-     * Calculate the hours, minutes, and seconds of a time of type long.
-     * @param duration Time as long.
-     * @return A String of the time in the format [hh:mm:ss].
-     */
-    private String calculateDurationTime(long duration) {
-        String time = "[";
-
-        int hours   = (int) ((duration / (1000*60*60)) % 24);
-        int minutes = (int) ((duration / (1000*60)) % 60);
-        int seconds = (int) (duration / 1000) % 60 ;
-
-        if(hours > 0)
-            time += String.format("%02d", hours) + ":";
-        if(minutes > 0 || hours > 0)
-            time += String.format("%02d", minutes) + ":";
-        if(seconds > 0 || minutes > 0 || hours > 0)
-            if (minutes <= 0 && hours <= 0)
-                time += "00:" + String.format("%02d", seconds) + "]";
-            else
-                time += String.format("%02d", seconds) + "]";
-
-        return time;
+        // A newer listing replaces one that hasn't been sent yet; the outbox splits listings over 2000 characters.
+        outbox.send(channel, musicManager.scheduler.renderQueuePage(page != null ? page : 1), "queue");
     }
 
     /**
@@ -605,10 +789,12 @@ class eMusic extends ListenerAdapter {
      */
     private void stop(TextChannel channel) {
         GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
+        musicManager.leaveBroadcast();
         musicManager.getPlayer().stopTrack();
-        currentAudioTrack = null;
-        playbackFinished(true);
-        channel.sendMessage("Playback has stopped.").queue();
+        musicManager.getSendHandler().clearBuffer();
+        musicManager.getState().setCurrentTrack(null);
+        musicManager.getState().setPlaybackFinished(true);
+        outbox.send(channel, "Playback has stopped.");
     }
 
     /**
@@ -617,50 +803,82 @@ class eMusic extends ListenerAdapter {
      */
     private void clear(TextChannel channel) {
         GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
-        if(musicManager.scheduler.queue.size() < 1) {
-            channel.sendMessage("No queue to clear.").queue();
+        if(musicManager.scheduler.getQueueSize() < 1) {
+            outbox.send(channel, "No queue to clear.");
             return;
         }
-        musicManager.scheduler.queue.clear();
-        channel.sendMessage("The current queue has been cleared.").queue();
+        musicManager.scheduler.clearQueue();
+        outbox.send(channel, "The current queue has been cleared.");
     }
 
     /**
      * Removes the specified track from the current currentQueue.
-     * @param message The {@link Message} that contains the specified track.
+     * @param position Position of the track in the queue, starting at 1, or null for the first track.
      * @param channel {@link TextChannel} the command was used. Needed for output.
      */
-    private void remove(Message message, TextChannel channel) {
+    private void remove(Integer position, TextChannel channel) {
         GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
-        if(musicManager.scheduler.queue.size() < 1) {
-            channel.sendMessage("No queue; no tracks to remove.").queue();
+        if(musicManager.scheduler.getQueueSize() < 1) {
+            outbox.send(channel, "No queue; no tracks to remove.");
             return;
         }
-        String[] parts = message.getContent().split(" ");
 
-        if(musicManager.scheduler.queue.size() == 1 || parts.length == 1) {
-            String title = musicManager.scheduler.queue.get(0).getInfo().title;
-            musicManager.scheduler.queue.remove(0);
-            channel.sendMessage("**" + title + "** has been removed from the queue.").queue();
+        int pos = (musicManager.scheduler.getQueueSize() == 1 || position == null) ? 0 : position - 1;
+        if(pos >= 0 && pos < musicManager.scheduler.getQueueSize()) {
+            String title = musicManager.scheduler.removeQueuedTrack(pos).getInfo().title;
+            outbox.send(channel, "**" + title + "** has been removed from the queue.");
         }
-        else if(parts.length > 1) {
-            int pos;
-            try {
-                pos = Integer.parseInt(parts[1]) - 1;
-            } catch (Exception e) {
-                channel.sendMessage("Invalid position number.").queue();
-                return;
-            }
-            if(pos < musicManager.scheduler.queue.size()) {
-                String title = musicManager.scheduler.queue.get(pos).getInfo().title;
-                musicManager.scheduler.queue.remove(pos);
-                channel.sendMessage("**" + title + "** has been removed from the queue.").queue();
-            }
-            else
-                channel.sendMessage("There is no song at position " + (pos + 1) + ".").queue();
+        else
+            outbox.send(channel, "There is no song at position " + (pos + 1) + ".");
+    }
+
+    /**
+     * Moves the specified track to another position in the current queue.
+     * @param fromPosition Current position of the track, starting at 1.
+     * @param toPosition Position the track will end up at, starting at 1.
+     * @param channel {@link TextChannel} the command was used. Needed for output.
+     */
+    private void move(int fromPosition, int toPosition, TextChannel channel) {
+        GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
+        int from = fromPosition - 1;
+        int to = toPosition - 1;
+
+        int size = musicManager.scheduler.getQueueSize();
+        if(from < 0 || from >= size || to < 0 || to >= size) {
+            outbox.send(channel, "Positions must be between 1 and " + size + ".");
+            return;
         }
+        String title = musicManager.scheduler.getQueuedTrack(from).getInfo().title;
+        musicManager.scheduler.moveQueuedTrack(from, to);
+        outbox.send(channel, "**" + title + "** has been moved to position " + (to + 1) + ".");
+    }
+
+    /**
+     * Shuffles the current queue.
+     * @param channel {@link TextChannel} the command was used. Needed for output.
+     */
+    private void shuffle(TextChannel channel) {
+        GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
+        if(musicManager.scheduler.getQueueSize() < 2) {
+            outbox.send(channel, "Not enough tracks in the queue to shuffle.");
+            return;
+        }
+        musicManager.scheduler.shuffleQueue();
+        outbox.send(channel, "The current queue has been shuffled.");
+    }
+
+    /**
+     * Removes tracks that are in the current queue more than once, keeping the first of each.
+     * @param channel {@link TextChannel} the command was used. Needed for output.
+     */
+    private void dedupe(TextChannel channel) {
+        GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
+        int removed = musicManager.scheduler.dedupeQueue();
+        if(removed == 0)
+            outbox.send(channel, "There are no duplicate tracks in the queue.");
         else
-            channel.sendMessage("Usage: -remove [Position in Queue]").queue();
+            outbox.send(channel, "Removed " + removed + " duplicate track" + (removed == 1 ? "" : "s")
+                    + " from the queue.");
     }
 
     /**
@@ -669,42 +887,82 @@ class eMusic extends ListenerAdapter {
      */
     private void reset(TextChannel channel) {
         GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
+        musicManager.leaveBroadcast();
         musicManager.getPlayer().stopTrack();
-        if(musicManager.scheduler.queue.size() >= 1)
-            musicManager.scheduler.queue.clear();
+        musicManager.getSendHandler().clearBuffer();
+        musicManager.scheduler.clearQueue();
         leaveVoice(channel.getManager().getGuild().getAudioManager());
-        channel.sendMessage("The bot has been completely reset.").queue();
+        outbox.send(channel, "The bot has been completely reset.");
     }
 
     /**
-     * Allows radio stations to be played with a link or by search term. If it's by a search term, then the radio station
-     * is selected if {@link #radioStations} contains a key that has the genre in it. (Normal music links will also
-     * still work as if the -play command was used).
-     * @param message Passed through to {@link #load(Message, TextChannel, String)}.
+     * Allows radio stations to be played with a link or by search term. If it's by a search term, then the best
+     * match in {@link #stationIndex} is selected, and any other close matches are listed as suggestions. (Normal music
+     * links will also still work as if the -play command was used).
+     * @param message Passed through to {@link #load(Message, TextChannel, String, boolean)}.
      * @param channel {@link TextChannel} that messages will be set to.
      * @param station Radio station URL or music genre.
      */
     private void radio(Message message, TextChannel channel, String station) {
-        if(station.toLowerCase().contains("http://") || station.toLowerCase().contains("https://"))
-            load(message, channel, station);
-        else {
-            String original = station;
-            station = getStation(station);
-            if(station != null && !station.equalsIgnoreCase(original)) {
-                load(message, channel, station);
-            }
-            else
-                channel.sendMessage(
-                        "There was no radio station found with **" + original + "** in the database"
-                ).queue();
+        if(station.toLowerCase().contains("http://") || station.toLowerCase().contains("https://")) {
+            load(message, channel, station, true);
+            return;
+        }
+
+        List<Map.Entry<String, String>> matches = stationIndex.search(station, MAX_STATION_SUGGESTIONS + 1);
+        if(matches.isEmpty()) {
+            outbox.send(channel, "There was no radio station found with **" + station + "** in the database");
+            return;
         }
+
+        if(matches.size() > 1 && !matches.get(0).getKey().equalsIgnoreCase(station)) {
+            StringBuilder suggestions = new StringBuilder("Playing **" + matches.get(0).getKey()
+                    + "**. Other stations matching **" + station + "**:");
+            for(int i = 1; i < matches.size(); i++)
+                suggestions.append("\n").append(matches.get(i).getKey());
+            outbox.send(channel, suggestions.toString());
+        }
+        tuneIn(message, channel, matches.get(0).getKey(), matches.get(0).getValue());
+    }
+
+    /**
+     * Plays a radio station from {@link #broadcasts}, shared with every other guild listening to it. If the guild is
+     * already playing a track, the station is queued like any other stream instead.
+     * @param message Passed through to {@link #load(Message, TextChannel, String, boolean)}.
+     * @param channel {@link TextChannel} that messages will be set to.
+     * @param name Name of the station.
+     * @param url Stream URL of the station.
+     */
+    private void tuneIn(Message message, TextChannel channel, String name, String url) {
+        GuildMusicManager musicManager = getGuildAudioPlayer(channel.getGuild());
+        if(musicManager.getPlayer().getPlayingTrack() != null) {
+            load(message, channel, url, true);
+            return;
+        }
+
+        GuildPlaybackState state = musicManager.getState();
+        RadioBroadcasts.Subscription subscription = broadcasts.subscribe(url, ended -> {
+            musicManager.leaveBroadcast(ended);
+            outbox.send(channel, "Loading failed for **" + name + "**.");
+        });
+        musicManager.joinBroadcast(subscription);
+        // The stream could have failed before the guild joined it.
+        if(subscription.isEnded())
+            musicManager.leaveBroadcast(subscription);
+        radioPoller.watch(url);
+        state.setTrackLoaded(false);
+        state.setPlaybackFinished(false);
+        checkVoiceConnection(message.getGuild(), channel, message);
+        outbox.send(channel, "Now playing **" + name + "**", "now-playing");
     }
 
-    private String getStation(String station) {
-        for(String key : radioStations.keySet())
-            if(key.toLowerCase().contains(station.toLowerCase()))
-                return radioStations.get(key);
-        return null;
+    /**
+     * Gets a radio station's URL from its exact name (case insensitive).
+     * @param name Name of the radio station.
+     * @return The station's URL or null if no station has that name.
+     */
+    private String getStationByName(String name) {
+        return stationIndex.getByName(name);
     }
 
     /**
@@ -717,59 +975,48 @@ class eMusic extends ListenerAdapter {
      * @see eMusic#onGuildMessageReceived(GuildMessageReceivedEvent)
      */
     private void checkVoiceConnection(Guild guild, TextChannel channel, Message message) {
-        if (!guild.getAudioManager().isConnected())
-            for (VoiceChannel vc : guild.getVoiceChannels()) // Connect to user's channel.
-                vc.getMembers().stream().filter(m -> m.getUser().equals(message.getAuthor()))
-                        .forEach(u -> setVoiceChannel(guild, channel, vc.getName()));
+        if (!guild.getAudioManager().isConnected()) {
+            // Connect to user's channel.
+            VoiceChannel userChannel = voiceChannels.getChannel(guild, message.getAuthor());
+            if (userChannel != null)
+                setVoiceChannel(guild, userChannel);
+        }
     }
 
     /**
-     * Joins a voice channel based off of message's contents.
+     * Joins the named voice channel, or the voice channel of the message's author if no name is given.
      *
      * @param manager AudioManager used to close connection if connected to another voice channel.
      * @param guild Used to get the guild's VoiceChannel(s).
      * @param channel Used to get the TextChannel that message was sent from.
-     * @param message Used to get content of message and the message's author.
+     * @param message Used to get the message's author.
+     * @param name The [VoiceChannel] argument of -join, or empty if none was given.
      * @see eMusic#onGuildMessageReceived(GuildMessageReceivedEvent)
      */
-    private void joinVoice(AudioManager manager, Guild guild, TextChannel channel, Message message) {
-        String command = message.getContent();
-        boolean validChannel = false;
+    private void joinVoice(AudioManager manager, Guild guild, TextChannel channel, Message message, String name) {
+        VoiceChannel botChannel = guild.getSelfMember().getVoiceState().getChannel();
 
-        if (command.length() > 5) {
+        if (!name.isEmpty()) {
             try {
-                for (VoiceChannel vc : guild.getVoiceChannels())
-                    if(command.substring(6).equalsIgnoreCase(vc.getName()))
-                        validChannel = true;
-                if(validChannel) {
-                    for (VoiceChannel vc : guild.getVoiceChannels()) // Disconnect if connected.
-                        vc.getMembers().stream().filter(m -> m.getEffectiveName().equalsIgnoreCase("eMusic"))
-                                .forEach(m -> manager.closeAudioConnection());
-                    setVoiceChannel(guild,channel, command.substring(6));
+                List<VoiceChannel> matches = guild.getVoiceChannelsByName(name, true);
+                if(!matches.isEmpty()) {
+                    if(botChannel != null) // Disconnect if connected.
+                        manager.closeAudioConnection();
+                    setVoiceChannel(guild, matches.get(0));
                 }
                 else
-                    channel.sendMessage("No voice channel named '" + command.substring(6) + "' exists!");
-            } catch (Exception e) {channel.sendMessage("An error occurred when trying to join the channel.");}
+                    outbox.send(channel, "No voice channel named '" + name + "' exists!");
+            } catch (Exception e) {outbox.send(channel, "An error occurred when trying to join the channel.");}
         } else {
-            for (VoiceChannel vc : guild.getVoiceChannels()) // Get Message Author's voice channel.
-                for (Member m : vc.getMembers())
-                    if (m.getUser().equals(message.getAuthor()))
-                        command = vc.getName();
-
-            for (VoiceChannel vc : guild.getVoiceChannels()) // Get eNetMusicBot's voice channel.
-                vc.getMembers().stream().filter(m -> m.getEffectiveName().equalsIgnoreCase("eMusic"))
-                        .forEach(m -> voiceChannel = vc);
-
-            // Bot isn't in a/the voice channel.
-            validChannel = channel == null || !command.equalsIgnoreCase(channel.getName());
-
-            if (validChannel) {
-                for (VoiceChannel vc : guild.getVoiceChannels()) // Disconnect if connected.
-                    vc.getMembers().stream().filter(m -> m.getEffectiveName().equalsIgnoreCase("eMusic"))
-                            .forEach(m -> manager.closeAudioConnection());
-                for (VoiceChannel vc : guild.getVoiceChannels()) // Connect to user's channel.
-                    vc.getMembers().stream().filter(m -> m.getUser().equals(message.getAuthor()))
-                            .forEach(m -> setVoiceChannel(guild, channel, vc.getName()));
+            VoiceChannel userChannel = voiceChannels.getChannel(guild, message.getAuthor());
+            if (botChannel != null)
+                getGuildAudioPlayer(guild).getState().setVoiceChannel(botChannel);
+
+            // Bot isn't in the user's voice channel.
+            if (userChannel != null && !userChannel.equals(botChannel)) {
+                if (botChannel != null) // Disconnect if connected.
+                    manager.closeAudioConnection();
+                setVoiceChannel(guild, userChannel); // Connect to user's channel.
             }
         }
     }
@@ -787,7 +1034,8 @@ class eMusic extends ListenerAdapter {
      * commands from onGuildMessageReceived().
      *
      * Prints the StackTrace of e and notifies both the user
-     * of the command and the bot managers of the guild.
+     * of the command and the bot managers of the guild. The bot managers
+     * are notified through {@link #alerts}, which doesn't block.
      *
      * @param e General Exception that occurred with the command.
      * @param guild Used to get the current guild where the Exception occurred.
@@ -796,45 +1044,27 @@ class eMusic extends ListenerAdapter {
      * @see eMusic#onGuildMessageReceived(GuildMessageReceivedEvent)
      */
     private void commandException(Exception e, Guild guild, TextChannel channel, Message message) {
-        channel.sendMessage("An ***ERROR*** occurred when trying to execute command: "
+        outbox.send(channel, "An ***ERROR*** occurred when trying to execute command: "
                 + message.getContent()
-                + "\nAll users with the bot maintenance role have been notified. Check '?eMusic' in the mean time.").queue();
-        e.printStackTrace();
-        Role server = null;
-        for(Role role : guild.getRoles())
-            if(role.getName().equalsIgnoreCase(managerRole)){server = role; break;}
-        if(server != null)
-            for(Member m : guild.getMembersWithRoles(server)) {
-                PrivateChannel pm = m.getUser().openPrivateChannel().complete();
-                pm.sendMessage(
-                        "An error occurred when " + message.getAuthor() + " issued command: " + message.getContent()
-                                + "\nPlease check the console for the stacktrace.").queue();
-            }
+                + "\nAll users with the bot maintenance role have been notified. Check '?eMusic' in the mean time.");
+        // Repeats of the same failure are summarized by the alerts, so only the first stacktrace of a window is printed.
+        if(alerts.report(e, guild, message))
+            e.printStackTrace();
     }
 
     /**
      * Function runs after the '/join' command is entered.
      *
-     * Places the bot in the VoiceChannel specified by chanName argument if possible.
-     * If the VoiceChannel cannot be joined because it doesn't exist, a message is sent to channel
-     * to notify the user of the command.
+     * Places the bot in the given VoiceChannel, attaching the guild's send handler first.
      *
-     * @param guild Used to get the current guild where the Exception occurred.
-     * @param channel Used to get the channel of the command that caused the Exception.
-     * @param chanName VoiceChannel to join.
-     * @see eMusic#joinVoice(AudioManager, Guild, TextChannel, Message)
-     */
-    private void setVoiceChannel(Guild guild, TextChannel channel, String chanName) {
-        //Scans through the VoiceChannels in this Guild, looking for one with a case-insensitive matching name.
-        voiceChannel = guild.getVoiceChannels().stream().filter(
-                vChan -> vChan.getName().equalsIgnoreCase(chanName))
-                .findFirst().orElse(null);  //If there isn't a matching name, return null.
-        if (voiceChannel == null)
-        {
-            channel.sendMessage("There isn't a VoiceChannel called: '" + chanName + "'");
-            return;
-        }
+     * @param guild Used to get the current guild's audio manager.
+     * @param voiceChannel VoiceChannel to join.
+     * @see eMusic#joinVoice(AudioManager, Guild, TextChannel, Message, String)
+     */
+    private void setVoiceChannel(Guild guild, VoiceChannel voiceChannel) {
+        getGuildAudioPlayer(guild).getState().setVoiceChannel(voiceChannel);
         try {
+            attachSendHandler(guild);
             guild.getAudioManager().openAudioConnection(voiceChannel);
         }catch (Exception e){e.printStackTrace();}
     }
@@ -847,8 +1077,8 @@ class eMusic extends ListenerAdapter {
      * @param u Used to get the user of the command and their private message channel.
      */
     private void sendCommands(User u) {
-        PrivateChannel pm = u.openPrivateChannel().complete();
-        pm.sendMessage(
+        // Opening the channel is a request of its own; queue it rather than block the guild's lane until it's done.
+        u.openPrivateChannel().queue(pm -> pm.sendMessage(
                 "__**Commands:**__\n" +
                 "```java\n" +
                 "!ALL COMMANDS ARE GUILD WIDE ACTIONS!\n" +
@@ -861,31 +1091,18 @@ class eMusic extends ListenerAdapter {
                 "-skip // Skips to the next track.\n" +
                 "-previous // Skips to the last track.\n" +
                 "-nowplaying // Displays the current song's info.\n" +
-                "-queue | -list // Displays the current queue if there is one.\n" +
+                "-queue | -list [Page] // Displays a page of the current queue if there is one.\n" +
                 "-stop // Stops the current track and ends playback; keeps the queue.\n" +
                 "-clear // Clears the queue.\n" +
                 "-remove [Position in Queue] // Removes the specified track from the queue. " +
                     "If a position is not given, it will remove the first track in the queue.\n" +
+                "-move [From Position] [To Position] // Moves a track to another position in the queue.\n" +
+                "-shuffle // Shuffles the queue.\n" +
+                "-dedupe // Removes tracks that are in the queue more than once.\n" +
                 "-reset // Stops the current track, clears the queue, and disconnects the bot from the voice channel.\n" +
                 "-radio [Station URL | Search Term] // Queues a radio station based on the term or url.\n" +
                 "?eMusic // Messages the user a list of commands.\n" +
                 "```"
-        ).queue();
-    }
-
-    /**
-     * Used to set {@link #trackIsLoaded}.
-     * @param loaded Used to set the variable.
-     */
-    private void setTrackLoaded(boolean loaded) {
-        trackIsLoaded = loaded;
-    }
-
-    /**
-     * Set whether the playback is finished or not.
-     * @param finished Playback's state.
-     */
-    static void playbackFinished(boolean finished) {
-        finishedPlayback = finished;
+        ).queue());
     }
-}
\ No newline at end of file
+}
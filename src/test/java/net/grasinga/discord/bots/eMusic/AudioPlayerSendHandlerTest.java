@@ -0,0 +1,134 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class AudioPlayerSendHandlerTest {
+    private static final int FRAMES = 100000;
+
+    /**
+     * A player that plays one track and hands out the same few frames in a loop, so providing a frame allocates
+     * nothing on its side.
+     */
+    private static AudioPlayer player(AudioFrame[] frames) {
+        AudioTrack track = TestTracks.track("Track", 180000);
+        int[] next = new int[1];
+        return (AudioPlayer) Proxy.newProxyInstance(AudioPlayer.class.getClassLoader(),
+                new Class<?>[] {AudioPlayer.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "provide":
+                            AudioFrame frame = frames[next[0]];
+                            next[0] = (next[0] + 1) % frames.length;
+                            return frame;
+                        case "getPlayingTrack":
+                            return track;
+                        case "isPaused":
+                            return false;
+                        case "getVolume":
+                            return 100;
+                        default:
+                            return method.getReturnType() == boolean.class ? (Object) false : null;
+                    }
+                });
+    }
+
+    private static AudioFrame[] frames() {
+        AudioFrame[] frames = new AudioFrame[4];
+        for (int i = 0; i < frames.length; i++)
+            frames[i] = new AudioFrame(i * 20L, new byte[] {(byte) i}, 100, null);
+        return frames;
+    }
+
+    private static void provide(AudioPlayerSendHandler handler, int count) {
+        for (int i = 0; i < count; i++)
+            if (handler.canProvide())
+                handler.provide20MsAudio();
+    }
+
+    @Test
+    public void framesArePassedOnInOrder() {
+        AudioFrame[] frames = frames();
+        AudioPlayerSendHandler handler = new AudioPlayerSendHandler(player(frames), 3, null, "test", null);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(handler.canProvide());
+            assertArrayEquals(frames[i % frames.length].data, handler.provide20MsAudio());
+        }
+    }
+
+    @Test
+    public void handlerAllocatesNothingPerFrame() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        AudioPlayerSendHandler handler = new AudioPlayerSendHandler(player(frames()),
+                AudioPlayerSendHandler.DEFAULT_BUFFERED_FRAMES, null, "test", null);
+        // Warm up, so class loading and compilation aren't counted.
+        provide(handler, FRAMES);
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        provide(handler, FRAMES);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        // Allows for a few stray allocations by the JVM, but not one per frame.
+        assertTrue("Allocated " + allocated + " bytes for " + FRAMES + " frames", allocated < FRAMES / 10);
+    }
+
+    @Test
+    public void missesBeforeATracksFirstFrameAreNotUnderruns() {
+        AudioTrack[] playing = {TestTracks.track("First", 180000)};
+        boolean[] ready = {false};
+        AudioFrame frame = new AudioFrame(0, new byte[] {1}, 100, null);
+        AudioPlayer player = (AudioPlayer) Proxy.newProxyInstance(AudioPlayer.class.getClassLoader(),
+                new Class<?>[] {AudioPlayer.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "provide":
+                            return ready[0] ? frame : null;
+                        case "getPlayingTrack":
+                            return playing[0];
+                        case "isPaused":
+                            return false;
+                        default:
+                            return method.getReturnType() == boolean.class ? (Object) false : null;
+                    }
+                });
+        AudioPlayerSendHandler handler = new AudioPlayerSendHandler(player, 3, null, "startup-test", null);
+
+        // The first track loads for 5 slots, plays, then its source stalls; the 2 frames left in the ring cover 2 of
+        // the 5 slots after that.
+        provide(handler, 5);
+        ready[0] = true;
+        provide(handler, 10);
+        ready[0] = false;
+        provide(handler, 5);
+        assertEquals(5, handler.getStartupMisses());
+        assertEquals(3, handler.getUnderruns());
+
+        // The next track buffering is a start-up again.
+        playing[0] = TestTracks.track("Second", 180000);
+        provide(handler, 4);
+        assertEquals(9, handler.getStartupMisses());
+        assertEquals(3, handler.getUnderruns());
+
+        // So is the track after a skip cleared the buffer.
+        ready[0] = true;
+        provide(handler, 1);
+        handler.clearBuffer();
+        ready[0] = false;
+        provide(handler, 3);
+        assertEquals(12, handler.getStartupMisses());
+        assertEquals(3, handler.getUnderruns());
+    }
+}
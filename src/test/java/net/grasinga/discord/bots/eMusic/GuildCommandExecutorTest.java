@@ -0,0 +1,109 @@
+package net.grasinga.discord.bots.eMusic;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GuildCommandExecutorTest {
+    private static final long GUILD = 1;
+    private static final long OTHER_GUILD = 2;
+
+    /**
+     * Submits a command that waits for the latch, so everything after it queues up behind it.
+     */
+    private static CountDownLatch block(GuildCommandExecutor executor, long guildId, List<String> ran, String name)
+            throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(executor.submit(guildId, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ran.add(name);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static void await(GuildCommandExecutor executor, long guildId) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        assertTrue(executor.submit(guildId, done::countDown));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void commandsOfAGuildRunInOrder() throws Exception {
+        GuildCommandExecutor executor = new GuildCommandExecutor(4);
+        List<Integer> ran = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            int command = i;
+            assertTrue(executor.submit(GUILD, () -> ran.add(command)));
+            expected.add(i);
+        }
+        await(executor, GUILD);
+        assertEquals(expected, ran);
+    }
+
+    @Test
+    public void fullLaneDropsCommands() throws Exception {
+        GuildCommandExecutor executor = new GuildCommandExecutor(1);
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = block(executor, GUILD, ran, "blocking");
+        for (int i = 0; i < 16; i++)
+            assertTrue(executor.submit(GUILD, () -> ran.add("queued")));
+        assertFalse(executor.submit(GUILD, () -> ran.add("dropped")));
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ran.size() < 17 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        await(executor, GUILD);
+        assertEquals(17, ran.size());
+        assertFalse(ran.contains("dropped"));
+    }
+
+    @Test
+    public void busyGuildGivesTheWorkerUpAfterABatch() throws Exception {
+        GuildCommandExecutor executor = new GuildCommandExecutor(1);
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = block(executor, GUILD, ran, "busy");
+        for (int i = 0; i < 15; i++)
+            executor.submit(GUILD, () -> ran.add("busy"));
+        executor.submit(OTHER_GUILD, () -> ran.add("other"));
+
+        release.countDown();
+        await(executor, GUILD);
+        assertEquals(GuildCommandExecutor.MAX_BATCH, ran.indexOf("other"));
+        assertEquals(17, ran.size());
+    }
+
+    @Test
+    public void removedGuildDropsItsWaitingCommands() throws Exception {
+        GuildCommandExecutor executor = new GuildCommandExecutor(1);
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = block(executor, GUILD, ran, "running");
+        for (int i = 0; i < 3; i++)
+            executor.submit(GUILD, () -> ran.add("waiting"));
+
+        executor.remove(GUILD);
+        assertEquals(0, executor.getLaneCount());
+        release.countDown();
+
+        // A guild the bot joins again gets a new lane.
+        await(executor, GUILD);
+        assertEquals(Collections.singletonList("running"), ran);
+        assertEquals(1, executor.getLaneCount());
+    }
+}
@@ -0,0 +1,191 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioConfiguration;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.TextChannel;
+import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
+import net.dv8tion.jda.core.managers.AudioManager;
+import net.dv8tion.jda.core.requests.RestAction;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs many guilds at once to check that no guild ever sees another guild's playback state.
+ */
+public class GuildPlaybackStateStressTest {
+    private static final int THREADS = 16;
+
+    @Test
+    public void guildsPlayingAtOnceKeepTheirOwnState() throws Exception {
+        int guilds = 200;
+        int tracksPerGuild = 50;
+        AtomicReference<List<AudioTrack>> startedBy = new AtomicReference<>();
+        AudioPlayerManager playerManager = mock(AudioPlayerManager.class);
+        when(playerManager.createPlayer()).thenAnswer(invocation -> TestPlayers.player(startedBy.get()));
+
+        List<GuildMusicManager> managers = new ArrayList<>();
+        List<List<AudioTrack>> started = new ArrayList<>();
+        List<List<AudioTrack>> playlists = new ArrayList<>();
+        for (int g = 0; g < guilds; g++) {
+            started.add(Collections.synchronizedList(new ArrayList<>()));
+            startedBy.set(started.get(g));
+            managers.add(new GuildMusicManager(playerManager, new TrackGapStats(), "stress-" + g, null));
+            playlists.add(TestTracks.tracks("guild" + g + "-", tracksPerGuild));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int g = 0; g < guilds; g++) {
+            GuildMusicManager manager = managers.get(g);
+            List<AudioTrack> playlist = playlists.get(g);
+            results.add(pool.submit(() -> {
+                go.await();
+                GuildPlaybackState state = manager.getState();
+                state.setTrackLoaded(true);
+                manager.scheduler.queueAll(playlist);
+                // Play the playlist out as the player would, ending each track as it finishes.
+                for (AudioTrack track; (track = manager.getPlayer().getPlayingTrack()) != null; ) {
+                    state.setCurrentTrack(track);
+                    Thread.yield();
+                    assertSame(track, state.getCurrentTrack());
+                    assertFalse(state.isPlaybackFinished());
+                    manager.scheduler.onTrackEnd(manager.getPlayer(), track, AudioTrackEndReason.FINISHED);
+                }
+                state.setCurrentTrack(null);
+                return null;
+            }));
+        }
+        go.countDown();
+        for (Future<?> result : results)
+            result.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        for (int g = 0; g < guilds; g++) {
+            GuildPlaybackState state = managers.get(g).getState();
+            assertEquals("Guild " + g, playlists.get(g), started.get(g));
+            assertTrue(state.isTrackLoaded());
+            assertTrue(state.isPlaybackFinished());
+            assertNull(state.getCurrentTrack());
+        }
+    }
+
+    @Test
+    public void commandsOfManyGuildsAnswerWithTheirOwnTrack() throws Exception {
+        int guilds = 100;
+        AudioPlayerManager playerManager = mock(AudioPlayerManager.class);
+        when(playerManager.getConfiguration()).thenReturn(new AudioConfiguration());
+        when(playerManager.createPlayer())
+                .thenAnswer(invocation -> TestPlayers.player(Collections.synchronizedList(new ArrayList<>())));
+        doAnswer(invocation -> {
+            String identifier = invocation.getArgument(1);
+            String title = identifier.substring(identifier.lastIndexOf('/') + 1);
+            invocation.<AudioLoadResultHandler>getArgument(2).trackLoaded(TestTracks.track(title, 180000));
+            return null;
+        }).when(playerManager).loadItemOrdered(any(), anyString(), any(AudioLoadResultHandler.class));
+        eMusic bot = new eMusic(playerManager, term -> YouTubeSearch.NO_RESULT, jsonUrl -> Collections.emptyMap());
+
+        List<TextChannel> channels = new ArrayList<>();
+        List<List<GuildMessageReceivedEvent>> commands = new ArrayList<>();
+        for (int g = 0; g < guilds; g++) {
+            TextChannel channel = channel(g);
+            channels.add(channel);
+            commands.add(Arrays.asList(message(channel, "-play http://music.test/song" + g),
+                    message(channel, "-nowplaying")));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (List<GuildMessageReceivedEvent> guildCommands : commands)
+            results.add(pool.submit(() -> {
+                go.await();
+                for (GuildMessageReceivedEvent command : guildCommands)
+                    bot.onGuildMessageReceived(command);
+                return null;
+            }));
+        go.countDown();
+        for (Future<?> result : results)
+            result.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        Pattern song = Pattern.compile("song\\d+");
+        for (int g = 0; g < guilds; g++) {
+            TextChannel channel = channels.get(g);
+            verify(channel, timeout(10000)).sendMessage(contains("**Song:** song" + g + "\n"));
+            ArgumentCaptor<String> sent = ArgumentCaptor.forClass(String.class);
+            verify(channel, atLeastOnce()).sendMessage(sent.capture());
+            for (String message : sent.getAllValues())
+                for (Matcher matcher = song.matcher(message); matcher.find(); )
+                    assertEquals("Guild " + g + " was sent: " + message, "song" + g, matcher.group());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TextChannel channel(int g) {
+        Guild guild = mock(Guild.class);
+        when(guild.getId()).thenReturn(String.valueOf(1000 + g));
+        when(guild.getAudioManager()).thenReturn(mock(AudioManager.class));
+        when(guild.getVoiceChannels()).thenReturn(Collections.emptyList());
+
+        TextChannel channel = mock(TextChannel.class);
+        when(channel.getId()).thenReturn(String.valueOf(2000 + g));
+        when(channel.getGuild()).thenReturn(guild);
+        when(channel.sendMessage(anyString())).thenReturn(mock(RestAction.class));
+        return channel;
+    }
+
+    private static GuildMessageReceivedEvent message(TextChannel channel, String content) {
+        Guild guild = channel.getGuild();
+        User author = mock(User.class);
+        when(author.getId()).thenReturn("3");
+        Message message = mock(Message.class);
+        when(message.getContent()).thenReturn(content);
+        when(message.getRawContent()).thenReturn(content);
+        when(message.getGuild()).thenReturn(guild);
+        when(message.getTextChannel()).thenReturn(channel);
+        when(message.getAuthor()).thenReturn(author);
+
+        GuildMessageReceivedEvent event = mock(GuildMessageReceivedEvent.class);
+        when(event.getMessage()).thenReturn(message);
+        when(event.getGuild()).thenReturn(guild);
+        when(event.getChannel()).thenReturn(channel);
+        when(event.getAuthor()).thenReturn(author);
+        return event;
+    }
+}
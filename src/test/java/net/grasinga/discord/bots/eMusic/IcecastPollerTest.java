@@ -0,0 +1,90 @@
+package net.grasinga.discord.bots.eMusic;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class IcecastPollerTest {
+    private static final String ROCK = "http://radio.test:8000/rock";
+
+    /**
+     * Stands in for the Icecast server: serves {@link #status}, or fails while it is null.
+     */
+    private static class FakeServer implements IcecastPoller.StatusFetcher {
+        private volatile Map<String, StationInfo> status;
+        private final AtomicInteger fetches = new AtomicInteger();
+
+        @Override
+        public Map<String, StationInfo> fetch(String jsonUrl) throws IOException {
+            assertEquals("http://radio.test:8000/status-json.xsl", jsonUrl);
+            fetches.incrementAndGet();
+            Map<String, StationInfo> mounts = status;
+            if (mounts == null)
+                throw new IOException("Connection refused");
+            return mounts;
+        }
+    }
+
+    private static Map<String, StationInfo> playing(String title) {
+        return Collections.singletonMap("/rock", new StationInfo("Rock FM", "The Band", title, "The Band - " + title));
+    }
+
+    private static StationInfo await(IcecastPoller poller) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        StationInfo info;
+        while ((info = poller.get(ROCK)) == null && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        return info;
+    }
+
+    @Test
+    public void failedPollKeepsTheLastGoodInfo() throws Exception {
+        FakeServer server = new FakeServer();
+        server.status = playing("First Song");
+        IcecastPoller poller = new IcecastPoller(server);
+        poller.watch(ROCK);
+        assertEquals("First Song", await(poller).getTitle());
+
+        server.status = null;
+        poller.pollAll();
+        assertEquals("First Song", poller.get(ROCK).getTitle());
+
+        server.status = playing("Second Song");
+        poller.pollAll();
+        assertEquals("Second Song", poller.get(ROCK).getTitle());
+    }
+
+    @Test
+    public void failedFirstPollIsUnknown() throws Exception {
+        FakeServer server = new FakeServer();
+        IcecastPoller poller = new IcecastPoller(server);
+        poller.watch(ROCK);
+        assertSame(StationInfo.UNKNOWN, await(poller));
+
+        // It is polled again like any other host, and picks up the info once the server answers.
+        server.status = playing("First Song");
+        poller.pollAll();
+        assertEquals("First Song", poller.get(ROCK).getTitle());
+    }
+
+    @Test
+    public void hostIsFetchedOnceForEveryMountAndReader() throws Exception {
+        FakeServer server = new FakeServer();
+        server.status = playing("First Song");
+        IcecastPoller poller = new IcecastPoller(server);
+        poller.watch(ROCK);
+        await(poller);
+        poller.watch("http://radio.test:8000/jazz");
+        for (int i = 0; i < 100; i++)
+            poller.get(ROCK);
+
+        assertEquals(1, server.fetches.get());
+        assertSame(StationInfo.UNKNOWN, poller.get("http://radio.test:8000/jazz"));
+    }
+}
@@ -0,0 +1,134 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.google.gson.stream.JsonReader;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InternetRadioParserTest {
+    private HttpServer server;
+    private volatile String status;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/status-json.xsl", exchange -> {
+            String body = status;
+            if (body == null) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static Map<String, StationInfo> parseResource(String name) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                InternetRadioParserTest.class.getResourceAsStream(name), StandardCharsets.UTF_8))) {
+            return InternetRadioParser.parseStatus(reader);
+        }
+    }
+
+    private static Map<String, StationInfo> parse(String document) throws IOException {
+        return InternetRadioParser.parseStatus(new JsonReader(new StringReader(document)));
+    }
+
+    @Test
+    public void everyMountIsFoundByItsExactPath() throws IOException {
+        Map<String, StationInfo> mounts = parseResource("icecast-mounts.json");
+        assertEquals(3, mounts.size());
+
+        // "/rock" is listed after "/rock2"; neither is mistaken for the other.
+        StationInfo rock = mounts.get(InternetRadioParser.getMountPath("http://radio.test:8000/rock"));
+        assertEquals("Rock FM", rock.getStation());
+        assertEquals("First Song", rock.getTitle());
+        assertEquals("First Band", rock.getArtist());
+        assertEquals("First Band - First Song", rock.getInfo());
+
+        StationInfo rock2 = mounts.get(InternetRadioParser.getMountPath("http://radio.test:8000/rock2"));
+        assertEquals("Rock Two", rock2.getStation());
+        assertEquals("Second Song", rock2.getTitle());
+    }
+
+    @Test
+    public void numbersAreReadAsTextAndOtherValuesAreSkipped() throws IOException {
+        StationInfo numbers = parseResource("icecast-mounts.json").get("/numbers");
+        assertEquals("1979", numbers.getStation());
+        assertEquals("3.5", numbers.getInfo());
+        assertEquals("Unknown", numbers.getTitle());
+        assertEquals("Unknown", numbers.getArtist());
+    }
+
+    @Test
+    public void loneMountIsListedAsAnObject() throws IOException {
+        Map<String, StationInfo> mounts = parseResource("icecast-single.json");
+        assertEquals(1, mounts.size());
+        StationInfo stream = mounts.get("/stream");
+        assertEquals("Lone Station", stream.getStation());
+        assertEquals("Only Song", stream.getTitle());
+        assertEquals("Unknown", stream.getArtist());
+    }
+
+    @Test
+    public void serverWithoutMountsHasNone() throws IOException {
+        assertTrue(parse("{\"icestats\":{\"admin\":\"admin@radio.test\",\"host\":\"radio.test\"}}").isEmpty());
+        assertTrue(parse("{\"icestats\":{\"source\":null}}").isEmpty());
+        assertTrue(parse("{\"other\":[1,2,{\"source\":{}}]}").isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedDocumentFails() throws IOException {
+        parse("{\"icestats\":{\"source\":[{\"listenurl\":\"http://radio.test/rock\"");
+    }
+
+    @Test
+    public void mountPathsAreExact() {
+        assertEquals("/rock", InternetRadioParser.getMountPath("http://radio.test:8000/rock"));
+        assertEquals("/live/rock.mp3", InternetRadioParser.getMountPath("http://radio.test/live/rock.mp3"));
+        assertEquals("/", InternetRadioParser.getMountPath("http://radio.test"));
+        assertEquals("http://radio.test:8000/status-json.xsl",
+                InternetRadioParser.getJsonURL("http://radio.test:8000/rock"));
+    }
+
+    @Test
+    public void statusIsFetchedFromTheServer() throws IOException {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/rock";
+        status = "{\"icestats\":{\"source\":{\"listenurl\":\"" + url + "\",\"server_name\":\"Rock FM\","
+                + "\"title\":\"Song\"}}}";
+        StationInfo rock = InternetRadioParser.fetchStatus(InternetRadioParser.getJsonURL(url)).get("/rock");
+        assertEquals("Rock FM", rock.getStation());
+        assertEquals("Song", rock.getTitle());
+    }
+
+    @Test(expected = IOException.class)
+    public void serverErrorFailsTheFetch() throws IOException {
+        status = null;
+        InternetRadioParser.fetchStatus(InternetRadioParser.getJsonURL(
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/rock"));
+    }
+}
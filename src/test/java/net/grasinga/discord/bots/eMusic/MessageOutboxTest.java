@@ -0,0 +1,132 @@
+package net.grasinga.discord.bots.eMusic;
+
+import net.dv8tion.jda.core.entities.TextChannel;
+import net.dv8tion.jda.core.requests.RestAction;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MessageOutboxTest {
+    /**
+     * A channel whose messages never complete, as if Discord's rate limit held them forever.
+     */
+    @SuppressWarnings("unchecked")
+    private static TextChannel stalledChannel() {
+        TextChannel channel = mock(TextChannel.class);
+        when(channel.getId()).thenReturn("1");
+        when(channel.sendMessage(anyString())).thenReturn(mock(RestAction.class));
+        return channel;
+    }
+
+    /**
+     * A channel whose messages are sent right away.
+     */
+    @SuppressWarnings("unchecked")
+    private static TextChannel channel(String id) {
+        TextChannel channel = mock(TextChannel.class);
+        RestAction<Object> action = mock(RestAction.class);
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(action).queue(any(), any());
+        when(channel.getId()).thenReturn(id);
+        when(channel.sendMessage(anyString())).thenReturn((RestAction) action);
+        return channel;
+    }
+
+    private static void awaitNoChannels(MessageOutbox outbox) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (outbox.getChannelCount() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(0, outbox.getChannelCount());
+    }
+
+    private static String reply(char c, int length) {
+        char[] text = new char[length];
+        Arrays.fill(text, c);
+        return new String(text);
+    }
+
+    @Test
+    public void fullBufferNeverBlocksTheSender() {
+        MessageOutbox outbox = new MessageOutbox();
+        TextChannel channel = stalledChannel();
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++)
+            outbox.send(channel, reply('x', 1500));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        // 20 are buffered, one more may have gone out meanwhile, and none of the rest fit anywhere.
+        verify(channel, timeout(5000)).sendMessage(anyString());
+        assertTrue(outbox.getDropped() >= 1000 - 21);
+    }
+
+    @Test
+    public void fullBufferMergesRepliesThatFit() {
+        MessageOutbox outbox = new MessageOutbox();
+        TextChannel channel = stalledChannel();
+        for (int i = 0; i < 20; i++)
+            outbox.send(channel, reply('x', 1500));
+        outbox.send(channel, "first");
+        outbox.send(channel, "second");
+        assertEquals(0, outbox.getDropped());
+        outbox.send(channel, reply('y', 600));
+        assertEquals(1, outbox.getDropped());
+    }
+
+    @Test
+    public void newerStatusReplacesAnUnsentOne() {
+        MessageOutbox outbox = new MessageOutbox();
+        TextChannel channel = stalledChannel();
+        outbox.send(channel, "Now playing **a**", "now-playing");
+        outbox.send(channel, "Added **b** to queue.");
+        outbox.send(channel, "Now playing **c**", "now-playing");
+
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(channel, timeout(5000)).sendMessage(message.capture());
+        assertEquals("Added **b** to queue.\nNow playing **c**", message.getValue());
+        assertEquals(1, outbox.getDropped());
+    }
+
+    @Test
+    public void idleChannelsAreForgotten() throws Exception {
+        MessageOutbox outbox = new MessageOutbox();
+        for (int i = 1; i <= 50; i++)
+            outbox.send(channel(String.valueOf(i)), "Skipped to the next track.");
+        assertEquals(50, outbox.getChannelCount());
+        awaitNoChannels(outbox);
+
+        // A channel that was forgotten gets a new buffer when it's replied to again.
+        TextChannel channel = channel("7");
+        outbox.send(channel, "Playback has been paused.");
+        verify(channel, timeout(5000)).sendMessage("Playback has been paused.");
+        awaitNoChannels(outbox);
+    }
+
+    @Test
+    public void sendThatThrowsDoesNotStallTheChannel() throws Exception {
+        MessageOutbox outbox = new MessageOutbox();
+        TextChannel channel = channel("1");
+        when(channel.sendMessage("first")).thenThrow(new IllegalStateException("Missing permission"));
+        outbox.send(channel, "first");
+        verify(channel, timeout(5000)).sendMessage("first");
+        awaitNoChannels(outbox);
+
+        outbox.send(channel, "second");
+        verify(channel, timeout(5000)).sendMessage("second");
+        verify(channel, times(2)).sendMessage(anyString());
+    }
+}
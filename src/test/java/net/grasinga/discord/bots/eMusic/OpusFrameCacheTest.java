@@ -0,0 +1,190 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OpusFrameCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OpusFrameCache cache() throws IOException {
+        return new OpusFrameCache(folder.newFolder(), 1024 * 1024);
+    }
+
+    /**
+     * Records every frame of a track, as if it was played from start to end.
+     */
+    static void play(OpusFrameCache.Recording recording, AudioTrack track) {
+        for (long timecode = 0; timecode < track.getDuration(); timecode += 20)
+            assertTrue(recording.add(track, new AudioFrame(timecode, new byte[] {1, 2, 3}, 100, null)));
+        recording.finish();
+    }
+
+    /**
+     * Records a track whose frames each hold their own index, so they can be told apart when read back.
+     */
+    private static void playNumbered(OpusFrameCache.Recording recording, AudioTrack track) {
+        for (long timecode = 0; timecode < track.getDuration(); timecode += 20)
+            assertTrue(recording.add(track, new AudioFrame(timecode, new byte[] {(byte) (timecode / 20)}, 100, null)));
+        recording.finish();
+    }
+
+    private static OpusFrameCache.Entry store(OpusFrameCache cache, String title) throws InterruptedException {
+        AudioTrack track = TestTracks.track(title, 200);
+        play(cache.startRecording(track), track);
+        OpusFrameCache.Entry entry = awaitStored(cache, track.getInfo().identifier);
+        assertNotNull(entry);
+        return entry;
+    }
+
+    private static void use(OpusFrameCache cache, String title, int times) {
+        for (int i = 0; i < times; i++)
+            assertNotNull(cache.get(TestTracks.track(title, 200).getInfo().identifier));
+    }
+
+    static OpusFrameCache.Entry awaitStored(OpusFrameCache cache, String key) throws InterruptedException {
+        for (int i = 0; i < 500 && cache.peek(key) == null; i++)
+            Thread.sleep(10);
+        return cache.peek(key);
+    }
+
+    @Test
+    public void trackIsStoredUnderTheIdentifierItWasRequestedWith() throws Exception {
+        OpusFrameCache cache = cache();
+        AudioTrack track = TestTracks.track("Song", 200);
+        cache.alias(track.getInfo().identifier, "https://www.youtube.com/watch?v=song");
+
+        play(cache.startRecording(track), track);
+
+        OpusFrameCache.Entry entry = awaitStored(cache, "https://www.youtube.com/watch?v=song");
+        assertNotNull(entry);
+        assertEquals("Song", entry.getInfo().title);
+        // The alias isn't needed once the track is stored.
+        assertEquals(0, cache.getAliasCount());
+    }
+
+    @Test
+    public void nothingIsRecordedWhileTheQualityIsLowered() throws Exception {
+        OpusFrameCache cache = cache();
+        double[] cpu = {0.95};
+        QualityController quality = new QualityController(level -> {}, () -> 0, () -> 0, () -> cpu[0]);
+        cache.setQualityController(quality);
+        quality.sample();
+        quality.sample();
+
+        assertNull(cache.startRecording(TestTracks.track("Song", 200)));
+    }
+
+    @Test
+    public void recordingIsDroppedIfTheQualityChangesMeanwhile() throws Exception {
+        OpusFrameCache cache = cache();
+        QualityController quality = new QualityController(level -> {}, () -> 0, () -> 0, () -> 0.95);
+        cache.setQualityController(quality);
+        AudioTrack track = TestTracks.track("Song", 200);
+        OpusFrameCache.Recording recording = cache.startRecording(track);
+        assertNotNull(recording);
+        quality.sample();
+        quality.sample();
+
+        play(recording, track);
+        assertNull(awaitStored(cache, track.getInfo().identifier));
+    }
+
+    @Test
+    public void aliasesOfTracksThatAreNeverPlayedAreBounded() throws Exception {
+        OpusFrameCache cache = cache();
+        for (int i = 0; i < 100000; i++)
+            cache.alias("test:" + i, "https://www.youtube.com/watch?v=" + i);
+        assertTrue(cache.getAliasCount() <= 4096);
+    }
+
+    @Test
+    public void framesAreReadBackInOrderAndSeekable() throws Exception {
+        OpusFrameCache cache = cache();
+        AudioTrack track = TestTracks.track("Song", 2000);
+        playNumbered(cache.startRecording(track), track);
+        OpusFrameCache.Entry entry = awaitStored(cache, track.getInfo().identifier);
+
+        OpusFrameCache.FrameReader reader = cache.open(entry);
+        for (int i = 0; i < 100; i++) {
+            ByteBuffer packet = reader.next();
+            assertEquals(1, packet.remaining());
+            assertEquals(i, packet.get());
+        }
+        assertNull(reader.next());
+
+        // A position within a frame moves to the start of that frame.
+        assertEquals(1000, reader.seek(1000));
+        assertEquals(50, reader.next().get());
+        assertEquals(20, reader.seek(39));
+        assertEquals(1, reader.next().get());
+        assertEquals(0, reader.seek(0));
+        assertEquals(0, reader.next().get());
+        // Past the end, it stops after the last frame.
+        assertEquals(2000, reader.seek(60000));
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void reopenedCacheIndexesStoredTracksAndDeletesTheRest() throws Exception {
+        File directory = folder.newFolder();
+        OpusFrameCache cache = new OpusFrameCache(directory, 1024 * 1024);
+        store(cache, "First");
+        store(cache, "Second");
+        long totalBytes = cache.getTotalBytes();
+
+        File partial = new File(directory, "unfinished.part");
+        assertTrue(partial.createNewFile());
+        File broken = new File(directory, "broken.opus");
+        assertTrue(broken.createNewFile());
+
+        OpusFrameCache reopened = new OpusFrameCache(directory, 1024 * 1024);
+        assertEquals(2, reopened.size());
+        assertEquals(totalBytes, reopened.getTotalBytes());
+        assertEquals("Second", reopened.peek(TestTracks.track("Second", 200).getInfo().identifier).getInfo().title);
+        assertFalse(partial.exists());
+        assertFalse(broken.exists());
+    }
+
+    @Test
+    public void leastUsedOfTheOldestTracksIsEvicted() throws Exception {
+        // Every track below takes as many bytes as this one: same title length, same frames.
+        OpusFrameCache sizing = cache();
+        store(sizing, "Song99");
+        long trackBytes = sizing.getTotalBytes();
+        OpusFrameCache cache = new OpusFrameCache(folder.newFolder(), 10 * trackBytes);
+
+        // Song00 to Song07 are the 8 oldest; Song02 is the least used of them. Song08 and Song09 are never used, but
+        // are too recent to be considered.
+        int[] uses = {3, 3, 1, 3, 2, 3, 3, 3, 0, 0};
+        for (int i = 0; i < uses.length; i++) {
+            store(cache, "Song0" + i);
+            use(cache, "Song0" + i, uses[i]);
+        }
+        assertEquals(10 * trackBytes, cache.getTotalBytes());
+
+        store(cache, "Song10");
+        assertEquals(10, cache.size());
+        assertEquals(10 * trackBytes, cache.getTotalBytes());
+        assertNull(cache.peek("test:Song02"));
+
+        // Now that Song08 is one of the 8 oldest, it goes next.
+        store(cache, "Song11");
+        assertNull(cache.peek("test:Song08"));
+        assertNotNull(cache.peek("test:Song04"));
+        assertEquals(10 * trackBytes, cache.getTotalBytes());
+    }
+}
@@ -0,0 +1,56 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OpusPassthroughTest {
+    private static AudioPlayer player(int volume) {
+        AudioPlayer player = mock(AudioPlayer.class);
+        when(player.getVolume()).thenReturn(volume);
+        return player;
+    }
+
+    private static AudioTrack youtube(boolean live) {
+        AudioTrack track = mock(AudioTrack.class);
+        when(track.getInfo()).thenReturn(new AudioTrackInfo("Video", "Channel", live ? Long.MAX_VALUE : 200000,
+                "dQw4w9WgXcQ", live));
+        when(track.getSourceManager()).thenReturn(mock(YoutubeAudioSourceManager.class));
+        return track;
+    }
+
+    @Test
+    public void opusFilesArePassedThrough() {
+        assertEquals(OpusPassthrough.Pipeline.PASSTHROUGH,
+                OpusPassthrough.classify(TestTracks.track("song.OPUS", 1000), player(100)));
+    }
+
+    @Test
+    public void otherFilesAreTranscoded() {
+        assertEquals(OpusPassthrough.Pipeline.TRANSCODING,
+                OpusPassthrough.classify(TestTracks.track("song.mp3", 1000), player(100)));
+    }
+
+    @Test
+    public void youtubeVideosAreNotKnown() {
+        assertEquals(OpusPassthrough.Pipeline.UNKNOWN, OpusPassthrough.classify(youtube(false), player(100)));
+    }
+
+    @Test
+    public void youtubeLiveStreamsAreTranscoded() {
+        assertEquals(OpusPassthrough.Pipeline.TRANSCODING, OpusPassthrough.classify(youtube(true), player(100)));
+    }
+
+    @Test
+    public void changedVolumeForcesTranscoding() {
+        assertEquals(OpusPassthrough.Pipeline.TRANSCODING,
+                OpusPassthrough.classify(TestTracks.track("song.opus", 1000), player(50)));
+        assertEquals(OpusPassthrough.Pipeline.TRANSCODING, OpusPassthrough.classify(youtube(false), player(50)));
+    }
+}
@@ -0,0 +1,164 @@
+package net.grasinga.discord.bots.eMusic;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PlayInputTest {
+    private static final Map<String, String> STATIONS = Collections.singletonMap("Rock FM", "http://radio.test/rock");
+    private static final Function<String, String> LOOKUP = STATIONS::get;
+    private static final long RESOLVE_MILLIS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Stands in for one loadItemOrdered resolve: it takes {@link #RESOLVE_MILLIS}, and only links load.
+     */
+    private static boolean resolve(String identifier) throws InterruptedException {
+        Thread.sleep(RESOLVE_MILLIS);
+        return identifier.startsWith("https://");
+    }
+
+    private static String search(String terms) {
+        return "https://www.youtube.com/watch?v=" + Integer.toHexString(terms.hashCode());
+    }
+
+    private static void assertClassified(PlayInput.Type type, String identifier, PlayInput input) {
+        assertEquals(type, input.getType());
+        assertEquals(identifier, input.getIdentifier());
+    }
+
+    @Test
+    public void linksAreLoadedDirectly() {
+        assertClassified(PlayInput.Type.URL, "https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+                PlayInput.classify("https://www.youtube.com/watch?v=dQw4w9WgXcQ", LOOKUP));
+        assertClassified(PlayInput.Type.URL, "HTTP://radio.test:8000/rock",
+                PlayInput.classify("HTTP://radio.test:8000/rock", LOOKUP));
+        assertClassified(PlayInput.Type.URL, "git+ssh://host/x", PlayInput.classify("git+ssh://host/x", LOOKUP));
+    }
+
+    @Test
+    public void linksWithoutASchemeAreLoadedOverHttps() {
+        assertClassified(PlayInput.Type.URL, "https://youtube.com/watch?v=dQw4w9WgXcQ",
+                PlayInput.classify("youtube.com/watch?v=dQw4w9WgXcQ", LOOKUP));
+        assertClassified(PlayInput.Type.URL, "https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+                PlayInput.classify("www.youtube.com/watch?v=dQw4w9WgXcQ", LOOKUP));
+        assertClassified(PlayInput.Type.URL, "https://youtu.be/dQw4w9WgXcQ",
+                PlayInput.classify("youtu.be/dQw4w9WgXcQ", LOOKUP));
+        assertClassified(PlayInput.Type.URL, "https://www.soundcloud.com",
+                PlayInput.classify("www.soundcloud.com", LOOKUP));
+        assertClassified(PlayInput.Type.URL, "https://radio.test:8000/rock",
+                PlayInput.classify("radio.test:8000/rock", LOOKUP));
+    }
+
+    @Test
+    public void sourceSearchesAreLoadedDirectly() {
+        assertClassified(PlayInput.Type.SOURCE_SEARCH, "ytsearch:never gonna give you up",
+                PlayInput.classify("ytsearch:never gonna give you up", LOOKUP));
+        assertClassified(PlayInput.Type.SOURCE_SEARCH, "scsearch: lofi",
+                PlayInput.classify(" scsearch: lofi", LOOKUP));
+        assertClassified(PlayInput.Type.SOURCE_SEARCH, "YTSEARCH:x", PlayInput.classify("YTSEARCH:x", LOOKUP));
+        assertClassified(PlayInput.Type.SEARCH_TERM, null, PlayInput.classify("ytsearch:", LOOKUP));
+    }
+
+    @Test
+    public void surroundingWhitespaceIsTrimmed() {
+        PlayInput input = PlayInput.classify("  https://soundcloud.com/artist/track \t", LOOKUP);
+        assertClassified(PlayInput.Type.URL, "https://soundcloud.com/artist/track", input);
+        assertEquals("https://soundcloud.com/artist/track", input.getInput());
+    }
+
+    @Test
+    public void almostLinksAreSearchedFor() {
+        // A space in the middle, no "//", or a scheme that doesn't start with a letter.
+        assertClassified(PlayInput.Type.SEARCH_TERM, null, PlayInput.classify("https://a b", LOOKUP));
+        assertClassified(PlayInput.Type.SEARCH_TERM, null, PlayInput.classify("spotify:track:123", LOOKUP));
+        assertClassified(PlayInput.Type.SEARCH_TERM, null, PlayInput.classify("1http://x", LOOKUP));
+        assertClassified(PlayInput.Type.SEARCH_TERM, null, PlayInput.classify("https://", LOOKUP));
+        // A dotted word with no path or www. is a search, not a host.
+        assertClassified(PlayInput.Type.SEARCH_TERM, null, PlayInput.classify("mr.brightside", LOOKUP));
+        assertClassified(PlayInput.Type.SEARCH_TERM, null, PlayInput.classify("youtube.com rick", LOOKUP));
+    }
+
+    @Test
+    public void filesAreLoadedByPath() throws Exception {
+        File file = folder.newFile("my song.mp3");
+        assertClassified(PlayInput.Type.LOCAL_PATH, file.getPath(), PlayInput.classify(file.getPath(), LOOKUP));
+    }
+
+    @Test
+    public void directoriesAndMissingFilesAreSearchedFor() throws Exception {
+        File directory = folder.newFolder("music");
+        assertClassified(PlayInput.Type.SEARCH_TERM, null, PlayInput.classify(directory.getPath(), LOOKUP));
+        assertClassified(PlayInput.Type.SEARCH_TERM, null,
+                PlayInput.classify(new File(directory, "missing.mp3").getPath(), LOOKUP));
+    }
+
+    @Test
+    public void stationsAreFoundByExactName() {
+        assertClassified(PlayInput.Type.RADIO_STATION, "http://radio.test/rock", PlayInput.classify("Rock FM", LOOKUP));
+        assertClassified(PlayInput.Type.RADIO_STATION, "http://radio.test/rock",
+                PlayInput.classify(" Rock FM ", LOOKUP));
+        assertClassified(PlayInput.Type.SEARCH_TERM, null, PlayInput.classify("Rock", LOOKUP));
+    }
+
+    @Test
+    public void linksNeverReachTheStationLookup() {
+        PlayInput input = PlayInput.classify("http://radio.test/rock", name -> {
+            throw new AssertionError("Looked up " + name);
+        });
+        assertClassified(PlayInput.Type.URL, "http://radio.test/rock", input);
+    }
+
+    @Test
+    public void searchTermsKeepWhatWasTyped() {
+        PlayInput input = PlayInput.classify("  never gonna give you up ", LOOKUP);
+        assertClassified(PlayInput.Type.SEARCH_TERM, null, input);
+        assertEquals("never gonna give you up", input.getInput());
+        assertNull(input.getIdentifier());
+    }
+
+    @Test
+    public void classifyingFirstSkipsTheFailedLoad() throws Exception {
+        String[] plays = {"never gonna give you up", "darude sandstorm", "lofi beats", "take on me", "africa toto",
+                "bohemian rhapsody", "clair de lune", "everlong", "hey jude", "september"};
+
+        // Before: the raw text was loaded first, and only its noMatches led to the search and a second load.
+        int loadsBefore = 0;
+        long start = System.nanoTime();
+        for (String play : plays) {
+            loadsBefore++;
+            if (!resolve(play)) {
+                loadsBefore++;
+                assertTrue(resolve(search(play)));
+            }
+        }
+        long nanosBefore = System.nanoTime() - start;
+
+        int loadsAfter = 0;
+        start = System.nanoTime();
+        for (String play : plays) {
+            PlayInput input = PlayInput.classify(play, LOOKUP);
+            String identifier = input.getType() == PlayInput.Type.SEARCH_TERM ? search(input.getInput())
+                    : input.getIdentifier();
+            loadsAfter++;
+            assertTrue(resolve(identifier));
+        }
+        long nanosAfter = System.nanoTime() - start;
+
+        assertEquals(2 * plays.length, loadsBefore);
+        assertEquals(plays.length, loadsAfter);
+        assertTrue("Classified plays took " + nanosAfter / 1000000 + "ms against " + nanosBefore / 1000000 + "ms",
+                nanosAfter < nanosBefore * 3 / 4);
+    }
+}
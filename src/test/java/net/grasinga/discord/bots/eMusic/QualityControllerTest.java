@@ -0,0 +1,101 @@
+package net.grasinga.discord.bots.eMusic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QualityControllerTest {
+    private final List<QualityController.Level> applied = new ArrayList<>();
+    private long provided = 0;
+    private long underruns = 0;
+    private double cpu = 0;
+    private QualityController controller;
+
+    @Before
+    public void setUp() {
+        controller = new QualityController(applied::add, () -> provided, () -> underruns, () -> cpu);
+    }
+
+    /**
+     * Takes samples with the given CPU load and a share of underruns over 5 seconds of one guild playing.
+     */
+    private void sample(int count, double cpuLoad, double underrunShare) {
+        for (int i = 0; i < count; i++) {
+            cpu = cpuLoad;
+            long slots = 250;
+            long missed = Math.round(slots * underrunShare);
+            provided += slots - missed;
+            underruns += missed;
+            controller.sample();
+        }
+    }
+
+    @Test
+    public void startsAtTheHighestLevel() {
+        assertEquals(Collections.singletonList(QualityController.Level.HIGH), applied);
+        assertTrue(controller.isHighest());
+    }
+
+    @Test
+    public void sustainedPressureStepsDownOneLevelAtATime() {
+        sample(1, 0.95, 0);
+        assertEquals(QualityController.Level.HIGH, controller.getLevel());
+        sample(1, 0.95, 0);
+        assertEquals(QualityController.Level.MEDIUM, controller.getLevel());
+        sample(2, 0.95, 0);
+        assertEquals(QualityController.Level.LOW, controller.getLevel());
+        sample(10, 0.95, 0);
+        assertEquals(QualityController.Level.LOW, controller.getLevel());
+        assertEquals(2, controller.getChanges());
+        assertFalse(controller.isHighest());
+    }
+
+    @Test
+    public void underrunsCountAsPressure() {
+        sample(2, 0.1, 0.05);
+        assertEquals(QualityController.Level.MEDIUM, controller.getLevel());
+    }
+
+    @Test
+    public void steppingUpTakesALongerIdleStretch() {
+        sample(2, 0.95, 0);
+        sample(11, 0.1, 0);
+        assertEquals(QualityController.Level.MEDIUM, controller.getLevel());
+        sample(1, 0.1, 0);
+        assertEquals(QualityController.Level.HIGH, controller.getLevel());
+        sample(20, 0.1, 0);
+        assertEquals(QualityController.Level.HIGH, controller.getLevel());
+    }
+
+    @Test
+    public void samplesBetweenTheThresholdsResetTheCounts() {
+        sample(1, 0.95, 0);
+        sample(1, 0.7, 0);
+        sample(1, 0.95, 0);
+        assertEquals(QualityController.Level.HIGH, controller.getLevel());
+
+        sample(2, 0.95, 0);
+        sample(11, 0.1, 0);
+        sample(1, 0.7, 0);
+        sample(11, 0.1, 0);
+        assertEquals(QualityController.Level.MEDIUM, controller.getLevel());
+    }
+
+    @Test
+    public void removedGuildsDontCountAsUnderruns() {
+        sample(1, 0.1, 0.5);
+        // A guild's music manager was removed, so the totals went down.
+        provided = 0;
+        underruns = 0;
+        cpu = 0.1;
+        controller.sample();
+        assertEquals(QualityController.Level.HIGH, controller.getLevel());
+    }
+}
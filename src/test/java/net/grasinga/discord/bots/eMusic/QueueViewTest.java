@@ -0,0 +1,103 @@
+package net.grasinga.discord.bots.eMusic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class QueueViewTest {
+    private TrackQueue queue;
+    private QueueView view;
+
+    @Before
+    public void setUp() {
+        queue = new TrackQueue();
+        view = new QueueView(queue);
+    }
+
+    @Test
+    public void singlePageListsEveryTrack() {
+        queue.addAllLast(TestTracks.tracks("track", 3));
+        assertEquals("__**Current Queue [00:06]:**__\n"
+                + "\n1. track0 [00:01]"
+                + "\n2. track1 [00:02]"
+                + "\n3. track2 [00:03]", view.render(1));
+        assertEquals(1, view.pageCount());
+    }
+
+    @Test
+    public void laterPagesSayWhenTheyStart() {
+        // 40 tracks of 1 to 40 seconds: 820 seconds in all, over 3 pages.
+        queue.addAllLast(TestTracks.tracks("track", 40));
+        assertEquals(3, view.pageCount());
+
+        String first = view.render(1);
+        assertTrue(first.startsWith("__**Current Queue [13:40]:**__ Page 1/3\n\n1. track0 [00:01]"));
+        assertFalse(first.contains("starts in"));
+        assertTrue(first.endsWith("\n15. track14 [00:15]\n\nUse -queue 2 for the next page."));
+
+        // Page 2 starts after the first 15 tracks: 1 + 2 + ... + 15 = 120 seconds.
+        String second = view.render(2);
+        assertTrue(second.startsWith("__**Current Queue [13:40]:**__ Page 2/3, starts in [02:00]\n"
+                + "\n16. track15 [00:16]"));
+        assertTrue(second.endsWith("\n\nUse -queue 3 for the next page."));
+
+        // 1 + 2 + ... + 30 = 465 seconds.
+        String last = view.render(3);
+        assertTrue(last.startsWith("__**Current Queue [13:40]:**__ Page 3/3, starts in [07:45]\n"
+                + "\n31. track30 [00:31]"));
+        assertTrue(last.endsWith("\n40. track39 [00:40]"));
+    }
+
+    @Test
+    public void pageNumbersOutOfRangeShowTheNearestPage() {
+        queue.addAllLast(TestTracks.tracks("track", 40));
+        assertEquals(view.render(1), view.render(0));
+        assertEquals(view.render(1), view.render(-3));
+        assertEquals(view.render(3), view.render(4));
+        assertEquals(view.render(3), view.render(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void pagesAreCachedUntilTheQueueChanges() {
+        queue.addAllLast(TestTracks.tracks("track", 20));
+        String page = view.render(2);
+        assertSame(page, view.render(2));
+        // Clamped numbers share the page they show.
+        assertSame(page, view.render(5));
+
+        queue.remove(19);
+        String changed = view.render(2);
+        assertNotSame(page, changed);
+        assertFalse(changed.contains("track19"));
+        assertSame(changed, view.render(2));
+
+        queue.addLast(TestTracks.track("added", 5000));
+        assertTrue(view.render(2).endsWith("\n20. added [00:05]"));
+    }
+
+    @Test
+    public void streamsAndLongTitlesAreShortened() {
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < 150; i++)
+            title.append('x');
+        queue.addLast(TestTracks.track(title.toString(), 3723000));
+        queue.addLast(TestTracks.stream("rock"));
+
+        String page = view.render(1);
+        assertTrue(page.contains("\n1. " + title.substring(0, 100) + "... [01:02:03]"));
+        assertTrue(page.endsWith("\n2. rock [LIVE]"));
+    }
+
+    @Test
+    public void durationsLeaveOutHoursIfThereAreNone() {
+        assertEquals("[00:00]", QueueView.formatDuration(0));
+        assertEquals("[59:59]", QueueView.formatDuration(3599999));
+        assertEquals("[01:00:00]", QueueView.formatDuration(3600000));
+        assertEquals("[100:00:01]", QueueView.formatDuration(360001000L));
+    }
+}
@@ -0,0 +1,78 @@
+package net.grasinga.discord.bots.eMusic;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StationIndexTest {
+    private static final StationIndex INDEX = index("Rock", "Rock Two", "Rock One", "Rock Classics", "Classic Rock",
+            "Hard Rock Cafe", "Rockabilly Radio", "Jazz", "Smooth Jazz FM", "Bedrock FM", "Jazz & Rock");
+
+    private static StationIndex index(String... names) {
+        Map<String, String> stations = new LinkedHashMap<>();
+        for (String name : names)
+            stations.put(name, "http://radio.test/" + name.replace(' ', '-'));
+        return new StationIndex(stations);
+    }
+
+    private static List<String> names(String term, int limit) {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, String> match : INDEX.search(term, limit))
+            names.add(match.getKey());
+        return names;
+    }
+
+    @Test
+    public void matchesAreRankedExactThenPrefixThenWordThenSubstring() {
+        // Ties go to the shorter name, then to the station listed first.
+        assertEquals(Arrays.asList("Rock", "Rock Two", "Rock One", "Rock Classics", "Rockabilly Radio",
+                "Jazz & Rock", "Classic Rock", "Hard Rock Cafe", "Bedrock FM"), names("rock", 20));
+    }
+
+    @Test
+    public void searchIgnoresCaseAndSurroundingWhitespace() {
+        assertEquals(names("rock", 20), names("  ROCK ", 20));
+        assertEquals(Collections.singletonList("Classic Rock"), names("classic rock", 20));
+    }
+
+    @Test
+    public void limitKeepsTheBestMatches() {
+        assertEquals(Arrays.asList("Rock", "Rock Two", "Rock One"), names("rock", 3));
+        assertTrue(names("rock", 0).isEmpty());
+    }
+
+    @Test
+    public void shortTermsAreLookedUpByTheirOwnGram() {
+        assertEquals(Arrays.asList("Jazz", "Jazz & Rock", "Smooth Jazz FM"), names("j", 20));
+        assertEquals(Arrays.asList("Bedrock FM", "Smooth Jazz FM"), names("fm", 20));
+        assertEquals(Arrays.asList("Jazz", "Jazz & Rock", "Smooth Jazz FM"), names("jaz", 20));
+        assertEquals(Collections.singletonList("Jazz & Rock"), names("&", 20));
+        assertEquals(Arrays.asList("Classic Rock", "Rock Classics", "Hard Rock Cafe", "Rock", "Rock Two", "Rock One",
+                "Bedrock FM", "Jazz & Rock", "Rockabilly Radio"), names("c", 20));
+    }
+
+    @Test
+    public void termsWithoutAMatchFindNothing() {
+        assertTrue(names("polka", 20).isEmpty());
+        // Every gram is indexed, but no name has them in this order.
+        assertTrue(names("rockjazz", 20).isEmpty());
+        assertTrue(names("x", 20).isEmpty());
+        assertTrue(names("   ", 20).isEmpty());
+    }
+
+    @Test
+    public void exactNamesAreFoundWithoutSearching() {
+        assertEquals("http://radio.test/Smooth-Jazz-FM", INDEX.getByName(" smooth jazz fm "));
+        assertNull(INDEX.getByName("Smooth Jazz"));
+        assertEquals(11, INDEX.size());
+    }
+}
@@ -0,0 +1,64 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Players for tests that keep track of what they play without playing anything. They fire no events.
+ */
+final class TestPlayers {
+    private TestPlayers() {}
+
+    /**
+     * @param started Every track the player starts is added here, in order; it must be safe to add to from any thread.
+     * @return The player.
+     */
+    static AudioPlayer player(List<AudioTrack> started) {
+        AtomicReference<AudioTrack> playing = new AtomicReference<>();
+        AtomicBoolean paused = new AtomicBoolean();
+        return (AudioPlayer) Proxy.newProxyInstance(AudioPlayer.class.getClassLoader(),
+                new Class<?>[] {AudioPlayer.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "startTrack":
+                            AudioTrack track = (AudioTrack) args[0];
+                            if ((Boolean) args[1] && !playing.compareAndSet(null, track))
+                                return false;
+                            playing.set(track);
+                            if (track != null)
+                                started.add(track);
+                            return true;
+                        case "playTrack":
+                            playing.set((AudioTrack) args[0]);
+                            if (args[0] != null)
+                                started.add((AudioTrack) args[0]);
+                            return null;
+                        case "stopTrack":
+                        case "destroy":
+                            playing.set(null);
+                            return null;
+                        case "getPlayingTrack":
+                            return playing.get();
+                        case "isPaused":
+                            return paused.get();
+                        case "setPaused":
+                            paused.set((Boolean) args[0]);
+                            return null;
+                        case "getVolume":
+                            return 100;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "TestPlayer";
+                        default:
+                            return method.getReturnType() == boolean.class ? (Object) false : null;
+                    }
+                });
+    }
+}
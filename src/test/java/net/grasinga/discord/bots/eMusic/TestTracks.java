@@ -0,0 +1,61 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BaseAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks for tests that only carry their info; they are never played.
+ */
+final class TestTracks {
+    private TestTracks() {}
+
+    /**
+     * @param title Title of the track, also used in its identifier.
+     * @param length Length of the track in milliseconds.
+     * @return The track.
+     */
+    static AudioTrack track(String title, long length) {
+        return new InfoTrack(new AudioTrackInfo(title, "Artist", length, "test:" + title, false));
+    }
+
+    /**
+     * @param title Title of the stream.
+     * @return A live stream, which has no length.
+     */
+    static AudioTrack stream(String title) {
+        return new InfoTrack(new AudioTrackInfo(title, "Artist", Long.MAX_VALUE, "http://radio.test/" + title, true));
+    }
+
+    /**
+     * @param prefix Start of every title.
+     * @param count Amount of tracks.
+     * @return Tracks titled prefix0, prefix1, ... with lengths of 1, 2, ... seconds.
+     */
+    static List<AudioTrack> tracks(String prefix, int count) {
+        List<AudioTrack> tracks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            tracks.add(track(prefix + i, (i + 1) * 1000L));
+        return tracks;
+    }
+
+    private static class InfoTrack extends BaseAudioTrack {
+        private InfoTrack(AudioTrackInfo trackInfo) {
+            super(trackInfo);
+        }
+
+        @Override
+        public void process(LocalAudioTrackExecutor executor) {
+            throw new UnsupportedOperationException("Test tracks are never played.");
+        }
+
+        @Override
+        public AudioTrack makeClone() {
+            return new InfoTrack(trackInfo);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package net.grasinga.discord.bots.eMusic;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+    @Test
+    public void emptyBucketFailsRightAway() {
+        // The search limiter's rate: 100 searches a day, so one token every 864 seconds.
+        TokenBucket bucket = new TokenBucket(10, 100, 1, TimeUnit.DAYS);
+        for (int i = 0; i < 10; i++)
+            assertTrue(bucket.tryAcquire());
+
+        long start = System.nanoTime();
+        assertFalse(bucket.tryAcquire());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+        assertEquals(0, bucket.available());
+    }
+
+    @Test
+    public void bucketRefills() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 1, 20, TimeUnit.MILLISECONDS);
+        assertTrue(bucket.tryAcquire());
+        Thread.sleep(50);
+        assertTrue(bucket.tryAcquire());
+    }
+}
@@ -0,0 +1,129 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TrackQueueTest {
+    @Test
+    public void insertNearTheFrontKeepsTheHeadBufferBounded() {
+        TrackQueue queue = new TrackQueue();
+        queue.addAllLast(TestTracks.tracks("a", 10));
+        queue.pollFirst();
+
+        List<AudioTrack> expected = queue.toList();
+        for (AudioTrack track : TestTracks.tracks("b", 1000)) {
+            queue.insert(1, track);
+            expected.add(1, track);
+            assertTrue("head buffer grew to " + queue.headSize(), queue.headSize() <= TrackQueue.HEAD_LIMIT);
+        }
+
+        assertEquals(expected, queue.toList());
+        assertEquals(sum(expected), queue.totalDuration());
+        assertEquals(sum(expected.subList(0, 500)), queue.durationBefore(500));
+    }
+
+    @Test
+    public void addFirstKeepsTheHeadBufferBounded() {
+        TrackQueue queue = new TrackQueue();
+        List<AudioTrack> expected = new ArrayList<>();
+        for (AudioTrack track : TestTracks.tracks("a", 500)) {
+            queue.addFirst(track);
+            expected.add(0, track);
+            assertTrue(queue.headSize() <= TrackQueue.HEAD_LIMIT);
+        }
+        assertEquals(expected, queue.toList());
+    }
+
+    @Test
+    public void randomEditsMatchAList() {
+        Random random = new Random(42);
+        TrackQueue queue = new TrackQueue();
+        List<AudioTrack> expected = new ArrayList<>();
+        int created = 0;
+
+        for (int step = 0; step < 20000; step++) {
+            int size = expected.size();
+            switch (random.nextInt(7)) {
+                case 0: {
+                    AudioTrack track = TestTracks.track("t" + created, ++created * 10L);
+                    queue.addLast(track);
+                    expected.add(track);
+                    break;
+                }
+                case 1: {
+                    AudioTrack track = TestTracks.track("t" + created, ++created * 10L);
+                    queue.addFirst(track);
+                    expected.add(0, track);
+                    break;
+                }
+                case 2: {
+                    AudioTrack track = TestTracks.track("t" + created, ++created * 10L);
+                    // Favor positions near the front, where the head buffer is.
+                    int index = random.nextBoolean() ? random.nextInt(Math.min(size, 80) + 1) : random.nextInt(size + 1);
+                    queue.insert(index, track);
+                    expected.add(index, track);
+                    break;
+                }
+                case 3:
+                    if (size > 0) {
+                        int index = random.nextInt(size);
+                        assertSame(expected.remove(index), queue.remove(index));
+                    }
+                    break;
+                case 4:
+                    if (size > 0) {
+                        int from = random.nextInt(size);
+                        int to = random.nextInt(size);
+                        queue.move(from, to);
+                        expected.add(to, expected.remove(from));
+                    }
+                    break;
+                case 5:
+                    if (size > 0)
+                        assertSame(expected.remove(0), queue.pollFirst());
+                    else
+                        assertNull(queue.pollFirst());
+                    break;
+                default:
+                    if (size > 0) {
+                        int index = random.nextInt(size);
+                        assertSame(expected.get(index), queue.get(index));
+                        assertEquals(sum(expected.subList(0, index)), queue.durationBefore(index));
+                    }
+                    break;
+            }
+            assertEquals(expected.size(), queue.size());
+            assertTrue(queue.headSize() <= TrackQueue.HEAD_LIMIT);
+        }
+
+        assertEquals(expected, queue.toList());
+        assertEquals(sum(expected), queue.totalDuration());
+    }
+
+    @Test
+    public void streamsDontCountTowardsTheDuration() {
+        TrackQueue queue = new TrackQueue();
+        queue.addLast(TestTracks.track("a", 1000));
+        queue.addLast(TestTracks.stream("radio"));
+        queue.addLast(TestTracks.track("b", 2000));
+
+        assertEquals(3000, queue.totalDuration());
+        assertEquals(1000, queue.durationBefore(2));
+    }
+
+    private static long sum(List<AudioTrack> tracks) {
+        long total = 0;
+        for (AudioTrack track : tracks)
+            total += TrackQueue.durationOf(track);
+        return total;
+    }
+}
@@ -0,0 +1,111 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TrackSchedulerTest {
+    private final List<AudioTrack> started = Collections.synchronizedList(new ArrayList<>());
+    private AudioPlayer player;
+    private GuildPlaybackState state;
+    private TrackScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        player = TestPlayers.player(started);
+        state = new GuildPlaybackState();
+        scheduler = new TrackScheduler(player, TestPlayers.player(started), state, new AudioPlayerSendHandler(player));
+    }
+
+    private static long duration(List<AudioTrack> tracks) {
+        return tracks.stream().mapToLong(AudioTrack::getDuration).sum();
+    }
+
+    @Test
+    public void playlistStartsItsFirstTrackAndQueuesTheRestInOrder() {
+        List<AudioTrack> playlist = TestTracks.tracks("track", 500);
+        scheduler.queueAll(playlist);
+
+        assertSame(playlist.get(0), player.getPlayingTrack());
+        assertEquals(499, scheduler.getQueueSize());
+        assertEquals(playlist.subList(1, 500), scheduler.getQueuedTracks(0, 499));
+        assertEquals(duration(playlist.subList(1, 500)), scheduler.getQueueDuration());
+    }
+
+    @Test
+    public void playlistGoesAfterWhatIsAlreadyQueued() {
+        List<AudioTrack> single = TestTracks.tracks("single", 3);
+        for (AudioTrack track : single)
+            scheduler.queue(track);
+        List<AudioTrack> playlist = TestTracks.tracks("track", 200);
+        scheduler.queueAll(playlist);
+
+        assertSame(single.get(0), player.getPlayingTrack());
+        List<AudioTrack> expected = new ArrayList<>(single.subList(1, 3));
+        expected.addAll(playlist);
+        assertEquals(expected, scheduler.getQueuedTracks(0, scheduler.getQueueSize()));
+        assertEquals(duration(expected), scheduler.getQueueDuration());
+    }
+
+    @Test
+    public void bulkEnqueueMatchesEnqueuingOneByOne() {
+        List<AudioTrack> playlist = TestTracks.tracks("track", 1000);
+        List<AudioTrack> oneByOneStarted = Collections.synchronizedList(new ArrayList<>());
+        AudioPlayer oneByOnePlayer = TestPlayers.player(oneByOneStarted);
+        TrackScheduler oneByOne = new TrackScheduler(oneByOnePlayer, TestPlayers.player(oneByOneStarted),
+                new GuildPlaybackState(), new AudioPlayerSendHandler(oneByOnePlayer));
+
+        scheduler.queueAll(playlist);
+        for (AudioTrack track : playlist)
+            oneByOne.queue(track);
+
+        assertEquals(oneByOneStarted, started);
+        assertEquals(oneByOne.getQueuedTracks(0, oneByOne.getQueueSize()),
+                scheduler.getQueuedTracks(0, scheduler.getQueueSize()));
+        assertEquals(oneByOne.getQueueDuration(), scheduler.getQueueDuration());
+        assertEquals(oneByOne.renderQueuePage(3), scheduler.renderQueuePage(3));
+    }
+
+    @Test
+    public void playlistPlaysInOrder() {
+        List<AudioTrack> playlist = TestTracks.tracks("track", 50);
+        scheduler.queueAll(playlist);
+        for (int i = 1; i < playlist.size(); i++)
+            scheduler.nextTrack();
+
+        assertEquals(playlist, started);
+        assertEquals(0, scheduler.getQueueSize());
+        assertEquals(0, scheduler.getQueueDuration());
+
+        scheduler.nextTrack();
+        assertNull(player.getPlayingTrack());
+        assertTrue(state.isPlaybackFinished());
+    }
+
+    @Test
+    public void streamsDontAddToTheDuration() {
+        List<AudioTrack> playlist = new ArrayList<>(TestTracks.tracks("track", 3));
+        playlist.add(1, TestTracks.stream("radio"));
+        scheduler.queueAll(playlist);
+
+        assertEquals(3, scheduler.getQueueSize());
+        assertEquals(2000 + 3000, scheduler.getQueueDuration());
+    }
+
+    @Test
+    public void emptyPlaylistDoesNothing() {
+        scheduler.queueAll(Collections.emptyList());
+        assertNull(player.getPlayingTrack());
+        assertEquals(0, scheduler.getQueueSize());
+    }
+}
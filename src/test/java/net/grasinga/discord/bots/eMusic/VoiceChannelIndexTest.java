@@ -0,0 +1,106 @@
+package net.grasinga.discord.bots.eMusic;
+
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.entities.VoiceChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VoiceChannelIndexTest {
+    private Guild guild;
+    private VoiceChannel lounge;
+    private VoiceChannel music;
+    private List<Member> loungeMembers;
+    private List<Member> musicMembers;
+    private Member alice;
+    private Member bob;
+
+    @Before
+    public void setUp() {
+        guild = mock(Guild.class);
+        when(guild.getId()).thenReturn("1");
+        loungeMembers = new ArrayList<>();
+        musicMembers = new ArrayList<>();
+        lounge = channel("10", loungeMembers);
+        music = channel("11", musicMembers);
+        when(guild.getVoiceChannels()).thenReturn(Arrays.asList(lounge, music));
+        alice = member("100");
+        bob = member("101");
+    }
+
+    @Test
+    public void eventForAGuildThatWasNeverIndexedIsKept() {
+        VoiceChannelIndex index = new VoiceChannelIndex();
+        // JDA updates its cache before it fires the event.
+        musicMembers.add(alice);
+        index.joined(alice, music);
+
+        assertSame(music, index.getChannel(guild, alice.getUser()));
+    }
+
+    @Test
+    public void eventsAfterTheScanAreApplied() {
+        loungeMembers.add(alice);
+        VoiceChannelIndex index = new VoiceChannelIndex();
+        assertSame(lounge, index.getChannel(guild, alice.getUser()));
+
+        index.joined(alice, music);
+        index.joined(bob, lounge);
+        assertSame(music, index.getChannel(guild, alice.getUser()));
+        assertSame(lounge, index.getChannel(guild, bob.getUser()));
+
+        index.left(alice);
+        assertNull(index.getChannel(guild, alice.getUser()));
+    }
+
+    @Test
+    public void guildIsScannedOnce() {
+        VoiceChannelIndex index = new VoiceChannelIndex();
+        index.getChannel(guild, alice.getUser());
+        index.joined(bob, music);
+        index.getChannel(guild, bob.getUser());
+
+        verify(guild, times(1)).getVoiceChannels();
+    }
+
+    @Test
+    public void indexRescansTheGuild() {
+        VoiceChannelIndex index = new VoiceChannelIndex();
+        index.joined(alice, lounge);
+        musicMembers.add(bob);
+        index.index(guild);
+
+        assertNull(index.getChannel(guild, alice.getUser()));
+        assertSame(music, index.getChannel(guild, bob.getUser()));
+    }
+
+    private VoiceChannel channel(String id, List<Member> members) {
+        VoiceChannel channel = mock(VoiceChannel.class);
+        when(channel.getId()).thenReturn(id);
+        when(channel.getMembers()).thenAnswer(invocation -> Collections.unmodifiableList(new ArrayList<>(members)));
+        when(guild.getVoiceChannelById(id)).thenReturn(channel);
+        return channel;
+    }
+
+    private Member member(String id) {
+        User user = mock(User.class);
+        when(user.getId()).thenReturn(id);
+        Member member = mock(Member.class);
+        when(member.getUser()).thenReturn(user);
+        when(member.getGuild()).thenReturn(guild);
+        return member;
+    }
+}
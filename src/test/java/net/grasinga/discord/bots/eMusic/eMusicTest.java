@@ -0,0 +1,202 @@
+package net.grasinga.discord.bots.eMusic;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioConfiguration;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.GuildVoiceState;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.TextChannel;
+import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
+import net.dv8tion.jda.core.managers.AudioManager;
+import net.dv8tion.jda.core.requests.RestAction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives commands through the bot as JDA would, with a stand-in player manager, YouTube search and Icecast server.
+ */
+public class eMusicTest {
+    private final AtomicReference<AudioTrack> playing = new AtomicReference<>();
+    private AudioPlayer player;
+    private AudioPlayerManager playerManager;
+    private Function<String, String> videoSearch;
+    private Guild guild;
+    private TextChannel channel;
+    private User author;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        player = mock(AudioPlayer.class);
+        when(player.getVolume()).thenReturn(100);
+        when(player.startTrack(any(AudioTrack.class), anyBoolean())).thenAnswer(invocation -> {
+            AudioTrack track = invocation.getArgument(0);
+            if (invocation.<Boolean>getArgument(1))
+                return playing.compareAndSet(null, track);
+            playing.set(track);
+            return true;
+        });
+        when(player.getPlayingTrack()).thenAnswer(invocation -> playing.get());
+
+        playerManager = mock(AudioPlayerManager.class);
+        when(playerManager.getConfiguration()).thenReturn(new AudioConfiguration());
+        when(playerManager.createPlayer()).thenReturn(player);
+
+        videoSearch = mock(Function.class);
+
+        guild = mock(Guild.class);
+        when(guild.getId()).thenReturn("1");
+        AudioManager audioManager = mock(AudioManager.class);
+        when(guild.getAudioManager()).thenReturn(audioManager);
+        when(guild.getVoiceChannels()).thenReturn(Collections.emptyList());
+
+        channel = mock(TextChannel.class);
+        when(channel.getId()).thenReturn("2");
+        when(channel.getGuild()).thenReturn(guild);
+        // Messages are sent right away, so every reply of a test goes out.
+        RestAction<Object> sent = mock(RestAction.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(sent).queue(any(), any());
+        when(channel.sendMessage(anyString())).thenReturn((RestAction) sent);
+
+        author = mock(User.class);
+        when(author.getId()).thenReturn("3");
+    }
+
+    /**
+     * Answers loads of an identifier with a track, as a source manager would.
+     */
+    private void load(String identifier, AudioTrack track) {
+        doAnswer(invocation -> {
+            invocation.<AudioLoadResultHandler>getArgument(2).trackLoaded(track);
+            return null;
+        }).when(playerManager).loadItemOrdered(any(), eq(identifier), any(AudioLoadResultHandler.class));
+    }
+
+    /**
+     * Answers loads of an identifier with no match, as if no source manager could load it.
+     */
+    private void loadNothing(String identifier) {
+        doAnswer(invocation -> {
+            invocation.<AudioLoadResultHandler>getArgument(2).noMatches();
+            return null;
+        }).when(playerManager).loadItemOrdered(any(), eq(identifier), any(AudioLoadResultHandler.class));
+    }
+
+    private GuildMessageReceivedEvent message(String content) {
+        Message message = mock(Message.class);
+        when(message.getContent()).thenReturn(content);
+        when(message.getRawContent()).thenReturn(content);
+        when(message.getGuild()).thenReturn(guild);
+        when(message.getTextChannel()).thenReturn(channel);
+        when(message.getAuthor()).thenReturn(author);
+
+        GuildMessageReceivedEvent event = mock(GuildMessageReceivedEvent.class);
+        when(event.getMessage()).thenReturn(message);
+        when(event.getGuild()).thenReturn(guild);
+        when(event.getChannel()).thenReturn(channel);
+        when(event.getAuthor()).thenReturn(author);
+        return event;
+    }
+
+    @Test
+    public void playSearchesYouTubeAndStartsTheTrack() {
+        AudioTrack track = TestTracks.track("Never Gonna Give You Up", 213000);
+        when(videoSearch.apply("never gonna give you up")).thenReturn("dQw4w9WgXcQ");
+        load("https://www.youtube.com/watch?v=dQw4w9WgXcQ", track);
+        eMusic bot = new eMusic(playerManager, videoSearch, jsonUrl -> Collections.emptyMap());
+
+        bot.onGuildMessageReceived(message("-play never gonna give you up"));
+
+        verify(player, timeout(5000)).startTrack(track, true);
+        verify(channel, timeout(5000)).sendMessage(contains("Added **Never Gonna Give You Up** to queue."));
+    }
+
+    @Test
+    public void usedUpSearchQuotaLoadsNothing() {
+        when(videoSearch.apply(anyString())).thenReturn(YouTubeSearch.QUOTA_EXHAUSTED);
+        eMusic bot = new eMusic(playerManager, videoSearch, jsonUrl -> Collections.emptyMap());
+
+        bot.onGuildMessageReceived(message("-play some song"));
+
+        verify(channel, timeout(5000)).sendMessage(contains("quota is used up"));
+        verify(playerManager, after(500).never()).loadItemOrdered(any(), anyString(),
+                any(AudioLoadResultHandler.class));
+    }
+
+    @Test
+    public void nowPlayingShowsTheStationsSong() throws InterruptedException {
+        AudioTrack stream = TestTracks.stream("rock");
+        load("http://radio.test/rock", stream);
+        CountDownLatch fetched = new CountDownLatch(1);
+        Map<String, StationInfo> mounts = Collections.singletonMap("/rock",
+                new StationInfo("Rock FM", "The Band", "The Song", "The Band - The Song"));
+        eMusic bot = new eMusic(playerManager, videoSearch, jsonUrl -> {
+            fetched.countDown();
+            return mounts;
+        });
+
+        bot.onGuildMessageReceived(message("-play http://radio.test/rock"));
+        verify(player, timeout(5000)).startTrack(stream, true);
+        assertTrue(fetched.await(5, TimeUnit.SECONDS));
+        bot.onGuildMessageReceived(message("-nowplaying"));
+
+        verify(channel, timeout(5000)).sendMessage(contains("**Song:** The Song\n**Artist:** The Band"));
+        verify(videoSearch, never()).apply(anyString());
+    }
+
+    @Test
+    public void joinLooksUpTheChannelNamedInTheCommand() {
+        Member self = mock(Member.class);
+        GuildVoiceState voiceState = mock(GuildVoiceState.class);
+        when(guild.getSelfMember()).thenReturn(self);
+        when(self.getVoiceState()).thenReturn(voiceState);
+        eMusic bot = new eMusic(playerManager, videoSearch, jsonUrl -> Collections.emptyMap());
+
+        bot.onGuildMessageReceived(message("-JOIN   Music Room "));
+
+        verify(guild, timeout(5000)).getVoiceChannelsByName("Music Room", true);
+        verify(channel, timeout(5000)).sendMessage(contains("No voice channel named 'Music Room' exists!"));
+    }
+
+    @Test
+    public void unloadableSourceIsReportedByTheCommandItCameFrom() {
+        loadNothing("http://radio.test/gone");
+        eMusic bot = new eMusic(playerManager, videoSearch, jsonUrl -> Collections.emptyMap());
+
+        bot.onGuildMessageReceived(message("-RADIO http://radio.test/gone"));
+        verify(channel, timeout(5000)).sendMessage(contains("in database, but it could not be loaded"));
+
+        bot.onGuildMessageReceived(message("-play http://radio.test/gone"));
+        verify(channel, timeout(5000)).sendMessage(contains("Could not load **http://radio.test/gone**"));
+    }
+}